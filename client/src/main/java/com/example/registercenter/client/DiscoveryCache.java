@@ -0,0 +1,256 @@
+package com.example.registercenter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地服务发现缓存
+ * 启动时获取全量列表，之后长轮询注册中心的变更并按版本号拉取增量，查询只读取内存中的不可变快照
+ * 应用增量后按注册中心的算法校验视图哈希，不一致时改为全量获取
+ * 注册中心不可用时保留最后一次成功同步的快照继续提供查询
+ */
+class DiscoveryCache {
+
+    private static final System.Logger logger = System.getLogger(DiscoveryCache.class.getName());
+
+    private static final Comparator<ServiceInstance> BY_ID = Comparator.comparingLong(ServiceInstance::getId);
+
+    private final RegistryTransport transport;
+
+    private final RegistryClientConfig config;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private volatile long lastSyncAt;
+
+    private volatile int consecutiveFailures;
+
+    private volatile boolean running;
+
+    private Thread watchThread;
+
+    DiscoveryCache(RegistryTransport transport, RegistryClientConfig config) {
+        this.transport = transport;
+        this.config = config;
+    }
+
+    /**
+     * 尝试同步一次全量列表，然后启动后台订阅线程
+     * 首次同步失败不抛出异常，由后台线程继续重试
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            loadFull();
+        } catch (IOException e) {
+            onFailure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watchThread = new Thread(this::watchLoop, "registry-client-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+
+    List<ServiceInstance> all() {
+        return snapshot.all;
+    }
+
+    /**
+     * 服务名下的在线实例
+     */
+    List<ServiceInstance> upInstances(String serviceName) {
+        return snapshot.upByName.getOrDefault(serviceName, List.of());
+    }
+
+    long getRevision() {
+        return snapshot.revision;
+    }
+
+    long getLastSyncAt() {
+        return lastSyncAt;
+    }
+
+    /**
+     * 最近一次同步是否失败，失败时查询返回的是最后一次成功同步的快照
+     */
+    boolean isStale() {
+        return consecutiveFailures > 0;
+    }
+
+    private void watchLoop() {
+        while (running) {
+            try {
+                Snapshot current = snapshot;
+                if (current.url == null) {
+                    loadFull();
+                    continue;
+                }
+                RegistryTransport.Reply reply = transport.get("/api/services/watch?revision=" + current.revision
+                        + "&timeout=" + config.getWatchTimeoutMillis(),
+                        config.getWatchTimeoutMillis() + config.getRequestTimeoutMillis());
+                long revision = reply.body.path("revision").asLong();
+                if (!reply.url.equals(current.url) || revision < current.revision) {
+                    // 切换到了另一个注册中心节点（实例ID和版本号不通用），或注册中心已重启
+                    loadFull();
+                } else if (revision > current.revision) {
+                    loadDelta(current);
+                } else {
+                    onSuccess();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                onFailure(e);
+                try {
+                    Thread.sleep(backoffMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loadFull() throws IOException, InterruptedException {
+        RegistryTransport.Reply reply = transport.get("/api/services/list", config.getRequestTimeoutMillis());
+        checkStatus(reply);
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (JsonNode node : reply.body.path("data")) {
+            instances.add(ServiceInstance.fromJson(node));
+        }
+        snapshot = Snapshot.of(reply.url, reply.body.path("revision").asLong(), instances);
+        onSuccess();
+    }
+
+    private void loadDelta(Snapshot current) throws IOException, InterruptedException {
+        RegistryTransport.Reply reply = transport.get("/api/services/list?sinceRevision=" + current.revision,
+                config.getRequestTimeoutMillis());
+        checkStatus(reply);
+        if (!reply.url.equals(current.url) || !reply.body.path("delta").asBoolean()) {
+            // 增量超出注册中心变更日志的范围，或请求被转到了另一个节点
+            if (reply.url.equals(current.url) && reply.body.has("data")) {
+                List<ServiceInstance> instances = new ArrayList<>();
+                for (JsonNode node : reply.body.path("data")) {
+                    instances.add(ServiceInstance.fromJson(node));
+                }
+                snapshot = Snapshot.of(reply.url, reply.body.path("revision").asLong(), instances);
+                onSuccess();
+            } else {
+                loadFull();
+            }
+            return;
+        }
+
+        Map<Long, ServiceInstance> byId = new HashMap<>(current.byId);
+        for (JsonNode id : reply.body.path("removed")) {
+            byId.remove(id.asLong());
+        }
+        for (JsonNode node : reply.body.path("changed")) {
+            ServiceInstance instance = ServiceInstance.fromJson(node);
+            byId.put(instance.getId(), instance);
+        }
+        Snapshot next = Snapshot.of(reply.url, reply.body.path("revision").asLong(), byId.values());
+        String expected = reply.body.path("hash").asText(null);
+        if (expected != null && !expected.equals(String.format("%016x", next.hash))) {
+            logger.log(System.Logger.Level.INFO, "本地服务缓存与注册中心不一致，重新获取全量列表");
+            loadFull();
+            return;
+        }
+        snapshot = next;
+        onSuccess();
+    }
+
+    private static void checkStatus(RegistryTransport.Reply reply) throws IOException {
+        if (reply.status != 200) {
+            throw new IOException(reply.url + " 返回 HTTP " + reply.status);
+        }
+    }
+
+    private void onSuccess() {
+        if (consecutiveFailures > 0) {
+            logger.log(System.Logger.Level.INFO, "与注册中心的同步已恢复");
+        }
+        consecutiveFailures = 0;
+        lastSyncAt = System.currentTimeMillis();
+    }
+
+    private void onFailure(Exception e) {
+        // 连续失败时只在第一次输出警告，期间继续使用最后一次成功同步的快照
+        if (consecutiveFailures++ == 0) {
+            logger.log(System.Logger.Level.WARNING, "同步服务列表失败，继续使用本地缓存: " + e.getMessage());
+        }
+    }
+
+    private long backoffMillis() {
+        int exponent = Math.min(Math.max(consecutiveFailures - 1, 0), 20);
+        return Math.min(config.getRetryDelayMillis() << exponent, config.getMaxRetryDelayMillis());
+    }
+
+    /**
+     * 不可变快照，按服务名预先分组在线实例
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(null, -1, Map.of(), List.of(), Map.of(), 0);
+
+        final String url;
+
+        final long revision;
+
+        final Map<Long, ServiceInstance> byId;
+
+        final List<ServiceInstance> all;
+
+        final Map<String, List<ServiceInstance>> upByName;
+
+        final long hash;
+
+        private Snapshot(String url, long revision, Map<Long, ServiceInstance> byId, List<ServiceInstance> all,
+                         Map<String, List<ServiceInstance>> upByName, long hash) {
+            this.url = url;
+            this.revision = revision;
+            this.byId = byId;
+            this.all = all;
+            this.upByName = upByName;
+            this.hash = hash;
+        }
+
+        static Snapshot of(String url, long revision, Collection<ServiceInstance> instances) {
+            Map<Long, ServiceInstance> byId = new HashMap<>();
+            List<ServiceInstance> all = new ArrayList<>(instances);
+            all.sort(BY_ID);
+            Map<String, List<ServiceInstance>> upByName = new HashMap<>();
+            long hash = 0;
+            for (ServiceInstance instance : all) {
+                byId.put(instance.getId(), instance);
+                hash ^= instance.hash();
+                if (instance.isUp()) {
+                    upByName.computeIfAbsent(instance.getServiceName(), key -> new ArrayList<>()).add(instance);
+                }
+            }
+            upByName.replaceAll((name, list) -> Collections.unmodifiableList(list));
+            return new Snapshot(url, revision, Collections.unmodifiableMap(byId),
+                    Collections.unmodifiableList(all), upByName, hash);
+        }
+    }
+}
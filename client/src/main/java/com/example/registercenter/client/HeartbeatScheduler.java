@@ -0,0 +1,184 @@
+package com.example.registercenter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本进程所有实例共用的心跳调度器
+ * 每个周期把所有实例合并为批量心跳请求发送，周期带随机抖动；注册中心不认识的实例（已被删除或切换到了另一个节点）自动重新注册
+ * 注册中心按服务名、版本、IP、端口收到心跳时不会恢复已离线的实例，心跳结果显示离线（例如曾错过一次心跳超时）的实例也重新注册；
+ * 被注册中心健康检查标记离线的实例不重新注册，由健康检查决定何时恢复
+ */
+class HeartbeatScheduler {
+
+    private static final System.Logger logger = System.getLogger(HeartbeatScheduler.class.getName());
+
+    private final RegistryTransport transport;
+
+    private final RegistryClientConfig config;
+
+    private final Map<String, LocalInstance> instances = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    private volatile int consecutiveFailures;
+
+    HeartbeatScheduler(RegistryTransport transport, RegistryClientConfig config) {
+        this.transport = transport;
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "registry-client-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        // 首次心跳在一个周期内随机分布，避免大量进程同时启动时集中发送
+        scheduleNext((long) (ThreadLocalRandom.current().nextDouble() * config.getHeartbeatIntervalMillis()));
+    }
+
+    synchronized void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    void add(LocalInstance instance) {
+        instances.put(instance.key(), instance);
+    }
+
+    boolean remove(LocalInstance instance) {
+        return instances.remove(instance.key()) != null;
+    }
+
+    List<LocalInstance> instances() {
+        return new ArrayList<>(instances.values());
+    }
+
+    private void scheduleNext(long delayMillis) {
+        if (!running) {
+            return;
+        }
+        scheduler.schedule(this::tick, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            sendHeartbeats();
+            if (consecutiveFailures > 0) {
+                logger.log(System.Logger.Level.INFO, "心跳发送已恢复");
+            }
+            consecutiveFailures = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            if (consecutiveFailures++ == 0) {
+                logger.log(System.Logger.Level.WARNING, "发送心跳失败: " + e.getMessage());
+            }
+        }
+        double jitter = config.getHeartbeatJitterRatio();
+        double factor = 1 + (jitter > 0 ? ThreadLocalRandom.current().nextDouble(-jitter, jitter) : 0);
+        scheduleNext((long) (config.getHeartbeatIntervalMillis() * factor));
+    }
+
+    private void sendHeartbeats() throws IOException, InterruptedException {
+        List<LocalInstance> all = instances();
+        for (int offset = 0; offset < all.size(); offset += config.getHeartbeatBatchSize()) {
+            List<LocalInstance> batch = all.subList(offset, Math.min(all.size(), offset + config.getHeartbeatBatchSize()));
+            RegistryTransport.Reply reply = transport.send("PUT", "/api/services/batch/heartbeat", toIdentities(batch));
+            if (reply.status != 200) {
+                throw new IOException(reply.url + " 返回 HTTP " + reply.status);
+            }
+            List<LocalInstance> unknown = new ArrayList<>();
+            List<LocalInstance> down = new ArrayList<>();
+            for (JsonNode result : reply.body.path("data")) {
+                int index = result.path("index").asInt(-1);
+                if (index < 0 || index >= batch.size()) {
+                    continue;
+                }
+                if (!result.path("success").asBoolean()) {
+                    unknown.add(batch.get(index));
+                } else if ("DOWN".equals(result.path("status").asText()) && !result.path("healthCheckDown").asBoolean()) {
+                    down.add(batch.get(index));
+                }
+            }
+            if (!unknown.isEmpty()) {
+                logger.log(System.Logger.Level.INFO, "注册中心中不存在 " + unknown.size() + " 个实例，重新注册");
+            }
+            if (!down.isEmpty()) {
+                logger.log(System.Logger.Level.INFO, "注册中心中有 " + down.size() + " 个实例已离线，重新注册");
+            }
+            unknown.addAll(down);
+            if (!unknown.isEmpty()) {
+                register(unknown);
+            }
+        }
+    }
+
+    /**
+     * 批量注册实例
+     * @return 注册成功的实例数
+     */
+    int register(List<LocalInstance> batch) throws IOException, InterruptedException {
+        List<Map<String, Object>> body = toIdentities(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).getVirtualDomain() != null) {
+                body.get(i).put("virtualDomain", batch.get(i).getVirtualDomain());
+            }
+        }
+        RegistryTransport.Reply reply = transport.send("POST", "/api/services/batch", body);
+        if (reply.status != 200) {
+            throw new IOException(reply.url + " 返回 HTTP " + reply.status);
+        }
+        int succeeded = 0;
+        for (JsonNode result : reply.body.path("data")) {
+            if (result.path("success").asBoolean()) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    /**
+     * 批量注销实例
+     */
+    void deregister(List<LocalInstance> batch) throws IOException, InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        RegistryTransport.Reply reply = transport.send("POST", "/api/services/batch/deregister", toIdentities(batch));
+        if (reply.status != 200) {
+            throw new IOException(reply.url + " 返回 HTTP " + reply.status);
+        }
+    }
+
+    private static List<Map<String, Object>> toIdentities(List<LocalInstance> batch) {
+        List<Map<String, Object>> body = new ArrayList<>(batch.size());
+        for (LocalInstance instance : batch) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("serviceName", instance.getServiceName());
+            item.put("serviceVersion", instance.getServiceVersion());
+            item.put("ip", instance.getIp());
+            item.put("port", instance.getPort());
+            body.add(item);
+        }
+        return body;
+    }
+}
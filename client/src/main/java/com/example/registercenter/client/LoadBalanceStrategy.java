@@ -0,0 +1,13 @@
+package com.example.registercenter.client;
+
+/**
+ * 客户端负载均衡策略
+ */
+public enum LoadBalanceStrategy {
+
+    // 按服务轮询在线实例
+    ROUND_ROBIN,
+
+    // 按实例权重随机选择
+    WEIGHTED_RANDOM
+}
@@ -0,0 +1,84 @@
+package com.example.registercenter.client;
+
+import java.util.Objects;
+
+/**
+ * 由本进程注册并维持心跳的服务实例
+ */
+public final class LocalInstance {
+
+    private final String serviceName;
+
+    private final String serviceVersion;
+
+    private final String ip;
+
+    private final int port;
+
+    private final String virtualDomain;
+
+    private LocalInstance(String serviceName, String serviceVersion, String ip, int port, String virtualDomain) {
+        this.serviceName = Objects.requireNonNull(serviceName, "serviceName");
+        this.serviceVersion = Objects.requireNonNull(serviceVersion, "serviceVersion");
+        this.ip = Objects.requireNonNull(ip, "ip");
+        this.port = port;
+        this.virtualDomain = virtualDomain;
+    }
+
+    public static LocalInstance of(String serviceName, String serviceVersion, String ip, int port) {
+        return new LocalInstance(serviceName, serviceVersion, ip, port, null);
+    }
+
+    public static LocalInstance of(String serviceName, String serviceVersion, String ip, int port, String virtualDomain) {
+        return new LocalInstance(serviceName, serviceVersion, ip, port, virtualDomain);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getServiceVersion() {
+        return serviceVersion;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getVirtualDomain() {
+        return virtualDomain;
+    }
+
+    /**
+     * 实例标识：服务名、版本、IP、端口，与注册中心识别实例的方式一致
+     */
+    String key() {
+        return serviceName + '\n' + serviceVersion + '\n' + ip + '\n' + port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LocalInstance other)) {
+            return false;
+        }
+        return port == other.port && serviceName.equals(other.serviceName)
+                && serviceVersion.equals(other.serviceVersion) && ip.equals(other.ip);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serviceName, serviceVersion, ip, port);
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + " (v" + serviceVersion + ") - " + ip + ":" + port;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.registercenter.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 注册中心Java客户端
+ * 服务发现读取本地缓存，缓存通过长轮询和增量获取与注册中心保持同步，注册中心不可用时继续使用最后一次同步的结果
+ * 本进程注册的实例共用一个心跳调度器，合并为批量心跳发送；配置多个注册中心地址时自动故障转移
+ *
+ * <pre>
+ * RegistryClient client = new RegistryClient(RegistryClientConfig.builder()
+ *         .registryUrls("http://10.0.0.1:8761,http://10.0.0.2:8761")
+ *         .build());
+ * client.start();
+ * client.register(LocalInstance.of("order-service", "1.0", "10.0.1.5", 8080));
+ * ServiceInstance target = client.choose("user-service");
+ * </pre>
+ */
+public class RegistryClient implements AutoCloseable {
+
+    private static final System.Logger logger = System.getLogger(RegistryClient.class.getName());
+
+    private final RegistryClientConfig config;
+
+    private final DiscoveryCache discoveryCache;
+
+    private final HeartbeatScheduler heartbeatScheduler;
+
+    // 轮询计数器，按服务名保存
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    public RegistryClient(RegistryClientConfig config) {
+        this.config = config;
+        RegistryTransport transport = new RegistryTransport(config, new ObjectMapper());
+        this.discoveryCache = new DiscoveryCache(transport, config);
+        this.heartbeatScheduler = new HeartbeatScheduler(transport, config);
+    }
+
+    /**
+     * 同步一次服务列表并启动后台订阅和心跳，注册中心不可用时不抛出异常，后台继续重试
+     */
+    public void start() {
+        discoveryCache.start();
+        heartbeatScheduler.start();
+    }
+
+    /**
+     * 注册实例并由本客户端维持心跳
+     * 注册请求失败时实例仍会加入心跳，下一次心跳发现注册中心中不存在该实例时自动重新注册
+     * @return 注册请求是否成功
+     */
+    public boolean register(LocalInstance instance) {
+        heartbeatScheduler.add(instance);
+        try {
+            return heartbeatScheduler.register(List.of(instance)) == 1;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "注册实例失败，将在下次心跳时重试: " + instance + " - " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 停止实例的心跳并从注册中心注销
+     * @return 注销请求是否成功
+     */
+    public boolean deregister(LocalInstance instance) {
+        heartbeatScheduler.remove(instance);
+        try {
+            heartbeatScheduler.deregister(List.of(instance));
+            return true;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "注销实例失败: " + instance + " - " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 服务名下的在线实例，读取本地缓存
+     */
+    public List<ServiceInstance> getInstances(String serviceName) {
+        return discoveryCache.upInstances(serviceName);
+    }
+
+    /**
+     * 服务名和版本下的在线实例，读取本地缓存
+     */
+    public List<ServiceInstance> getInstances(String serviceName, String serviceVersion) {
+        List<ServiceInstance> result = new ArrayList<>();
+        for (ServiceInstance instance : discoveryCache.upInstances(serviceName)) {
+            if (instance.getServiceVersion().equals(serviceVersion)) {
+                result.add(instance);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 本地缓存中的所有实例，包括离线实例
+     */
+    public List<ServiceInstance> getAllInstances() {
+        return discoveryCache.all();
+    }
+
+    /**
+     * 按负载均衡策略选择一个在线实例，没有在线实例时返回null
+     */
+    public ServiceInstance choose(String serviceName) {
+        return choose(discoveryCache.upInstances(serviceName), serviceName);
+    }
+
+    /**
+     * 按负载均衡策略选择指定版本的一个在线实例，没有在线实例时返回null
+     */
+    public ServiceInstance choose(String serviceName, String serviceVersion) {
+        return choose(getInstances(serviceName, serviceVersion), serviceName + ":" + serviceVersion);
+    }
+
+    /**
+     * 本地缓存对应的注册表版本号，尚未同步时为-1
+     */
+    public long getRevision() {
+        return discoveryCache.getRevision();
+    }
+
+    /**
+     * 最近一次成功同步的时间（毫秒时间戳），尚未同步时为0
+     */
+    public long getLastSyncAt() {
+        return discoveryCache.getLastSyncAt();
+    }
+
+    /**
+     * 最近一次同步是否失败，为true时查询结果来自最后一次成功同步的快照
+     */
+    public boolean isStale() {
+        return discoveryCache.isStale();
+    }
+
+    /**
+     * 停止后台线程，按配置注销本客户端注册的实例
+     */
+    @Override
+    public void close() {
+        discoveryCache.stop();
+        heartbeatScheduler.stop();
+        if (config.isDeregisterOnClose()) {
+            try {
+                heartbeatScheduler.deregister(heartbeatScheduler.instances());
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "关闭客户端时注销实例失败: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ServiceInstance choose(List<ServiceInstance> instances, String sequenceKey) {
+        if (instances.isEmpty()) {
+            return null;
+        }
+        if (config.getLoadBalanceStrategy() == LoadBalanceStrategy.WEIGHTED_RANDOM) {
+            int total = 0;
+            for (ServiceInstance instance : instances) {
+                total += instance.getWeight();
+            }
+            int point = ThreadLocalRandom.current().nextInt(total);
+            for (ServiceInstance instance : instances) {
+                point -= instance.getWeight();
+                if (point < 0) {
+                    return instance;
+                }
+            }
+            return instances.get(instances.size() - 1);
+        }
+        long sequence = sequences.computeIfAbsent(sequenceKey, key -> new AtomicLong()).getAndIncrement();
+        return instances.get((int) Math.floorMod(sequence, (long) instances.size()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.registercenter.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端配置，通过builder创建
+ */
+public final class RegistryClientConfig {
+
+    private final List<String> registryUrls;
+
+    private final long heartbeatIntervalMillis;
+
+    private final double heartbeatJitterRatio;
+
+    private final int heartbeatBatchSize;
+
+    private final long watchTimeoutMillis;
+
+    private final long requestTimeoutMillis;
+
+    private final long connectTimeoutMillis;
+
+    private final long retryDelayMillis;
+
+    private final long maxRetryDelayMillis;
+
+    private final long failoverCooldownMillis;
+
+    private final LoadBalanceStrategy loadBalanceStrategy;
+
+    private final boolean deregisterOnClose;
+
+    private RegistryClientConfig(Builder builder) {
+        if (builder.registryUrls.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个注册中心地址");
+        }
+        this.registryUrls = List.copyOf(builder.registryUrls);
+        this.heartbeatIntervalMillis = builder.heartbeatIntervalMillis;
+        this.heartbeatJitterRatio = builder.heartbeatJitterRatio;
+        this.heartbeatBatchSize = builder.heartbeatBatchSize;
+        this.watchTimeoutMillis = builder.watchTimeoutMillis;
+        this.requestTimeoutMillis = builder.requestTimeoutMillis;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.retryDelayMillis = builder.retryDelayMillis;
+        this.maxRetryDelayMillis = builder.maxRetryDelayMillis;
+        this.failoverCooldownMillis = builder.failoverCooldownMillis;
+        this.loadBalanceStrategy = builder.loadBalanceStrategy;
+        this.deregisterOnClose = builder.deregisterOnClose;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<String> getRegistryUrls() {
+        return registryUrls;
+    }
+
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    public double getHeartbeatJitterRatio() {
+        return heartbeatJitterRatio;
+    }
+
+    public int getHeartbeatBatchSize() {
+        return heartbeatBatchSize;
+    }
+
+    public long getWatchTimeoutMillis() {
+        return watchTimeoutMillis;
+    }
+
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    public long getMaxRetryDelayMillis() {
+        return maxRetryDelayMillis;
+    }
+
+    public long getFailoverCooldownMillis() {
+        return failoverCooldownMillis;
+    }
+
+    public LoadBalanceStrategy getLoadBalanceStrategy() {
+        return loadBalanceStrategy;
+    }
+
+    public boolean isDeregisterOnClose() {
+        return deregisterOnClose;
+    }
+
+    public static final class Builder {
+
+        private final List<String> registryUrls = new ArrayList<>();
+
+        // 心跳间隔，应小于注册中心的心跳超时时间（默认90秒）
+        private long heartbeatIntervalMillis = 30_000;
+
+        // 心跳间隔的随机抖动比例，避免大量客户端同时发送心跳
+        private double heartbeatJitterRatio = 0.1;
+
+        // 单个批量心跳请求最多包含的实例数
+        private int heartbeatBatchSize = 500;
+
+        // 长轮询等待时间，不能超过注册中心的registry.watch.max-timeout-ms
+        private long watchTimeoutMillis = 30_000;
+
+        private long requestTimeoutMillis = 5_000;
+
+        private long connectTimeoutMillis = 2_000;
+
+        // 同步失败后的重试间隔，连续失败时翻倍直到上限
+        private long retryDelayMillis = 1_000;
+
+        private long maxRetryDelayMillis = 30_000;
+
+        // 请求失败的注册中心地址在该时间内排在其他地址之后
+        private long failoverCooldownMillis = 30_000;
+
+        private LoadBalanceStrategy loadBalanceStrategy = LoadBalanceStrategy.ROUND_ROBIN;
+
+        // 关闭客户端时注销本进程注册的实例
+        private boolean deregisterOnClose = true;
+
+        /**
+         * 添加注册中心地址，例如http://127.0.0.1:8761，可以添加多个，按添加顺序优先使用
+         */
+        public Builder registryUrl(String url) {
+            String trimmed = url.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (!trimmed.isEmpty()) {
+                registryUrls.add(trimmed);
+            }
+            return this;
+        }
+
+        /**
+         * 添加多个注册中心地址，逗号分隔
+         */
+        public Builder registryUrls(String urls) {
+            for (String url : urls.split(",")) {
+                registryUrl(url);
+            }
+            return this;
+        }
+
+        public Builder heartbeatIntervalMillis(long heartbeatIntervalMillis) {
+            this.heartbeatIntervalMillis = Math.max(1, heartbeatIntervalMillis);
+            return this;
+        }
+
+        public Builder heartbeatJitterRatio(double heartbeatJitterRatio) {
+            this.heartbeatJitterRatio = Math.min(Math.max(heartbeatJitterRatio, 0), 0.5);
+            return this;
+        }
+
+        public Builder heartbeatBatchSize(int heartbeatBatchSize) {
+            this.heartbeatBatchSize = Math.max(1, heartbeatBatchSize);
+            return this;
+        }
+
+        public Builder watchTimeoutMillis(long watchTimeoutMillis) {
+            this.watchTimeoutMillis = Math.max(1, watchTimeoutMillis);
+            return this;
+        }
+
+        public Builder requestTimeoutMillis(long requestTimeoutMillis) {
+            this.requestTimeoutMillis = Math.max(1, requestTimeoutMillis);
+            return this;
+        }
+
+        public Builder connectTimeoutMillis(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = Math.max(1, connectTimeoutMillis);
+            return this;
+        }
+
+        public Builder retryDelayMillis(long retryDelayMillis) {
+            this.retryDelayMillis = Math.max(1, retryDelayMillis);
+            return this;
+        }
+
+        public Builder maxRetryDelayMillis(long maxRetryDelayMillis) {
+            this.maxRetryDelayMillis = Math.max(1, maxRetryDelayMillis);
+            return this;
+        }
+
+        public Builder failoverCooldownMillis(long failoverCooldownMillis) {
+            this.failoverCooldownMillis = Math.max(0, failoverCooldownMillis);
+            return this;
+        }
+
+        public Builder loadBalanceStrategy(LoadBalanceStrategy loadBalanceStrategy) {
+            this.loadBalanceStrategy = loadBalanceStrategy;
+            return this;
+        }
+
+        public Builder deregisterOnClose(boolean deregisterOnClose) {
+            this.deregisterOnClose = deregisterOnClose;
+            return this;
+        }
+
+        public RegistryClientConfig build() {
+            return new RegistryClientConfig(this);
+        }
+    }
+}
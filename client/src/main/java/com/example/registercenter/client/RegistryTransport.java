@@ -0,0 +1,138 @@
+package com.example.registercenter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 访问注册中心的HTTP传输层，在多个注册中心地址之间故障转移
+ * 连接失败或返回5xx时依次尝试其他地址，失败的地址在冷却时间内排在其他地址之后
+ */
+class RegistryTransport {
+
+    private final List<String> urls;
+
+    private final long requestTimeoutMillis;
+
+    private final long failoverCooldownMillis;
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    // 各地址最近一次失败的时间，0表示正常
+    private final AtomicLongArray failedAt;
+
+    // 最近一次请求成功的地址下标
+    private volatile int preferred;
+
+    RegistryTransport(RegistryClientConfig config, ObjectMapper objectMapper) {
+        this.urls = config.getRegistryUrls();
+        this.requestTimeoutMillis = config.getRequestTimeoutMillis();
+        this.failoverCooldownMillis = config.getFailoverCooldownMillis();
+        this.objectMapper = objectMapper;
+        this.failedAt = new AtomicLongArray(urls.size());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()))
+                .build();
+    }
+
+    /**
+     * 注册中心的响应，url为实际处理请求的地址
+     */
+    static final class Reply {
+
+        final String url;
+
+        final int status;
+
+        final JsonNode body;
+
+        Reply(String url, int status, JsonNode body) {
+            this.url = url;
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    Reply get(String path, long timeoutMillis) throws IOException, InterruptedException {
+        return send("GET", path, null, timeoutMillis);
+    }
+
+    Reply send(String method, String path, Object body) throws IOException, InterruptedException {
+        return send(method, path, body, requestTimeoutMillis);
+    }
+
+    /**
+     * 发送请求，依次尝试各地址直到成功，所有地址都失败时抛出最后一次的异常
+     * 4xx响应视为成功返回，由调用方处理
+     */
+    Reply send(String method, String path, Object body, long timeoutMillis) throws IOException, InterruptedException {
+        byte[] payload = body == null ? null : objectMapper.writeValueAsBytes(body);
+        IOException lastError = null;
+        for (int index : order()) {
+            String url = urls.get(index);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + path))
+                    .timeout(Duration.ofMillis(timeoutMillis));
+            if (payload != null) {
+                builder.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(payload));
+            } else {
+                builder.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+            try {
+                HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() >= 500) {
+                    throw new IOException(url + path + " 返回 HTTP " + response.statusCode());
+                }
+                failedAt.set(index, 0);
+                preferred = index;
+                JsonNode json = response.body().length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+                return new Reply(url, response.statusCode(), json);
+            } catch (IOException e) {
+                failedAt.set(index, System.currentTimeMillis());
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new IOException("没有可用的注册中心地址");
+    }
+
+    /**
+     * 尝试顺序：最近成功的地址优先，其余地址按配置顺序，冷却中的地址排在最后
+     */
+    private int[] order() {
+        int size = urls.size();
+        int[] order = new int[size];
+        long now = System.currentTimeMillis();
+        int n = 0;
+        int first = preferred;
+        if (!coolingDown(first, now)) {
+            order[n++] = first;
+        }
+        for (int i = 0; i < size; i++) {
+            if (i != first && !coolingDown(i, now)) {
+                order[n++] = i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (coolingDown(i, now)) {
+                order[n++] = i;
+            }
+        }
+        return order;
+    }
+
+    private boolean coolingDown(int index, long now) {
+        long failed = failedAt.get(index);
+        return failed > 0 && now - failed < failoverCooldownMillis;
+    }
+}
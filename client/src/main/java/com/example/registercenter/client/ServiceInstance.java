@@ -0,0 +1,117 @@
+package com.example.registercenter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 本地缓存中的服务实例，不可变
+ */
+public final class ServiceInstance {
+
+    private final long id;
+
+    private final String serviceName;
+
+    private final String serviceVersion;
+
+    private final String ip;
+
+    private final int port;
+
+    private final String status;
+
+    private final int weight;
+
+    private final String virtualDomain;
+
+    // 实例最近一次变更时的注册表版本号，用于计算视图哈希
+    private final long revision;
+
+    ServiceInstance(long id, String serviceName, String serviceVersion, String ip, int port,
+                    String status, int weight, String virtualDomain, long revision) {
+        this.id = id;
+        this.serviceName = serviceName;
+        this.serviceVersion = serviceVersion;
+        this.ip = ip;
+        this.port = port;
+        this.status = status;
+        this.weight = weight;
+        this.virtualDomain = virtualDomain;
+        this.revision = revision;
+    }
+
+    static ServiceInstance fromJson(JsonNode node) {
+        int weight = node.path("weight").asInt(1);
+        return new ServiceInstance(
+                node.path("id").asLong(),
+                node.path("serviceName").asText(),
+                node.path("serviceVersion").asText(),
+                node.path("ip").asText(),
+                node.path("port").asInt(),
+                node.path("status").asText(),
+                weight > 0 ? weight : 1,
+                node.hasNonNull("virtualDomain") ? node.get("virtualDomain").asText() : null,
+                node.path("revision").asLong());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getServiceVersion() {
+        return serviceVersion;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public String getVirtualDomain() {
+        return virtualDomain;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isUp() {
+        return "UP".equals(status);
+    }
+
+    /**
+     * 实例地址，格式为IP:端口
+     */
+    public String getAuthority() {
+        return ip + ":" + port;
+    }
+
+    /**
+     * 实例哈希，与注册中心的视图哈希算法一致
+     */
+    long hash() {
+        long h = id * 0x9E3779B97F4A7C15L ^ revision;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + " (v" + serviceVersion + ") - " + getAuthority() + " " + status;
+    }
+}
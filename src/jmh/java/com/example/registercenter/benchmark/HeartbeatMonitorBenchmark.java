@@ -0,0 +1,106 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.HeartbeatMonitorService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 心跳超时检查基准测试，测量一次检查的耗时
+ * 每轮测量前将指定比例的实例的最后心跳时间改为一小时前，本次检查需要将这些实例标记为离线，
+ * 测量结束后重新注册恢复在线；expiredPercent为0时测量没有实例超时的一次检查
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HeartbeatMonitorBenchmark {
+
+    // 检查间隔，同时也是时间轮的刻度，每轮测量前最多等待一个刻度
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final Integer PORT = RegistryFixture.PORT;
+
+    @Param({"100", "10000", "100000"})
+    private int instances;
+
+    @Param({"0", "1", "10"})
+    private int expiredPercent;
+
+    private ConfigurableApplicationContext context;
+
+    private ServiceRegistryService registry;
+
+    private RegistryCache registryCache;
+
+    private HeartbeatMonitorService heartbeatMonitorService;
+
+    private List<RegisteredService> expired = List.of();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = RegistryFixture.start("--registry.heartbeat.check-interval-ms=" + CHECK_INTERVAL_MILLIS);
+        registry = context.getBean(ServiceRegistryService.class);
+        registryCache = context.getBean(RegistryCache.class);
+        heartbeatMonitorService = context.getBean(HeartbeatMonitorService.class);
+        RegistryFixture.registerFleet(registry, instances);
+        // 首次检查会扫描所有槽位，不计入测量
+        heartbeatMonitorService.checkHeartbeats();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void expireInstances() throws InterruptedException {
+        int count = instances * expiredPercent / 100;
+        LocalDateTime stale = LocalDateTime.now().minusHours(1);
+        expired = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            // 超时的实例均匀分布在各个服务中
+            int i = k * (instances / count);
+            RegisteredService service = registryCache.findInstance(
+                    RegistryFixture.serviceName(i), RegistryFixture.SERVICE_VERSION, RegistryFixture.ip(i), PORT);
+            service.setLastHeartbeat(stale);
+            heartbeatMonitorService.track(service);
+            expired.add(RegistryFixture.instance(i));
+        }
+        // 等到下一个刻度，保证本次检查会处理登记了超时的槽位
+        Thread.sleep(CHECK_INTERVAL_MILLIS - System.currentTimeMillis() % CHECK_INTERVAL_MILLIS + 1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void restoreInstances() {
+        if (!expired.isEmpty()) {
+            registry.registerServices(expired);
+        }
+    }
+
+    @Benchmark
+    public void checkHeartbeats() {
+        heartbeatMonitorService.checkHeartbeats();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.service.ServiceRegistryService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理请求端到端基准测试：客户端经过注册中心的/proxy接口访问本机的上游服务
+ * 注册表中除上游服务外还有指定规模的其他实例，用于观察注册表规模对代理路径的影响
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProxyEndToEndBenchmark {
+
+    private static final String UPSTREAM_SERVICE = "bench-upstream";
+
+    // 上游服务的实例数，每个实例是一个监听本机不同端口的HTTP服务
+    private static final int UPSTREAM_INSTANCES = 4;
+
+    private static final byte[] RESPONSE_BODY = "pong".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"100", "10000", "100000"})
+    private int instances;
+
+    private ConfigurableApplicationContext context;
+
+    private final List<HttpServer> upstreams = new ArrayList<>();
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = RegistryFixture.start();
+        ServiceRegistryService registry = context.getBean(ServiceRegistryService.class);
+        RegistryFixture.registerFleet(registry, instances);
+
+        for (int i = 0; i < UPSTREAM_INSTANCES; i++) {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(200, RESPONSE_BODY.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(RESPONSE_BODY);
+                }
+            });
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+            upstreams.add(server);
+            registry.registerService(UPSTREAM_SERVICE, RegistryFixture.SERVICE_VERSION, "127.0.0.1", server.getAddress().getPort());
+        }
+
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/proxy/" + UPSTREAM_SERVICE + "/ping"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        for (HttpServer server : upstreams) {
+            server.stop(0);
+        }
+        upstreams.clear();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int proxy() throws IOException, InterruptedException {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int proxyContended() throws IOException, InterruptedException {
+        return send();
+    }
+
+    private int send() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("代理请求失败，状态码：" + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
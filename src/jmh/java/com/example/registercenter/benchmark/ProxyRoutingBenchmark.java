@@ -0,0 +1,118 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.cluster.ClusterRateLimiter;
+import com.example.registercenter.proxy.LoadBalancerService;
+import com.example.registercenter.proxy.RouteTable;
+import com.example.registercenter.proxy.ServiceUpstreams;
+import com.example.registercenter.proxy.Upstream;
+import com.example.registercenter.service.RateLimitRuleService;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理请求路径中转发之前的部分：解析路由、检查限流规则、负载均衡选择实例、检查实例限流
+ * 与VirtualDomainProxyController中的顺序一致，不包含网络转发，转发的开销见ProxyEndToEndBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProxyRoutingBenchmark {
+
+    private static final String PATH = "/ping";
+
+    @Param({"100", "10000", "100000"})
+    private int instances;
+
+    private ConfigurableApplicationContext context;
+
+    private RouteTable routeTable;
+
+    private RateLimitRuleService rateLimitRuleService;
+
+    private LoadBalancerService loadBalancerService;
+
+    private ClusterRateLimiter clusterRateLimiter;
+
+    private String[] serviceNames;
+
+    /**
+     * 每个线程使用自己的请求对象，模拟各自独立的客户端请求
+     */
+    @State(Scope.Thread)
+    public static class Request {
+        private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/proxy/bench" + PATH);
+
+        @Setup(Level.Trial)
+        public void setup() {
+            request.setRemoteAddr("192.168.0." + ThreadLocalRandom.current().nextInt(1, 255));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = RegistryFixture.start();
+        RegistryFixture.registerFleet(context.getBean(ServiceRegistryService.class), instances);
+        routeTable = context.getBean(RouteTable.class);
+        rateLimitRuleService = context.getBean(RateLimitRuleService.class);
+        loadBalancerService = context.getBean(LoadBalancerService.class);
+        clusterRateLimiter = context.getBean(ClusterRateLimiter.class);
+        serviceNames = new String[RegistryFixture.serviceCount(instances)];
+        for (int i = 0; i < serviceNames.length; i++) {
+            serviceNames[i] = RegistryFixture.serviceName(i * RegistryFixture.INSTANCES_PER_SERVICE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Upstream route(Request request) {
+        return routeOnce(request.request);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Upstream routeContended(Request request) {
+        return routeOnce(request.request);
+    }
+
+    private Upstream routeOnce(MockHttpServletRequest request) {
+        String serviceName = serviceNames[ThreadLocalRandom.current().nextInt(serviceNames.length)];
+        ServiceUpstreams route = routeTable.resolve(serviceName);
+        RateLimitRuleService.Admission admission = rateLimitRuleService.check(serviceName, PATH, request);
+        if (admission.getDeniedBy() != null) {
+            return null;
+        }
+        Upstream target = loadBalancerService.choose(route, loadBalancerService.hashKeyOf(route, request), Set.of());
+        if (target != null && target.isRateLimited() && !clusterRateLimiter.isAllowed(target)) {
+            admission.refund();
+            return null;
+        }
+        return target;
+    }
+}
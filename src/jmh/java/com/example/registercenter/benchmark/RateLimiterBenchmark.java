@@ -0,0 +1,98 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.util.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器基准测试
+ * 热点键：所有线程争用同一个键的CAS；全量键：请求随机分布在所有实例的键上，衡量键数量对查找的影响
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RateLimiterBenchmark {
+
+    // 足够高的速率，保证测量的是放行路径
+    private static final int UNLIMITED_RATE = 100_000_000;
+
+    @Param({"100", "10000", "100000"})
+    private int keys;
+
+    private String[] rateLimitKeys;
+
+    private String rejectedKey;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RateLimiter.resetAll();
+        rateLimitKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            // 与Upstream中的限流键格式一致：服务名:IP:端口
+            rateLimitKeys[i] = RegistryFixture.serviceName(i) + ":" + RegistryFixture.ip(i) + ":" + RegistryFixture.PORT;
+            RateLimiter.isAllowed(rateLimitKeys[i], UNLIMITED_RATE);
+        }
+        rejectedKey = "bench-rejected";
+        RateLimiter.isAllowed(rejectedKey, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RateLimiter.resetAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean hotKey() {
+        return RateLimiter.isAllowed(rateLimitKeys[0], UNLIMITED_RATE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean hotKeyContended() {
+        return RateLimiter.isAllowed(rateLimitKeys[0], UNLIMITED_RATE);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean fleet() {
+        return RateLimiter.isAllowed(randomKey(), UNLIMITED_RATE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean fleetContended() {
+        return RateLimiter.isAllowed(randomKey(), UNLIMITED_RATE);
+    }
+
+    /**
+     * 令牌已耗尽的键，测量拒绝路径
+     */
+    @Benchmark
+    @Threads(8)
+    public boolean rejectedContended() {
+        return RateLimiter.isAllowed(rejectedKey, 1);
+    }
+
+    private String randomKey() {
+        return rateLimitKeys[ThreadLocalRandom.current().nextInt(keys)];
+    }
+}
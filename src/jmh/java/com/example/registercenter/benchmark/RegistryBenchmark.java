@@ -0,0 +1,90 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册与心跳基准测试，实例随机选取，覆盖单线程和多线程并发的情况
+ * 重复注册已存在的实例是实例重启时的常见路径，注册新实例会改变注册表规模，不在此测量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RegistryBenchmark {
+
+    private static final Integer PORT = RegistryFixture.PORT;
+
+    @Param({"100", "10000", "100000"})
+    private int instances;
+
+    private ConfigurableApplicationContext context;
+
+    private ServiceRegistryService registry;
+
+    private String[] serviceNames;
+
+    private String[] ips;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = RegistryFixture.start();
+        registry = context.getBean(ServiceRegistryService.class);
+        RegistryFixture.registerFleet(registry, instances);
+        serviceNames = RegistryFixture.serviceNames(instances);
+        ips = RegistryFixture.ips(instances);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean sendHeartbeat() {
+        int i = ThreadLocalRandom.current().nextInt(instances);
+        return registry.sendHeartbeat(serviceNames[i], RegistryFixture.SERVICE_VERSION, ips[i], PORT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean sendHeartbeatContended() {
+        int i = ThreadLocalRandom.current().nextInt(instances);
+        return registry.sendHeartbeat(serviceNames[i], RegistryFixture.SERVICE_VERSION, ips[i], PORT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RegisteredService registerService() {
+        int i = ThreadLocalRandom.current().nextInt(instances);
+        return registry.registerService(serviceNames[i], RegistryFixture.SERVICE_VERSION, ips[i], PORT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public RegisteredService registerServiceContended() {
+        int i = ThreadLocalRandom.current().nextInt(instances);
+        return registry.registerService(serviceNames[i], RegistryFixture.SERVICE_VERSION, ips[i], PORT);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.registercenter.benchmark;
+
+import com.example.registercenter.RegisterCenterApplication;
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 基准测试使用的注册中心：内存H2数据库、随机端口、关闭定时任务，并按指定规模注册实例
+ * 实例由序号生成，同一个序号在各个基准测试中对应同一个服务名和地址，保证不同提交之间的结果可比
+ */
+final class RegistryFixture {
+
+    static final String SERVICE_VERSION = "1.0.0";
+    static final int PORT = 8080;
+
+    // 每个服务的实例数，实例按序号依次分配到各个服务
+    static final int INSTANCES_PER_SERVICE = 100;
+
+    // 单个批量注册事务包含的实例数
+    private static final int REGISTER_BATCH_SIZE = 1000;
+
+    private RegistryFixture() {
+    }
+
+    /**
+     * 启动注册中心，extraArgs为额外的配置，格式与命令行参数相同（--key=value）
+     * 使用命令行参数而不是默认属性，保证覆盖application.properties中的数据库等配置
+     */
+    static ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.h2.console.enabled=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--server.port=0",
+                "--registry.scheduling.enabled=false"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(RegisterCenterApplication.class).run(args.toArray(String[]::new));
+    }
+
+    /**
+     * 注册序号为[0, instances)的实例，每批在一个事务中注册
+     */
+    static void registerFleet(ServiceRegistryService registry, int instances) {
+        for (int from = 0; from < instances; from += REGISTER_BATCH_SIZE) {
+            int to = Math.min(from + REGISTER_BATCH_SIZE, instances);
+            List<RegisteredService> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(instance(i));
+            }
+            registry.registerServices(batch);
+        }
+    }
+
+    static RegisteredService instance(int index) {
+        RegisteredService service = new RegisteredService();
+        service.setServiceName(serviceName(index));
+        service.setServiceVersion(SERVICE_VERSION);
+        service.setIp(ip(index));
+        service.setPort(PORT);
+        return service;
+    }
+
+    static String serviceName(int index) {
+        return "bench-service-" + index / INSTANCES_PER_SERVICE;
+    }
+
+    /**
+     * 序号对应的实例地址，10.0.0.0/8网段足够容纳所有规模
+     */
+    static String ip(int index) {
+        return "10." + (index >>> 16 & 0xFF) + "." + (index >>> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+
+    static int serviceCount(int instances) {
+        return (instances + INSTANCES_PER_SERVICE - 1) / INSTANCES_PER_SERVICE;
+    }
+
+    /**
+     * 预先生成各实例的服务名，避免在测量循环中拼接字符串
+     */
+    static String[] serviceNames(int instances) {
+        String[] names = new String[instances];
+        for (int i = 0; i < instances; i++) {
+            names[i] = serviceName(i);
+        }
+        return names;
+    }
+
+    static String[] ips(int instances) {
+        String[] ips = new String[instances];
+        for (int i = 0; i < instances; i++) {
+            ips[i] = ip(i);
+        }
+        return ips;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.registercenter.cluster;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 节点注册表摘要，用于反熵同步：先比较整体哈希，不一致时再按实例比较版本
+ */
+@Data
+public class ClusterDigest {
+
+    private String nodeId;
+
+    // 所有实例和删除标记摘要哈希的异或
+    private long hash;
+
+    private List<DigestEntry> entries = new ArrayList<>();
+
+}
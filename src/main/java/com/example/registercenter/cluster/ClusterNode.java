@@ -0,0 +1,270 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryChangeEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 当前节点在集群中的身份与待复制的变更
+ * 每次本地修改实例时写入版本（修改时间戳和节点ID），各节点按版本以较新者为准（last-writer-wins）
+ * 本地产生的注册表变更和心跳先按实例合并，由ClusterReplicationService定时批量发送给其他节点
+ * 删除的实例保留带版本的删除标记，在反熵同步中与实例一起比较版本，避免其他节点把已删除的实例重新同步回来
+ */
+@Component
+public class ClusterNode {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Value("${registry.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${registry.follower.enabled:false}")
+    private boolean followerEnabled;
+
+    // 节点ID，用于版本时间戳相同时决定先后，各节点必须不同
+    @Value("${registry.cluster.node-id:node-${server.port:8761}}")
+    private String nodeId;
+
+    // 其他节点的地址，逗号分隔，例如http://127.0.0.1:8762
+    @Value("${registry.cluster.peers:}")
+    private String peersConfig;
+
+    // 删除标记的保留时间（毫秒），按删除时的版本时间戳计算，至少为两个反熵同步间隔
+    @Value("${registry.cluster.tombstone-ttl-ms:600000}")
+    private long tombstoneTtlMillis;
+
+    @Value("${registry.cluster.anti-entropy-interval-ms:30000}")
+    private long antiEntropyIntervalMillis;
+
+    private List<String> peers = List.of();
+
+    // 待复制的实例变更，同一实例只保留最新一条
+    private final Map<String, ReplicationRecord> pendingRecords = new ConcurrentHashMap<>();
+
+    // 待复制的心跳，同一实例只保留最新一次
+    private final Map<String, HeartbeatRecord> pendingHeartbeats = new ConcurrentHashMap<>();
+
+    // 删除标记，保存删除时的实例和版本
+    private final Map<String, RegisteredService> tombstones = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        List<String> parsed = new ArrayList<>();
+        for (String peer : peersConfig.split(",")) {
+            String trimmed = peer.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (!trimmed.isEmpty()) {
+                parsed.add(trimmed);
+            }
+        }
+        peers = List.copyOf(parsed);
+        if (enabled && followerEnabled) {
+            // 从节点只接收主节点的变更，不参与对等复制
+            logger.warn("从节点模式下不启用集群复制");
+            enabled = false;
+        }
+        long minTombstoneTtl = antiEntropyIntervalMillis * 2;
+        if (tombstoneTtlMillis < minTombstoneTtl) {
+            // 删除标记在所有节点完成反熵同步之前过期会导致已删除的实例被重新同步回来
+            logger.warn("删除标记保留时间 {} 毫秒小于两个反熵同步间隔，调整为 {} 毫秒", tombstoneTtlMillis, minTombstoneTtl);
+            tombstoneTtlMillis = minTombstoneTtl;
+        }
+        if (enabled) {
+            registryCache.addListener(this::onChange);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    /**
+     * 本地修改实例前写入新版本，时间戳至少比原版本大1，保证本节点的连续修改版本递增
+     */
+    public void stamp(RegisteredService service) {
+        long previous = service.getModifiedAt() != null ? service.getModifiedAt() : 0;
+        service.setModifiedAt(Math.max(System.currentTimeMillis(), previous + 1));
+        service.setModifiedBy(nodeId);
+    }
+
+    /**
+     * 记录本地收到的心跳
+     */
+    public void onHeartbeat(RegisteredService service) {
+        if (!enabled || ReplicaContext.isApplying()) {
+            return;
+        }
+        pendingHeartbeats.put(keyOf(service), HeartbeatRecord.of(service));
+    }
+
+    /**
+     * 取出所有待复制的实例变更
+     */
+    public List<ReplicationRecord> drainRecords() {
+        List<ReplicationRecord> records = new ArrayList<>(pendingRecords.size());
+        for (Map.Entry<String, ReplicationRecord> entry : pendingRecords.entrySet()) {
+            // 只有在未被新变更覆盖时才移除，避免丢失取出期间产生的变更
+            if (pendingRecords.remove(entry.getKey(), entry.getValue())) {
+                records.add(entry.getValue());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 取出所有待复制的心跳
+     */
+    public List<HeartbeatRecord> drainHeartbeats() {
+        List<HeartbeatRecord> heartbeats = new ArrayList<>(pendingHeartbeats.size());
+        for (Map.Entry<String, HeartbeatRecord> entry : pendingHeartbeats.entrySet()) {
+            if (pendingHeartbeats.remove(entry.getKey(), entry.getValue())) {
+                heartbeats.add(entry.getValue());
+            }
+        }
+        return heartbeats;
+    }
+
+    /**
+     * 实例的删除标记，不存在或已过期时返回null
+     */
+    public RegisteredService tombstoneOf(String key) {
+        RegisteredService tombstone = tombstones.get(key);
+        return tombstone != null && !isExpired(tombstone) ? tombstone : null;
+    }
+
+    /**
+     * 所有未过期的删除标记
+     */
+    public List<RegisteredService> listTombstones() {
+        List<RegisteredService> result = new ArrayList<>(tombstones.size());
+        for (RegisteredService tombstone : tombstones.values()) {
+            if (!isExpired(tombstone)) {
+                result.add(tombstone);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录删除标记，已有较新的删除标记或删除标记已过期时忽略
+     * @param service 被删除的实例，版本为删除时的版本
+     * @return 是否记录
+     */
+    public boolean recordTombstone(RegisteredService service) {
+        if (isExpired(service)) {
+            return false;
+        }
+        RegisteredService tombstone = service.copy();
+        String key = keyOf(tombstone);
+        RegisteredService merged = tombstones.merge(key, tombstone,
+                (current, candidate) -> isNewer(candidate, current) ? candidate : current);
+        return merged == tombstone;
+    }
+
+    /**
+     * 实例以较新的版本重新出现时移除删除标记
+     */
+    public void clearTombstone(RegisteredService service) {
+        tombstones.computeIfPresent(keyOf(service), (key, tombstone) -> isNewer(service, tombstone) ? null : tombstone);
+    }
+
+    /**
+     * 清理过期的删除标记
+     * @return 清理的数量
+     */
+    public int purgeTombstones() {
+        int purged = 0;
+        for (Map.Entry<String, RegisteredService> entry : tombstones.entrySet()) {
+            if (isExpired(entry.getValue()) && tombstones.remove(entry.getKey(), entry.getValue())) {
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    public int tombstoneCount() {
+        return tombstones.size();
+    }
+
+    public int pendingRecordCount() {
+        return pendingRecords.size();
+    }
+
+    public int pendingHeartbeatCount() {
+        return pendingHeartbeats.size();
+    }
+
+    /**
+     * 注册表变更监听器，在注册表写锁内同步调用，只记录本地产生的变更
+     */
+    private void onChange(RegistryChangeEvent event) {
+        if (ReplicaContext.isApplying()) {
+            return;
+        }
+        RegisteredService service = event.getService().copy();
+        boolean deleted = event.getType() == RegistryChangeEvent.Type.REMOVED;
+        if (deleted) {
+            // 删除没有对应的数据库记录，删除标记的版本在此生成
+            stamp(service);
+            recordTombstone(service);
+        } else {
+            clearTombstone(service);
+        }
+        pendingRecords.put(keyOf(service), new ReplicationRecord(service, deleted));
+    }
+
+    private boolean isExpired(RegisteredService tombstone) {
+        long modifiedAt = tombstone.getModifiedAt() != null ? tombstone.getModifiedAt() : 0;
+        return System.currentTimeMillis() - modifiedAt > tombstoneTtlMillis;
+    }
+
+    /**
+     * 实例在集群中的标识：服务名、版本、IP、端口
+     */
+    public static String keyOf(RegisteredService service) {
+        return keyOf(service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
+    }
+
+    public static String keyOf(String serviceName, String serviceVersion, String ip, Integer port) {
+        return serviceName + '\n' + serviceVersion + '\n' + ip + '\n' + port;
+    }
+
+    /**
+     * 实例a的版本是否比实例b新：先比较修改时间戳，相同时比较节点ID
+     */
+    public static boolean isNewer(RegisteredService a, RegisteredService b) {
+        return compareVersions(a.getModifiedAt(), a.getModifiedBy(), b.getModifiedAt(), b.getModifiedBy()) > 0;
+    }
+
+    public static int compareVersions(Long aModifiedAt, String aModifiedBy, Long bModifiedAt, String bModifiedBy) {
+        int byTime = Long.compare(aModifiedAt != null ? aModifiedAt : 0, bModifiedAt != null ? bModifiedAt : 0);
+        if (byTime != 0) {
+            return byTime;
+        }
+        return (aModifiedBy != null ? aModifiedBy : "").compareTo(bModifiedBy != null ? bModifiedBy : "");
+    }
+}
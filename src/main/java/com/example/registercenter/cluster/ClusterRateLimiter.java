@@ -0,0 +1,333 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.proxy.Upstream;
+import com.example.registercenter.util.RateLimiter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分布式限流：多个注册中心节点共同转发同一服务时，服务配置的每秒请求数是所有节点合计的上限
+ * 每个节点只使用分给自己的一部分速率，请求检查仍在本地无锁完成；各节点定时交换各限流键的请求量，按请求量重新分配份额
+ * 份额 = 保底份额 + 剩余份额按请求量占比分配，所有存活节点的份额之和不超过1
+ * 超过peer-timeout-ms未交换的节点视为离线，其份额分给其他节点；网络分区期间各分区按自己看到的节点数分配，合计速率可能超过上限
+ */
+@Component
+public class ClusterRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRateLimiter.class);
+
+    // 请求量的指数平滑系数
+    private static final double DEMAND_SMOOTHING = 0.5;
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${rate-limit.distributed.enabled:false}")
+    private boolean enabled;
+
+    // 共同限流的其他节点地址，默认与集群复制的节点相同
+    @Value("${rate-limit.distributed.peers:${registry.cluster.peers:}}")
+    private String peersConfig;
+
+    // 超过该时间（毫秒）未交换请求量的节点视为离线
+    @Value("${rate-limit.distributed.peer-timeout-ms:5000}")
+    private long peerTimeoutMillis;
+
+    // 所有节点保底份额之和占全局速率的百分比，保证请求量为0的节点收到请求时仍可放行
+    @Value("${rate-limit.distributed.min-share-percent:10}")
+    private double minSharePercent;
+
+    // 限流键连续空闲超过该时间（毫秒）后不再上报
+    @Value("${rate-limit.distributed.idle-ms:60000}")
+    private long idleMillis;
+
+    // 交换请求量的超时时间（毫秒）
+    @Value("${rate-limit.distributed.request-timeout-ms:2000}")
+    private long requestTimeoutMillis;
+
+    private List<String> peers = List.of();
+
+    private HttpClient httpClient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 本节点各限流键的请求量与份额
+    private final Map<String, KeyState> keys = new ConcurrentHashMap<>();
+
+    // 其他节点最近一次上报的请求量，按节点ID保存
+    private final Map<String, PeerReport> peerReports = new ConcurrentHashMap<>();
+
+    // 新出现的限流键在下一次重新分配前使用的份额，取保底份额：其他节点可能已按请求量分走了其余份额，
+    // 用平均份额会在下一次重新分配前超出全局速率；代价是新限流键在第一个重新分配周期内放行偏少
+    private volatile double defaultShare = 1.0;
+
+    private volatile RateLimitReport localReport;
+
+    private long startedAt;
+
+    private long lastRebalanceNanos;
+
+    @PostConstruct
+    public void init() {
+        List<String> parsed = new ArrayList<>();
+        for (String peer : peersConfig.split(",")) {
+            String trimmed = peer.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (!trimmed.isEmpty()) {
+                parsed.add(trimmed);
+            }
+        }
+        peers = List.copyOf(parsed);
+        // 尚未与其他节点交换前按配置的节点数计算保底份额，避免启动时超出全局速率
+        defaultShare = floorShare(peers.size() + 1);
+        startedAt = System.currentTimeMillis();
+        lastRebalanceNanos = System.nanoTime();
+        localReport = emptyReport();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 检查实例自身的限流配置是否允许请求通过，未启用分布式限流时只在本节点计数
+     */
+    public boolean isAllowed(Upstream target) {
+        if (!enabled) {
+            return RateLimiter.isAllowed(target.getRateLimitKey(), target.getMaxRequestsPerSecond(), target.getRateLimitBurst());
+        }
+        String key = target.getRateLimitKey();
+        KeyState state = keys.get(key);
+        if (state == null) {
+            state = keys.computeIfAbsent(key, k -> new KeyState(defaultShare));
+        }
+        state.requests.increment();
+        double share = state.share;
+        return RateLimiter.isAllowed(key, target.getMaxRequestsPerSecond() * share, target.getRateLimitBurst() * share);
+    }
+
+    /**
+     * 定时统计本节点的请求量，与其他节点交换后重新计算份额
+     */
+    @Scheduled(fixedRateString = "${rate-limit.distributed.rebalance-interval-ms:1000}")
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        double elapsedSeconds = Math.max(1e-3, (nowNanos - lastRebalanceNanos) / 1e9);
+        lastRebalanceNanos = nowNanos;
+        long now = System.currentTimeMillis();
+
+        RateLimitReport report = emptyReport();
+        keys.entrySet().removeIf(entry -> {
+            KeyState state = entry.getValue();
+            long count = state.requests.sumThenReset();
+            if (count > 0) {
+                state.lastActiveAt = now;
+            } else if (now - state.lastActiveAt > idleMillis) {
+                return true;
+            }
+            double rate = count / elapsedSeconds;
+            state.demand = state.demand < 0 ? rate : DEMAND_SMOOTHING * rate + (1 - DEMAND_SMOOTHING) * state.demand;
+            report.getDemands().put(entry.getKey(), state.demand);
+            return false;
+        });
+        localReport = report;
+
+        // 交换结束后再计算份额，定时任务线程不等待其他节点的响应
+        exchange(report).whenComplete((ignored, error) -> recomputeShares(System.currentTimeMillis()));
+    }
+
+    /**
+     * 接收其他节点的请求量，返回本节点的请求量
+     */
+    public RateLimitReport onReport(RateLimitReport report) {
+        if (report.getNodeId() != null && !report.getNodeId().equals(clusterNode.getNodeId())) {
+            peerReports.put(report.getNodeId(), new PeerReport(report, System.currentTimeMillis()));
+        }
+        return localReport;
+    }
+
+    /**
+     * 各限流键在本节点的份额与请求量
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("nodeId", clusterNode.getNodeId());
+        result.put("liveNodes", liveReports(now).size() + 1);
+        List<Map<String, Object>> items = new ArrayList<>();
+        keys.forEach((key, state) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("key", key);
+            item.put("share", state.share);
+            item.put("localDemand", Math.max(0, state.demand));
+            double clusterDemand = Math.max(0, state.demand);
+            for (RateLimitReport peer : liveReports(now)) {
+                clusterDemand += peer.getDemands().getOrDefault(key, 0.0);
+            }
+            item.put("clusterDemand", clusterDemand);
+            items.add(item);
+        });
+        result.put("keys", items);
+        return result;
+    }
+
+    private CompletableFuture<Void> exchange(RateLimitReport report) {
+        if (peers.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(report);
+        } catch (IOException e) {
+            logger.error("序列化限流请求量失败", e);
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String peer : peers) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(peer + "/api/cluster/rate-limit"))
+                    .timeout(Duration.ofMillis(requestTimeoutMillis))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            return;
+                        }
+                        try {
+                            JsonNode data = objectMapper.readTree(response.body()).path("data");
+                            onReport(objectMapper.treeToValue(data, RateLimitReport.class));
+                        } catch (IOException e) {
+                            logger.debug("解析节点 {} 的限流请求量失败: {}", peer, e.getMessage());
+                        }
+                    })
+                    .exceptionally(e -> {
+                        logger.debug("与节点 {} 交换限流请求量失败: {}", peer, e.getMessage());
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new));
+    }
+
+    private void recomputeShares(long now) {
+        List<RateLimitReport> live = liveReports(now);
+        int nodes = live.size() + 1;
+        if (now - startedAt < peerTimeoutMillis) {
+            // 启动后的一段时间内尚未联系上的节点也计入，避免独占全局速率
+            nodes = Math.max(nodes, peers.size() + 1);
+        }
+        double floor = Math.min(Math.max(minSharePercent, 0), 100) / 100.0 / nodes;
+        double proportional = 1.0 - floor * nodes;
+        defaultShare = floorShare(nodes);
+        for (Map.Entry<String, KeyState> entry : keys.entrySet()) {
+            KeyState state = entry.getValue();
+            double local = Math.max(0, state.demand);
+            double total = local;
+            for (RateLimitReport peer : live) {
+                total += peer.getDemands().getOrDefault(entry.getKey(), 0.0);
+            }
+            state.share = total > 0 ? floor + proportional * local / total : 1.0 / nodes;
+        }
+        peerReports.values().removeIf(report -> now - report.receivedAt > peerTimeoutMillis * 10);
+    }
+
+    /**
+     * 新限流键的份额：只有本节点时为全部速率，否则为保底份额
+     */
+    private double floorShare(int nodes) {
+        if (nodes <= 1) {
+            return 1.0;
+        }
+        return Math.min(Math.max(minSharePercent, 0), 100) / 100.0 / nodes;
+    }
+
+    private List<RateLimitReport> liveReports(long now) {
+        List<RateLimitReport> live = new ArrayList<>();
+        for (PeerReport report : peerReports.values()) {
+            if (now - report.receivedAt <= peerTimeoutMillis) {
+                live.add(report.report);
+            }
+        }
+        return live;
+    }
+
+    private RateLimitReport emptyReport() {
+        RateLimitReport report = new RateLimitReport();
+        report.setNodeId(clusterNode.getNodeId());
+        return report;
+    }
+
+    /**
+     * 本节点单个限流键的状态，requests在请求路径上累加，其他字段只由重新分配线程写入
+     */
+    private static class KeyState {
+
+        private final LongAdder requests = new LongAdder();
+
+        // 平滑后的每秒请求数，-1表示尚未统计
+        private volatile double demand = -1;
+
+        private volatile double share;
+
+        private volatile long lastActiveAt = System.currentTimeMillis();
+
+        KeyState(double share) {
+            this.share = share;
+        }
+    }
+
+    private static class PeerReport {
+
+        private final RateLimitReport report;
+
+        private final long receivedAt;
+
+        PeerReport(RateLimitReport report, long receivedAt) {
+            this.report = report;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.ServiceRegistryService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点之间的对等复制（AP）：任意节点都可以接受写入，本地变更定时批量推送给所有其他节点
+ * 推送失败不重试，由定时的反熵同步修复：与随机一个节点比较注册表摘要，拉取对方较新的实例并推送本地较新的实例
+ * 摘要包含未过期的删除标记，删除与注册一样按版本比较，不会被仍保留旧实例的节点同步回来
+ * 网络分区期间各分区独立提供服务，分区恢复后按版本（修改时间戳、节点ID）收敛，同一实例以较新的修改为准
+ */
+@Service
+public class ClusterReplicationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterReplicationService.class);
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    @Autowired
+    private ServiceRegistryService serviceRegistryService;
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 单次复制请求最多包含的实例变更数和心跳数
+    @Value("${registry.cluster.max-batch-size:500}")
+    private int maxBatchSize;
+
+    // 节点之间请求的超时时间（毫秒）
+    @Value("${registry.cluster.request-timeout-ms:5000}")
+    private long requestTimeoutMillis;
+
+    private HttpClient httpClient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 各节点的复制状态
+    private final Map<String, PeerStatus> peerStatuses = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+                .executor(executor)
+                .build();
+        for (String peer : clusterNode.getPeers()) {
+            peerStatuses.put(peer, new PeerStatus(peer));
+        }
+        if (clusterNode.isEnabled()) {
+            logger.info("集群复制已启用，节点ID: {}，其他节点: {}", clusterNode.getNodeId(), clusterNode.getPeers());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 定时把本地积累的变更和心跳推送给所有其他节点
+     */
+    @Scheduled(fixedDelayString = "${registry.cluster.replication-interval-ms:1000}")
+    public void replicate() {
+        if (!clusterNode.isEnabled() || clusterNode.getPeers().isEmpty()) {
+            return;
+        }
+        List<ReplicationRecord> records = clusterNode.drainRecords();
+        List<HeartbeatRecord> heartbeats = clusterNode.drainHeartbeats();
+        if (records.isEmpty() && heartbeats.isEmpty()) {
+            return;
+        }
+        for (ReplicationBatch batch : toBatches(records, heartbeats)) {
+            byte[] body;
+            try {
+                body = objectMapper.writeValueAsBytes(batch);
+            } catch (IOException e) {
+                logger.error("序列化复制数据失败", e);
+                return;
+            }
+            for (String peer : clusterNode.getPeers()) {
+                push(peer, body, batch.getRecords().size());
+            }
+        }
+    }
+
+    /**
+     * 定时与随机一个节点进行反熵同步
+     */
+    @Scheduled(fixedDelayString = "${registry.cluster.anti-entropy-interval-ms:30000}",
+            initialDelayString = "${registry.cluster.anti-entropy-initial-delay-ms:5000}")
+    public void antiEntropy() {
+        int purged = clusterNode.purgeTombstones();
+        if (purged > 0) {
+            logger.debug("清理 {} 个过期的删除标记", purged);
+        }
+        List<String> peers = clusterNode.getPeers();
+        if (!clusterNode.isEnabled() || peers.isEmpty()) {
+            return;
+        }
+        String peer = peers.get(ThreadLocalRandom.current().nextInt(peers.size()));
+        try {
+            synchronizeWith(peer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            statusOf(peer).onFailure(e);
+            logger.warn("与节点 {} 反熵同步失败: {}", peer, e.getMessage());
+        }
+    }
+
+    /**
+     * 应用其他节点推送的变更和心跳
+     * @return 实际应用的实例变更数
+     */
+    public int apply(ReplicationBatch batch) {
+        int applied = 0;
+        if (batch.getRecords() != null) {
+            for (ReplicationRecord record : batch.getRecords()) {
+                if (applyRecord(record)) {
+                    applied++;
+                }
+            }
+        }
+        if (batch.getHeartbeats() != null) {
+            for (HeartbeatRecord heartbeat : batch.getHeartbeats()) {
+                ReplicaContext.call(() -> serviceRegistryService.applyReplicatedHeartbeat(heartbeat.getServiceName(),
+                        heartbeat.getServiceVersion(), heartbeat.getIp(), heartbeat.getPort(), heartbeat.getLastHeartbeat()));
+            }
+        }
+        if (applied > 0) {
+            logger.debug("应用节点 {} 复制的 {} 条实例变更", batch.getNodeId(), applied);
+        }
+        return applied;
+    }
+
+    /**
+     * 本地注册表摘要，同一实例只保留实例和删除标记中较新的一个
+     */
+    public ClusterDigest digest() {
+        ClusterDigest digest = new ClusterDigest();
+        digest.setNodeId(clusterNode.getNodeId());
+        long hash = 0;
+        for (ReplicationRecord record : indexByKey().values()) {
+            RegisteredService service = record.getService();
+            DigestEntry entry = new DigestEntry();
+            entry.setKey(ClusterNode.keyOf(service));
+            entry.setModifiedAt(service.getModifiedAt());
+            entry.setModifiedBy(service.getModifiedBy());
+            entry.setDeleted(record.isDeleted());
+            digest.getEntries().add(entry);
+            hash ^= entryHash(entry);
+        }
+        digest.setHash(hash);
+        return digest;
+    }
+
+    /**
+     * 按实例标识查找本地实例或删除标记，不存在的标识忽略
+     */
+    public List<ReplicationRecord> findByKeys(Collection<String> keys) {
+        Map<String, ReplicationRecord> byKey = indexByKey();
+        List<ReplicationRecord> result = new ArrayList<>();
+        for (String key : keys) {
+            ReplicationRecord record = byKey.get(key);
+            if (record != null) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 本节点和各其他节点的复制状态
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", clusterNode.isEnabled());
+        status.put("nodeId", clusterNode.getNodeId());
+        status.put("pendingRecords", clusterNode.pendingRecordCount());
+        status.put("pendingHeartbeats", clusterNode.pendingHeartbeatCount());
+        status.put("tombstones", clusterNode.tombstoneCount());
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (String peer : clusterNode.getPeers()) {
+            peers.add(statusOf(peer).toMap());
+        }
+        status.put("peers", peers);
+        return status;
+    }
+
+    private void synchronizeWith(String peer) throws IOException, InterruptedException {
+        ClusterDigest remote = objectMapper.treeToValue(send(peer, "GET", "/api/cluster/digest", null), ClusterDigest.class);
+        ClusterDigest local = digest();
+        PeerStatus status = statusOf(peer);
+        if (remote.getHash() == local.getHash()) {
+            status.onSuccess();
+            return;
+        }
+
+        Map<String, DigestEntry> remoteByKey = new HashMap<>();
+        for (DigestEntry entry : remote.getEntries()) {
+            remoteByKey.put(entry.getKey(), entry);
+        }
+        Map<String, DigestEntry> localByKey = new HashMap<>();
+        for (DigestEntry entry : local.getEntries()) {
+            localByKey.put(entry.getKey(), entry);
+        }
+        List<String> pullKeys = new ArrayList<>();
+        for (DigestEntry entry : remote.getEntries()) {
+            DigestEntry mine = localByKey.get(entry.getKey());
+            if (mine == null || isNewer(entry, mine)) {
+                pullKeys.add(entry.getKey());
+            }
+        }
+        List<String> pushKeys = new ArrayList<>();
+        for (DigestEntry entry : local.getEntries()) {
+            DigestEntry theirs = remoteByKey.get(entry.getKey());
+            if (theirs == null || isNewer(entry, theirs)) {
+                pushKeys.add(entry.getKey());
+            }
+        }
+
+        int pulled = 0;
+        if (!pullKeys.isEmpty()) {
+            JsonNode data = send(peer, "POST", "/api/cluster/records", objectMapper.writeValueAsBytes(pullKeys));
+            List<ReplicationRecord> records = objectMapper.convertValue(data, new TypeReference<List<ReplicationRecord>>() {});
+            for (ReplicationRecord record : records) {
+                if (applyRecord(record)) {
+                    pulled++;
+                }
+            }
+        }
+        if (!pushKeys.isEmpty()) {
+            for (ReplicationBatch batch : toBatches(findByKeys(pushKeys), List.of())) {
+                send(peer, "POST", "/api/cluster/replicate", objectMapper.writeValueAsBytes(batch));
+            }
+        }
+        status.onSuccess();
+        logger.info("与节点 {} 完成反熵同步，拉取 {} 个实例或删除标记，推送 {} 个实例或删除标记", peer, pulled, pushKeys.size());
+    }
+
+    private boolean applyRecord(ReplicationRecord record) {
+        if (record.getService() == null) {
+            return false;
+        }
+        try {
+            return ReplicaContext.call(() -> serviceRegistryService.applyReplica(record.getService(), record.isDeleted()));
+        } catch (RuntimeException e) {
+            logger.warn("应用复制的实例 {}:{} 失败: {}", record.getService().getIp(), record.getService().getPort(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 异步推送一个批次，失败时只记录状态，由反熵同步修复
+     */
+    private void push(String peer, byte[] body, int recordCount) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(peer + "/api/cluster/replicate"))
+                .timeout(Duration.ofMillis(requestTimeoutMillis))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        PeerStatus status = statusOf(peer);
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error == null && response.statusCode() / 100 == 2) {
+                status.onSuccess();
+                status.replicated.addAndGet(recordCount);
+                return;
+            }
+            Throwable cause = error != null ? error : new IOException("HTTP " + response.statusCode());
+            // 连续失败时只在第一次输出警告，避免节点宕机期间刷屏
+            if (status.onFailure(cause) == 1) {
+                logger.warn("向节点 {} 复制失败: {}", peer, cause.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 同步发送请求并返回响应中的data字段
+     */
+    private JsonNode send(String peer, String method, String path, byte[] body) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(peer + path))
+                .timeout(Duration.ofMillis(requestTimeoutMillis));
+        if (body != null) {
+            builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(body));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(path + " 返回 HTTP " + response.statusCode() + ": "
+                    + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return objectMapper.readTree(response.body()).path("data");
+    }
+
+    private List<ReplicationBatch> toBatches(List<ReplicationRecord> records, List<HeartbeatRecord> heartbeats) {
+        int size = Math.max(1, maxBatchSize);
+        List<ReplicationBatch> batches = new ArrayList<>();
+        int recordOffset = 0;
+        int heartbeatOffset = 0;
+        while (recordOffset < records.size() || heartbeatOffset < heartbeats.size()) {
+            ReplicationBatch batch = new ReplicationBatch();
+            batch.setNodeId(clusterNode.getNodeId());
+            int recordEnd = Math.min(records.size(), recordOffset + size);
+            int heartbeatEnd = Math.min(heartbeats.size(), heartbeatOffset + size);
+            batch.setRecords(new ArrayList<>(records.subList(recordOffset, recordEnd)));
+            batch.setHeartbeats(new ArrayList<>(heartbeats.subList(heartbeatOffset, heartbeatEnd)));
+            batches.add(batch);
+            recordOffset = recordEnd;
+            heartbeatOffset = heartbeatEnd;
+        }
+        return batches;
+    }
+
+    /**
+     * 按实例标识索引本地实例和删除标记，同一标识保留版本较新的一个
+     */
+    private Map<String, ReplicationRecord> indexByKey() {
+        Map<String, ReplicationRecord> byKey = new HashMap<>();
+        for (RegisteredService service : registryCache.listAll()) {
+            byKey.put(ClusterNode.keyOf(service), new ReplicationRecord(service, false));
+        }
+        for (RegisteredService tombstone : clusterNode.listTombstones()) {
+            byKey.merge(ClusterNode.keyOf(tombstone), new ReplicationRecord(tombstone, true),
+                    (live, deleted) -> ClusterNode.isNewer(deleted.getService(), live.getService()) ? deleted : live);
+        }
+        return byKey;
+    }
+
+    private PeerStatus statusOf(String peer) {
+        return peerStatuses.computeIfAbsent(peer, PeerStatus::new);
+    }
+
+    private static boolean isNewer(DigestEntry a, DigestEntry b) {
+        return ClusterNode.compareVersions(a.getModifiedAt(), a.getModifiedBy(), b.getModifiedAt(), b.getModifiedBy()) > 0;
+    }
+
+    /**
+     * 摘要中单个实例的哈希，使用64位FNV-1a
+     */
+    private static long entryHash(DigestEntry entry) {
+        String text = entry.getKey() + '\n' + entry.getModifiedAt() + '\n' + entry.getModifiedBy() + '\n' + entry.isDeleted();
+        long h = 0xCBF29CE484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * 与单个节点之间的复制状态
+     */
+    private static class PeerStatus {
+
+        private final String url;
+
+        private final AtomicLong lastSuccessAt = new AtomicLong();
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        private final AtomicLong replicated = new AtomicLong();
+
+        private volatile String lastError;
+
+        PeerStatus(String url) {
+            this.url = url;
+        }
+
+        void onSuccess() {
+            lastSuccessAt.set(System.currentTimeMillis());
+            if (consecutiveFailures.getAndSet(0) > 0) {
+                logger.info("与节点 {} 的复制已恢复", url);
+            }
+        }
+
+        int onFailure(Throwable error) {
+            lastError = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+            return consecutiveFailures.incrementAndGet();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> item = new HashMap<>();
+            item.put("url", url);
+            long last = lastSuccessAt.get();
+            item.put("lastSuccessAt", last > 0 ? last : null);
+            item.put("consecutiveFailures", consecutiveFailures.get());
+            item.put("replicatedRecords", replicated.get());
+            item.put("lastError", lastError);
+            return item;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.registercenter.cluster;
+
+import lombok.Data;
+
+/**
+ * 注册表摘要中单个实例或删除标记的版本
+ */
+@Data
+public class DigestEntry {
+
+    // 实例标识，见ClusterNode.keyOf
+    private String key;
+
+    private Long modifiedAt;
+
+    private String modifiedBy;
+
+    // 是否为删除标记
+    private boolean deleted;
+}
@@ -0,0 +1,292 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 只读从节点：从主节点获取全量快照后，通过长轮询订阅主节点的变更并按版本号拉取增量，在内存注册表中保存完整副本
+ * 服务发现和代理请求在本地处理，写请求由FollowerWriteForwardingFilter转发给主节点
+ * 实例ID与主节点一致，主节点重启（版本号回退）或增量超出变更日志范围时重新获取全量快照
+ */
+@Service
+public class FollowerSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowerSyncService.class);
+
+    private static final TypeReference<List<RegisteredService>> SERVICE_LIST = new TypeReference<>() {};
+
+    private static final TypeReference<List<Long>> ID_LIST = new TypeReference<>() {};
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${registry.follower.enabled:false}")
+    private boolean enabled;
+
+    // 主节点地址，例如http://127.0.0.1:8761
+    @Value("${registry.follower.primary-url:}")
+    private String primaryUrl;
+
+    // 长轮询等待时间（毫秒），不能超过主节点的registry.watch.max-timeout-ms
+    @Value("${registry.follower.watch-timeout-ms:30000}")
+    private long watchTimeoutMillis;
+
+    // 请求主节点失败后的重试间隔（毫秒）
+    @Value("${registry.follower.retry-delay-ms:1000}")
+    private long retryDelayMillis;
+
+    // 快照和增量请求的超时时间（毫秒）
+    @Value("${registry.follower.request-timeout-ms:5000}")
+    private long requestTimeoutMillis;
+
+    private HttpClient httpClient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile boolean running;
+
+    // 已应用的主节点版本号，-1表示尚未获取快照
+    private volatile long appliedRevision = -1;
+
+    // 最近一次从主节点得知的版本号
+    private volatile long primaryRevision = -1;
+
+    // 开始落后于主节点的时间，未落后时为0
+    private volatile long behindSince;
+
+    private volatile long lastContactAt;
+
+    private volatile long lastAppliedAt;
+
+    private volatile long snapshots;
+
+    private volatile long deltas;
+
+    private volatile int consecutiveFailures;
+
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        while (primaryUrl.endsWith("/")) {
+            primaryUrl = primaryUrl.substring(0, primaryUrl.length() - 1);
+        }
+        if (enabled && primaryUrl.isEmpty()) {
+            throw new IllegalStateException("从节点模式需要配置registry.follower.primary-url");
+        }
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getPrimaryUrl() {
+        return primaryUrl;
+    }
+
+    /**
+     * 启动同步线程，由启动初始化器在从节点模式下调用
+     */
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        logger.info("以从节点模式启动，主节点: {}", primaryUrl);
+        executor.execute(this::syncLoop);
+    }
+
+    /**
+     * 同步状态与复制延迟
+     * lagMillis为开始落后于主节点至今的时间，与主节点失去联系时从最后一次联系开始计算
+     */
+    public Map<String, Object> status() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("primaryUrl", primaryUrl);
+        status.put("appliedRevision", appliedRevision);
+        status.put("primaryRevision", primaryRevision);
+        status.put("revisionsBehind", Math.max(0, primaryRevision - appliedRevision));
+        status.put("lagMillis", lagMillis(now));
+        status.put("lastContactAt", lastContactAt > 0 ? lastContactAt : null);
+        status.put("lastAppliedAt", lastAppliedAt > 0 ? lastAppliedAt : null);
+        status.put("snapshots", snapshots);
+        status.put("deltas", deltas);
+        status.put("consecutiveFailures", consecutiveFailures);
+        status.put("lastError", lastError);
+        status.put("instances", registryCache.size());
+        return status;
+    }
+
+    /**
+     * 当前复制延迟（毫秒），尚未获取快照时为-1
+     */
+    public long lagMillis(long now) {
+        if (appliedRevision < 0) {
+            return -1;
+        }
+        long since = behindSince;
+        if (consecutiveFailures > 0 && lastContactAt > 0) {
+            since = since > 0 ? Math.min(since, lastContactAt) : lastContactAt;
+        }
+        return since > 0 ? now - since : 0;
+    }
+
+    private void syncLoop() {
+        while (running) {
+            try {
+                if (appliedRevision < 0) {
+                    loadSnapshot();
+                }
+                long revision = watch(appliedRevision);
+                if (revision < appliedRevision) {
+                    // 主节点重启后版本号重新计数
+                    logger.info("主节点版本号 {} 小于已应用的版本号 {}，重新获取快照", revision, appliedRevision);
+                    loadSnapshot();
+                } else if (revision > appliedRevision) {
+                    applyChanges();
+                }
+                onSuccess();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                onFailure(e);
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loadSnapshot() throws IOException, InterruptedException {
+        JsonNode response = get("/api/services/list", requestTimeoutMillis);
+        List<RegisteredService> services = objectMapper.convertValue(response.path("data"), SERVICE_LIST);
+        registryCache.reload(services);
+        markApplied(response.path("revision").asLong());
+        snapshots++;
+        logger.info("已从主节点加载快照，版本号 {}，实例数 {}", appliedRevision, services.size());
+    }
+
+    private void applyChanges() throws IOException, InterruptedException {
+        JsonNode response = get("/api/services/list?sinceRevision=" + appliedRevision, requestTimeoutMillis);
+        if (!response.path("delta").asBoolean()) {
+            // 超出主节点变更日志的范围，主节点返回了全量列表
+            List<RegisteredService> services = objectMapper.convertValue(response.path("data"), SERVICE_LIST);
+            registryCache.reload(services);
+            markApplied(response.path("revision").asLong());
+            snapshots++;
+            logger.info("增量超出主节点变更日志范围，已重新加载快照，版本号 {}", appliedRevision);
+            return;
+        }
+        List<RegisteredService> changed = objectMapper.convertValue(response.path("changed"), SERVICE_LIST);
+        List<Long> removed = objectMapper.convertValue(response.path("removed"), ID_LIST);
+        for (Long id : removed) {
+            registryCache.remove(id);
+        }
+        for (RegisteredService service : changed) {
+            registryCache.put(service);
+        }
+        markApplied(response.path("revision").asLong());
+        deltas++;
+    }
+
+    /**
+     * 长轮询主节点，返回主节点当前的版本号
+     */
+    private long watch(long revision) throws IOException, InterruptedException {
+        JsonNode response = get("/api/services/watch?revision=" + revision + "&timeout=" + watchTimeoutMillis,
+                watchTimeoutMillis + requestTimeoutMillis);
+        long current = response.path("revision").asLong();
+        observe(current);
+        return current;
+    }
+
+    private void observe(long revision) {
+        lastContactAt = System.currentTimeMillis();
+        primaryRevision = revision;
+        if (revision > appliedRevision && behindSince == 0) {
+            behindSince = lastContactAt;
+        }
+    }
+
+    private void markApplied(long revision) {
+        long now = System.currentTimeMillis();
+        appliedRevision = revision;
+        lastContactAt = now;
+        lastAppliedAt = now;
+        if (primaryRevision < revision) {
+            primaryRevision = revision;
+        }
+        if (revision >= primaryRevision) {
+            behindSince = 0;
+        }
+    }
+
+    private void onSuccess() {
+        if (consecutiveFailures > 0) {
+            logger.info("与主节点 {} 的同步已恢复", primaryUrl);
+        }
+        consecutiveFailures = 0;
+    }
+
+    private void onFailure(Exception e) {
+        lastError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        // 连续失败时只在第一次输出警告，避免主节点宕机期间刷屏
+        if (consecutiveFailures++ == 0) {
+            logger.warn("从主节点 {} 同步失败: {}", primaryUrl, lastError);
+        }
+    }
+
+    private JsonNode get(String path, long timeoutMillis) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(primaryUrl + path))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException(path + " 返回 HTTP " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body());
+    }
+}
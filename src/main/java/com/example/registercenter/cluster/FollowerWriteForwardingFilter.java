@@ -0,0 +1,149 @@
+package com.example.registercenter.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * 从节点把修改注册表的请求原样转发给主节点，并把主节点的响应返回给客户端
+ * 转发的请求包括服务注册、注销、心跳和服务配置修改；代理限流规则、熔断器、响应缓存等代理状态属于各节点自身，不转发
+ * 写入结果通过变更订阅回到从节点，不保证客户端随后在从节点上立即读到自己的写入
+ * 需要在FormContentFilter之前执行，否则PUT、DELETE请求的表单请求体已被读取
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class FollowerWriteForwardingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowerWriteForwardingFilter.class);
+
+    // 需要转发的写接口：服务注册表接口，以及按服务ID修改限流、并发、缓存配置的接口
+    private static final Pattern FORWARDED_PATHS = Pattern.compile("^/api/services(/.*)?$|^/api/rate-limit/\\d+(/.*)?$");
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    // 不转发的请求头和响应头
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "host", "content-length", "expect");
+
+    @Autowired
+    private FollowerSyncService followerSyncService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 转发请求的超时时间（毫秒）
+    @Value("${registry.follower.request-timeout-ms:5000}")
+    private long requestTimeoutMillis;
+
+    private HttpClient httpClient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    public void initClient() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !followerSyncService.isEnabled()
+                || READ_METHODS.contains(request.getMethod())
+                || !FORWARDED_PATHS.matcher(request.getRequestURI()).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String target = followerSyncService.getPrimaryUrl() + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target))
+                .timeout(Duration.ofMillis(requestTimeoutMillis));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                continue;
+            }
+            for (String value : Collections.list(request.getHeaders(name))) {
+                builder.header(name, value);
+            }
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        builder.method(request.getMethod(), body.length > 0
+                ? HttpRequest.BodyPublishers.ofByteArray(body)
+                : HttpRequest.BodyPublishers.noBody());
+
+        HttpResponse<byte[]> upstream;
+        try {
+            upstream = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(response, "转发请求被中断");
+            return;
+        } catch (IOException e) {
+            logger.warn("转发写请求到主节点失败: {} {} - {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+            writeError(response, "主节点不可用，请稍后再试");
+            return;
+        }
+
+        response.setStatus(upstream.statusCode());
+        for (Map.Entry<String, List<String>> header : upstream.headers().map().entrySet()) {
+            if (HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase()) || header.getKey().startsWith(":")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+        response.setContentLength(upstream.body().length);
+        response.getOutputStream().write(upstream.body());
+    }
+
+    private void writeError(HttpServletResponse response, String message) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("message", message);
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.entity.RegisteredService;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 复制给其他节点的心跳，只包含实例标识和最新心跳时间
+ */
+@Data
+public class HeartbeatRecord {
+
+    private String serviceName;
+
+    private String serviceVersion;
+
+    private String ip;
+
+    private Integer port;
+
+    private LocalDateTime lastHeartbeat;
+
+    public static HeartbeatRecord of(RegisteredService service) {
+        HeartbeatRecord record = new HeartbeatRecord();
+        record.setServiceName(service.getServiceName());
+        record.setServiceVersion(service.getServiceVersion());
+        record.setIp(service.getIp());
+        record.setPort(service.getPort());
+        record.setLastHeartbeat(service.getLastHeartbeat());
+        return record;
+    }
+}
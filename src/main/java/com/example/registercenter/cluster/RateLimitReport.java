@@ -0,0 +1,17 @@
+package com.example.registercenter.cluster;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分布式限流中节点之间交换的请求量，键为限流键，值为最近的每秒请求数（包括被拒绝的请求）
+ */
+@Data
+public class RateLimitReport {
+
+    private String nodeId;
+
+    private Map<String, Double> demands = new HashMap<>();
+}
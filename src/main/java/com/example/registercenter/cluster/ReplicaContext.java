@@ -0,0 +1,32 @@
+package com.example.registercenter.cluster;
+
+import java.util.function.Supplier;
+
+/**
+ * 标记当前线程正在应用其他节点复制过来的变更，这些变更不会再次复制给其他节点，避免循环复制
+ * 注册表变更监听器在事务提交后的同一线程中同步执行，因此可以通过线程变量识别
+ */
+public class ReplicaContext {
+
+    private static final ThreadLocal<Boolean> APPLYING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * 当前线程是否正在应用复制过来的变更
+     */
+    public static boolean isApplying() {
+        return APPLYING.get();
+    }
+
+    /**
+     * 以复制模式执行操作
+     */
+    public static <T> T call(Supplier<T> action) {
+        boolean previous = APPLYING.get();
+        APPLYING.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            APPLYING.set(previous);
+        }
+    }
+}
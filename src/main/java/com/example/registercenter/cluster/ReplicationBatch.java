@@ -0,0 +1,20 @@
+package com.example.registercenter.cluster;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 节点之间一次复制请求的内容
+ */
+@Data
+public class ReplicationBatch {
+
+    // 发送方节点ID
+    private String nodeId;
+
+    private List<ReplicationRecord> records = new ArrayList<>();
+
+    private List<HeartbeatRecord> heartbeats = new ArrayList<>();
+}
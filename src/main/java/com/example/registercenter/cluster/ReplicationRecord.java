@@ -0,0 +1,23 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.entity.RegisteredService;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 复制给其他节点的实例状态，按服务名+版本+IP+端口识别实例，各节点的实例ID互不相关
+ * deleted为true时表示实例已被删除，版本为删除时的版本
+ */
+@Data
+@NoArgsConstructor
+public class ReplicationRecord {
+
+    private RegisteredService service;
+
+    private boolean deleted;
+
+    public ReplicationRecord(RegisteredService service, boolean deleted) {
+        this.service = service;
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.registercenter.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * 将代理连接池配置转换为JDK HttpClient的系统属性
+ * JDK在创建第一个HttpClient时把连接空闲超时和连接池上限读入静态常量，之后再设置系统属性不再生效，
+ * 健康检查、集群同步等组件在Bean初始化时就会创建HttpClient，因此需要在创建任何Bean之前设置
+ * 排在配置文件加载之后执行，以便读取application.properties和命令行中的配置；通过-D显式指定的系统属性优先
+ */
+public class HttpClientPoolProperties implements EnvironmentPostProcessor, Ordered {
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        setIfAbsent("jdk.httpclient.keepalive.timeout", environment.getProperty("proxy.keep-alive-timeout-seconds", "60"));
+        setIfAbsent("jdk.httpclient.connectionPoolSize", environment.getProperty("proxy.max-connections", "0"));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.registercenter.config;
+
+import com.example.registercenter.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 限流配置类，将配置文件中的限流参数应用到静态工具类RateLimiter
+ */
+@Configuration
+public class RateLimitConfig {
+
+    // 限流状态最多保存的键数量
+    @Value("${rate-limit.max-keys:100000}")
+    private int maxKeys;
+
+    @PostConstruct
+    public void init() {
+        RateLimiter.setMaxEntries(maxKeys);
+    }
+}
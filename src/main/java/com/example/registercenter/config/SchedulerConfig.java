@@ -1,13 +1,16 @@
 package com.example.registercenter.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 定时任务配置类，用于启用Spring的定时任务功能
+ * registry.scheduling.enabled=false时不启用，由调用方手动驱动心跳检查等任务（基准测试中使用）
  */
 @Configuration
 @EnableScheduling
+@ConditionalOnProperty(name = "registry.scheduling.enabled", havingValue = "true", matchIfMissing = true)
 public class SchedulerConfig {
     // 此类只需添加@EnableScheduling注解即可启用定时任务功能
-}
\ No newline at end of file
+}
@@ -1,22 +1,57 @@
 package com.example.registercenter.config;
 
+import com.example.registercenter.controller.VirtualDomainProxyController;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 /**
  * Web配置类
- * 用于配置Web相关的Bean，如RestTemplate
+ * 用于配置Web相关的Bean，如代理使用的HttpClient
  */
 @Configuration
-public class WebConfig {
-    
+public class WebConfig implements WebMvcConfigurer {
+
     /**
-     * 定义RestTemplate Bean，用于发送HTTP请求
-     * 在VirtualDomainProxyController中用于转发请求到实际服务
+     * 定义代理使用的HttpClient Bean，在VirtualDomainProxyController中用于异步转发请求到实际服务
+     * HttpClient内部维护HTTP/1.1长连接池，连接空闲超时与连接池上限由HttpClientPoolProperties在启动时设置为系统属性
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public HttpClient proxyHttpClient(@Value("${proxy.connect-timeout-ms:2000}") long connectTimeoutMillis) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * 代理写出上游响应体的时长取决于响应大小和客户端网速，不受spring.mvc.async.request-timeout限制
+     * 响应体写出阶段由VirtualDomainProxyController按proxy.body-idle-timeout-ms检查上游空闲
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request.getAttribute(VirtualDomainProxyController.STREAMING_BODY_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null
+                        && request instanceof AsyncWebRequest asyncWebRequest) {
+                    // 0表示不超时
+                    asyncWebRequest.setTimeout(0L);
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.example.registercenter.controller;
+
+import com.example.registercenter.proxy.CircuitBreakerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代理熔断器管理控制器
+ * 查询各上游实例的熔断状态和失败率统计，支持手动恢复
+ */
+@RestController
+@RequestMapping("/api/circuit-breakers")
+public class CircuitBreakerController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerController.class);
+    
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    
+    /**
+     * 获取所有实例的熔断器状态
+     */
+    @GetMapping
+    public ResponseEntity<?> getCircuitBreakers() {
+        try {
+            List<Map<String, Object>> breakers = circuitBreakerRegistry.snapshot();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", breakers);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取熔断器状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取熔断器状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 手动恢复实例的熔断器
+     */
+    @PostMapping("/{serviceId}/reset")
+    public ResponseEntity<?> resetCircuitBreaker(@PathVariable Long serviceId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            if (circuitBreakerRegistry.reset(serviceId)) {
+                response.put("success", true);
+                response.put("message", "熔断器已恢复");
+                return ResponseEntity.ok(response);
+            }
+            response.put("success", false);
+            response.put("message", "服务不存在或尚未产生代理流量");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (Exception e) {
+            logger.error("恢复熔断器失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "恢复熔断器失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
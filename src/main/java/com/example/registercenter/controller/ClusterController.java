@@ -0,0 +1,182 @@
+package com.example.registercenter.controller;
+
+import com.example.registercenter.cluster.ClusterNode;
+import com.example.registercenter.cluster.ClusterRateLimiter;
+import com.example.registercenter.cluster.ClusterReplicationService;
+import com.example.registercenter.cluster.FollowerSyncService;
+import com.example.registercenter.cluster.RateLimitReport;
+import com.example.registercenter.cluster.ReplicationBatch;
+import com.example.registercenter.cluster.ReplicationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群复制控制器
+ * 供集群中的其他节点推送变更、获取注册表摘要、按需拉取实例和交换限流请求量，并提供复制状态和从节点同步状态查询
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClusterController.class);
+    
+    @Autowired
+    private ClusterNode clusterNode;
+    
+    @Autowired
+    private ClusterReplicationService clusterReplicationService;
+    
+    @Autowired
+    private FollowerSyncService followerSyncService;
+    
+    @Autowired
+    private ClusterRateLimiter clusterRateLimiter;
+    
+    /**
+     * 接收其他节点推送的变更和心跳
+     */
+    @PostMapping("/replicate")
+    public ResponseEntity<?> replicate(@RequestBody ReplicationBatch batch) {
+        if (!clusterNode.isEnabled()) {
+            return disabledResponse();
+        }
+        try {
+            int applied = clusterReplicationService.apply(batch);
+            Map<String, Object> data = new HashMap<>();
+            data.put("applied", applied);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("应用复制数据失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "应用复制数据失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取本节点的注册表摘要
+     */
+    @GetMapping("/digest")
+    public ResponseEntity<?> getDigest() {
+        if (!clusterNode.isEnabled()) {
+            return disabledResponse();
+        }
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", clusterReplicationService.digest());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取注册表摘要失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取注册表摘要失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 按实例标识批量获取实例，已删除的实例返回删除标记
+     */
+    @PostMapping("/records")
+    public ResponseEntity<?> getRecords(@RequestBody List<String> keys) {
+        if (!clusterNode.isEnabled()) {
+            return disabledResponse();
+        }
+        try {
+            List<ReplicationRecord> records = clusterReplicationService.findByKeys(keys);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", records);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取实例失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取实例失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 分布式限流：接收其他节点的请求量，返回本节点的请求量
+     */
+    @PostMapping("/rate-limit")
+    public ResponseEntity<?> exchangeRateLimit(@RequestBody RateLimitReport report) {
+        if (!clusterRateLimiter.isEnabled()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "本节点未启用分布式限流");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", clusterRateLimiter.onReport(report));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("交换限流请求量失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "交换限流请求量失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取本节点和各其他节点的复制状态
+     */
+    @GetMapping("/status")
+    public ResponseEntity<?> getStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", clusterReplicationService.status());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取集群状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取集群状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取从节点的同步状态和复制延迟
+     */
+    @GetMapping("/follower")
+    public ResponseEntity<?> getFollowerStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", followerSyncService.status());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取从节点状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取从节点状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    private ResponseEntity<?> disabledResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "本节点未启用集群模式");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+}
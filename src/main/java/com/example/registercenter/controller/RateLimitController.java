@@ -1,5 +1,11 @@
 package com.example.registercenter.controller;
 
+import com.example.registercenter.cluster.ClusterRateLimiter;
+import com.example.registercenter.entity.RateLimitRule;
+import com.example.registercenter.proxy.ConcurrencyLimiterRegistry;
+import com.example.registercenter.proxy.ResponseCache;
+import com.example.registercenter.proxy.RetryRegistry;
+import com.example.registercenter.service.RateLimitRuleService;
 import com.example.registercenter.service.ServiceRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,10 +15,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 服务限流管理控制器
+ * 包括服务实例自身的限流配置，以及按虚拟域名或服务名配置的代理限流规则
  */
 @RestController
 @RequestMapping("/api/rate-limit")
@@ -23,6 +31,21 @@ public class RateLimitController {
     @Autowired
     private ServiceRegistryService serviceRegistryService;
     
+    @Autowired
+    private RateLimitRuleService rateLimitRuleService;
+    
+    @Autowired
+    private ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+    
+    @Autowired
+    private RetryRegistry retryRegistry;
+    
+    @Autowired
+    private ResponseCache responseCache;
+    
+    @Autowired
+    private ClusterRateLimiter clusterRateLimiter;
+    
     /**
      * 获取服务的限流配置
      */
@@ -51,16 +74,17 @@ public class RateLimitController {
     }
     
     /**
-     * 设置服务的限流配置
+     * 设置服务的限流配置，burst为突发容量，不传时保持不变
      */
     @PutMapping("/{serviceId}")
     public ResponseEntity<?> setRateLimitConfig(
             @PathVariable Long serviceId,
             @RequestParam boolean enabled,
             @RequestParam int maxRequestsPerSecond,
-            @RequestParam(required = false) String errorMessage) {
+            @RequestParam(required = false) String errorMessage,
+            @RequestParam(required = false) Integer burst) {
         try {
-            boolean result = serviceRegistryService.setServiceRateLimit(serviceId, enabled, maxRequestsPerSecond, errorMessage);
+            boolean result = serviceRegistryService.setServiceRateLimit(serviceId, enabled, maxRequestsPerSecond, errorMessage, burst);
             if (result) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -81,6 +105,164 @@ public class RateLimitController {
         }
     }
     
+    /**
+     * 设置服务的并发限制，同一服务名下的实例共用一个并发上限
+     * 不传maxConcurrentRequests时取消限制；adaptive为true时根据上游延迟自动调整上限
+     */
+    @PutMapping("/{serviceId}/concurrency")
+    public ResponseEntity<?> setConcurrencyLimit(
+            @PathVariable Long serviceId,
+            @RequestParam(required = false) Integer maxConcurrentRequests,
+            @RequestParam(required = false) Boolean adaptive) {
+        try {
+            boolean result = serviceRegistryService.setServiceConcurrencyLimit(serviceId, maxConcurrentRequests, adaptive);
+            if (result) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "服务并发限制已更新");
+                return ResponseEntity.ok(response);
+            } else {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", false);
+                response.put("message", "服务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            logger.error("设置服务并发限制失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "设置服务并发限制失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 设置虚拟域名的响应缓存，只对通过虚拟域名转发的GET请求生效
+     * 不传ttlSeconds时关闭缓存；varyHeaders为参与缓存键的请求头，逗号分隔
+     */
+    @PutMapping("/{serviceId}/cache")
+    public ResponseEntity<?> setResponseCache(
+            @PathVariable Long serviceId,
+            @RequestParam(required = false) Integer ttlSeconds,
+            @RequestParam(required = false) String varyHeaders) {
+        try {
+            boolean result = serviceRegistryService.setServiceResponseCache(serviceId, ttlSeconds, varyHeaders);
+            if (result) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "响应缓存配置已更新");
+                return ResponseEntity.ok(response);
+            } else {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", false);
+                response.put("message", "服务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            logger.error("设置响应缓存失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "设置响应缓存失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取响应缓存的统计信息：条目数、占用字节数、命中、未命中、合并的请求数
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> getResponseCacheStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", responseCache.stats());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取响应缓存状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取响应缓存状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 清除响应缓存，不传virtualDomain时清除全部
+     */
+    @DeleteMapping("/cache")
+    public ResponseEntity<?> purgeResponseCache(@RequestParam(required = false) String virtualDomain) {
+        try {
+            int removed = virtualDomain != null ? responseCache.purge(virtualDomain) : responseCache.purgeAll();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "已清除" + removed + "条缓存");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("清除响应缓存失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "清除响应缓存失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取各服务并发限制器的当前状态：当前上限、处理中请求数、等待数、基线延迟
+     */
+    @GetMapping("/concurrency")
+    public ResponseEntity<?> getConcurrencyStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", concurrencyLimiterRegistry.snapshot());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取服务并发状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取服务并发状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取各服务的重试预算余额和对冲延迟
+     */
+    @GetMapping("/retry-budget")
+    public ResponseEntity<?> getRetryBudgetStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", retryRegistry.snapshot());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取重试预算状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取重试预算状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 获取分布式限流中本节点各限流键的份额和请求量
+     */
+    @GetMapping("/distributed")
+    public ResponseEntity<?> getDistributedRateLimitStatus() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", clusterRateLimiter.snapshot());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取分布式限流状态失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取分布式限流状态失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     /**
      * 启用服务限流
      */
@@ -136,4 +318,109 @@ public class RateLimitController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 获取代理限流规则，可按虚拟域名或服务名过滤
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<?> listRules(@RequestParam(required = false) String target) {
+        try {
+            List<RateLimitRule> rules = rateLimitRuleService.listRules(target);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", rules);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("获取限流规则失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "获取限流规则失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 新增代理限流规则
+     * keyType可选GLOBAL（全部请求共用）、CLIENT_IP（按客户端IP）、HEADER（按headerName指定的请求头）
+     */
+    @PostMapping("/rules")
+    public ResponseEntity<?> createRule(@RequestBody RateLimitRule rule) {
+        try {
+            RateLimitRule saved = rateLimitRuleService.createRule(rule);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "限流规则已创建");
+            response.put("data", saved);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("创建限流规则失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "创建限流规则失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 修改代理限流规则
+     */
+    @PutMapping("/rules/{ruleId}")
+    public ResponseEntity<?> updateRule(@PathVariable Long ruleId, @RequestBody RateLimitRule rule) {
+        try {
+            RateLimitRule saved = rateLimitRuleService.updateRule(ruleId, rule);
+            Map<String, Object> response = new HashMap<>();
+            if (saved != null) {
+                response.put("success", true);
+                response.put("message", "限流规则已更新");
+                response.put("data", saved);
+                return ResponseEntity.ok(response);
+            } else {
+                response.put("success", false);
+                response.put("message", "限流规则不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("修改限流规则失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "修改限流规则失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * 删除代理限流规则
+     */
+    @DeleteMapping("/rules/{ruleId}")
+    public ResponseEntity<?> deleteRule(@PathVariable Long ruleId) {
+        try {
+            boolean result = rateLimitRuleService.deleteRule(ruleId);
+            Map<String, Object> response = new HashMap<>();
+            if (result) {
+                response.put("success", true);
+                response.put("message", "限流规则已删除");
+                return ResponseEntity.ok(response);
+            } else {
+                response.put("success", false);
+                response.put("message", "限流规则不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            logger.error("删除限流规则失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "删除限流规则失败");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.example.registercenter.controller;
 
 import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.proxy.LoadBalanceStrategy;
+import com.example.registercenter.service.HealthProbeService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryWatchService;
 import com.example.registercenter.service.ServiceRegistryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -18,6 +24,9 @@ public class ServiceRegistryController {
     @Autowired
     private ServiceRegistryService serviceRegistryService;
     
+    @Autowired
+    private RegistryWatchService registryWatchService;
+    
     /**
      * 注册服务 - 前端使用，支持虚拟域名
      */
@@ -121,22 +130,17 @@ public class ServiceRegistryController {
     
     /**
      * 查找服务 - 保持原有功能，供其他客户端使用
+     * 传入sinceRevision时只返回该版本之后新增、变更、删除的实例；响应的ETag为视图哈希
      */
     @GetMapping("/find")
     public ResponseEntity<?> findServices(
             @RequestParam String serviceName,
-            @RequestParam(required = false) String serviceVersion) {
+            @RequestParam(required = false) String serviceVersion,
+            @RequestParam(required = false) Long sinceRevision,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
         try {
-            List<RegisteredService> services = serviceRegistryService.findServices(serviceName, serviceVersion);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "服务查询成功");
-            response.put("data", services);
-            response.put("total", services.size());
-
-            return ResponseEntity.ok(response);
+            return servicesResponse("服务查询成功", serviceName, serviceVersion, sinceRevision, ifNoneMatch);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -146,22 +150,37 @@ public class ServiceRegistryController {
         }
     }
     
+    /**
+     * 长轮询订阅注册表变更 - 注册表（或指定服务名）的版本号大于revision时立即返回，否则等待变更或超时
+     * 返回changed=false表示超时未发生变更，客户端应使用返回的revision继续订阅
+     */
+    @GetMapping("/watch")
+    public DeferredResult<ResponseEntity<?>> watchServices(
+            @RequestParam(defaultValue = "0") long revision,
+            @RequestParam(required = false) String serviceName,
+            @RequestParam(defaultValue = "30000") long timeout) {
+        return registryWatchService.watch(revision, serviceName, timeout);
+    }
+    
+    /**
+     * SSE订阅注册表变更 - 先推送SNAPSHOT事件，之后推送ADDED、UPDATED、REMOVED事件
+     */
+    @GetMapping(value = "/watch/stream", produces = "text/event-stream")
+    public SseEmitter streamServices(@RequestParam(required = false) String serviceName) {
+        return registryWatchService.stream(serviceName);
+    }
+    
     /**
      * 列出所有服务 - 保持原有功能，供其他客户端使用
+     * 传入sinceRevision时只返回该版本之后新增、变更、删除的实例；响应的ETag为视图哈希
      */
     @GetMapping("/list")
-    public ResponseEntity<?> listAllServices() {
+    public ResponseEntity<?> listAllServices(
+            @RequestParam(required = false) Long sinceRevision,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
         try {
-            List<RegisteredService> services = serviceRegistryService.listAllServices();
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "服务列表查询成功");
-            response.put("data", services);
-            response.put("total", services.size());
-
-            return ResponseEntity.ok(response);
+            return servicesResponse("服务列表查询成功", null, null, sinceRevision, ifNoneMatch);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -234,6 +253,60 @@ public class ServiceRegistryController {
         }
     }
     
+    /**
+     * 批量注册服务 - 供管理多个实例的客户端使用，所有实例在一个事务中注册
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> registerServices(@RequestBody List<RegisteredService> services) {
+        
+        try {
+            List<Map<String, Object>> results = serviceRegistryService.registerServices(services);
+            return ResponseEntity.ok(batchResponse("批量注册完成", results));
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "批量注册失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    /**
+     * 批量发送心跳 - 每个实例通过id或serviceName+serviceVersion+ip+port指定
+     */
+    @PutMapping("/batch/heartbeat")
+    public ResponseEntity<?> sendHeartbeats(@RequestBody List<RegisteredService> services) {
+        
+        try {
+            List<Map<String, Object>> results = serviceRegistryService.sendHeartbeats(services);
+            return ResponseEntity.ok(batchResponse("批量心跳完成", results));
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "批量心跳失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    /**
+     * 批量注销服务 - 每个实例通过id或serviceName+serviceVersion+ip+port指定
+     */
+    @PostMapping("/batch/deregister")
+    public ResponseEntity<?> deregisterServices(@RequestBody List<RegisteredService> services) {
+        
+        try {
+            List<Map<String, Object>> results = serviceRegistryService.deregisterServices(services);
+            return ResponseEntity.ok(batchResponse("批量注销完成", results));
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "批量注销失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
     /**
      * 根据虚拟域名查找服务
      */
@@ -322,6 +395,113 @@ public class ServiceRegistryController {
     }
     */
     
+    /**
+     * 设置服务心跳超时时间，不传timeoutSeconds时恢复使用全局配置
+     */
+    @PutMapping("/{id}/heartbeat-timeout")
+    public ResponseEntity<?> updateHeartbeatTimeout(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer timeoutSeconds) {
+        
+        try {
+            boolean success = serviceRegistryService.updateHeartbeatTimeout(id, timeoutSeconds);
+            
+            Map<String, Object> response = new HashMap<>();
+            if (success) {
+                response.put("success", true);
+                response.put("message", "心跳超时时间更新成功");
+                return ResponseEntity.ok(response);
+            } else {
+                response.put("success", false);
+                response.put("message", "服务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "心跳超时时间更新失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    /**
+     * 设置服务主动健康检查，type为HTTP时对path发起GET请求，为TCP时只检查端口能否连接，不传type时关闭
+     */
+    @PutMapping("/{id}/health-check")
+    public ResponseEntity<?> updateHealthCheck(
+            @PathVariable Long id,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String path,
+            @RequestParam(required = false) Integer intervalSeconds) {
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            String normalizedType = type == null || type.isEmpty() ? null : type.trim().toUpperCase();
+            if (normalizedType != null && !HealthProbeService.TYPE_HTTP.equals(normalizedType)
+                    && !HealthProbeService.TYPE_TCP.equals(normalizedType)) {
+                response.put("success", false);
+                response.put("message", "不支持的健康检查类型: " + type);
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            boolean success = serviceRegistryService.updateHealthCheck(id, normalizedType, path, intervalSeconds);
+            if (success) {
+                response.put("success", true);
+                response.put("message", "健康检查配置更新成功");
+                return ResponseEntity.ok(response);
+            } else {
+                response.put("success", false);
+                response.put("message", "服务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "健康检查配置更新失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    /**
+     * 设置服务负载均衡权重和策略，不传strategy时使用全局配置
+     * 策略可选值：ROUND_ROBIN、WEIGHTED_ROUND_ROBIN、LEAST_IN_FLIGHT、POWER_OF_TWO_CHOICES、CONSISTENT_HASH
+     */
+    @PutMapping("/{id}/load-balance")
+    public ResponseEntity<?> updateLoadBalance(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer weight,
+            @RequestParam(required = false) String strategy) {
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            LoadBalanceStrategy parsed = LoadBalanceStrategy.parse(strategy);
+            if (strategy != null && !strategy.isEmpty() && parsed == null) {
+                response.put("success", false);
+                response.put("message", "不支持的负载均衡策略: " + strategy);
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            boolean success = serviceRegistryService.updateLoadBalance(id, weight, parsed != null ? parsed.name() : null);
+            if (success) {
+                response.put("success", true);
+                response.put("message", "负载均衡配置更新成功");
+                return ResponseEntity.ok(response);
+            } else {
+                response.put("success", false);
+                response.put("message", "服务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "负载均衡配置更新失败: " + e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
     /**
      * 更新服务虚拟域名
      */
@@ -351,4 +531,59 @@ public class ServiceRegistryController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+    
+    /**
+     * 构建服务查询响应
+     * 未传sinceRevision或变更日志无法覆盖时返回全量数据（delta=false），否则返回增量数据（delta=true）
+     * 客户端本地视图哈希与If-None-Match一致时返回304
+     */
+    private ResponseEntity<?> servicesResponse(String message, String serviceName, String serviceVersion,
+                                               Long sinceRevision, String ifNoneMatch) {
+        RegistryCache.Delta delta = sinceRevision == null
+                ? null
+                : serviceRegistryService.getServiceChanges(sinceRevision, serviceName, serviceVersion);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", message);
+        long hash;
+        if (delta != null) {
+            hash = delta.getHash();
+            response.put("delta", true);
+            response.put("revision", delta.getRevision());
+            response.put("changed", delta.getChanged());
+            response.put("removed", delta.getRemoved());
+            response.put("total", delta.getChanged().size() + delta.getRemoved().size());
+        } else {
+            RegistryCache.View view = serviceRegistryService.getServicesView(serviceName, serviceVersion);
+            hash = view.getHash();
+            response.put("delta", false);
+            response.put("revision", view.getRevision());
+            response.put("data", view.getServices());
+            response.put("total", view.getServices().size());
+        }
+        response.put("hash", RegistryCache.formatHash(hash));
+        
+        String etag = "\"" + RegistryCache.formatHash(hash) + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+    
+    /**
+     * 构建批量操作的响应，success表示所有实例是否都处理成功
+     */
+    private Map<String, Object> batchResponse(String message, List<Map<String, Object>> results) {
+        long succeeded = results.stream().filter(result -> Boolean.TRUE.equals(result.get("success"))).count();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", succeeded == results.size());
+        response.put("message", message);
+        response.put("data", results);
+        response.put("total", results.size());
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        return response;
+    }
 }
\ No newline at end of file
@@ -1,28 +1,80 @@
 package com.example.registercenter.controller;
 
-import com.example.registercenter.entity.RegisteredService;
-import com.example.registercenter.service.ServiceRegistryService;
+import com.example.registercenter.cluster.ClusterRateLimiter;
+import com.example.registercenter.proxy.CircuitBreakerRegistry;
+import com.example.registercenter.proxy.ConcurrencyLimiter;
+import com.example.registercenter.proxy.ConcurrencyLimiterRegistry;
+import com.example.registercenter.proxy.LoadBalancerService;
+import com.example.registercenter.proxy.OutlierDetector;
+import com.example.registercenter.proxy.CachedResponse;
+import com.example.registercenter.proxy.ResponseCache;
+import com.example.registercenter.proxy.RetryRegistry;
+import com.example.registercenter.proxy.RouteTable;
+import com.example.registercenter.proxy.ServiceUpstreams;
+import com.example.registercenter.proxy.Upstream;
+import com.example.registercenter.proxy.UpstreamConnectionLimiter;
+import com.example.registercenter.proxy.UpstreamStats;
+import com.example.registercenter.service.RateLimitRuleService;
+import com.example.registercenter.util.BufferPool;
 import com.example.registercenter.util.RateLimiter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import jakarta.servlet.http.HttpServletRequest;
 import java.net.URI;
 
 /**
  * 虚拟域名代理控制器
- * 用于处理通过虚拟域名访问服务的请求转发
+ * 用于处理通过虚拟域名访问服务的请求转发，转发通过HttpClient异步完成，等待上游响应期间不占用Servlet线程
+ * 请求体和响应体均以流的方式转发，每个请求只占用固定大小的缓冲区
+ * 按服务名转发时在该服务的所有在线实例之间负载均衡，路由从内存路由表解析，请求路径上不访问数据库
+ * 熔断中的实例不参与负载均衡，所有在线实例都熔断时直接返回503
+ * 没有请求体的GET请求在连接失败时重试其他实例，可选对冲请求降低长尾延迟，二者受重试预算限制
+ * 虚拟域名可启用响应缓存，未命中的并发请求合并为一次上游调用
+ * 排队、重试和对冲的总时长不超过异步请求超时，异步请求超时或出错时取消未完成的上游请求并释放占用的名额
+ * 有请求体的请求上传不受异步请求超时限制，等待响应头的超时从请求体发送完成后开始计算
+ * 响应体转发不受异步请求超时限制，上游超过proxy.body-idle-timeout-ms没有数据时中断转发
+ * 转发所需的请求信息在Servlet线程中一次性读取，重试和对冲请求在其他线程中发送，不再读取可能已被容器回收的请求对象
  */
 @RestController
 @RequestMapping("/proxy")
@@ -31,162 +83,1185 @@ public class VirtualDomainProxyController {
     private static final Logger logger = LoggerFactory.getLogger(VirtualDomainProxyController.class);
     
     @Autowired
-    private ServiceRegistryService serviceRegistryService;
+    private HttpClient proxyHttpClient;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamConnectionLimiter upstreamConnectionLimiter;
+    
+    @Autowired
+    private RouteTable routeTable;
+    
+    @Autowired
+    private LoadBalancerService loadBalancerService;
+    
+    @Autowired
+    private RateLimitRuleService rateLimitRuleService;
+    
+    @Autowired
+    private ClusterRateLimiter clusterRateLimiter;
+    
+    @Autowired
+    private ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+    
+    @Autowired
+    private OutlierDetector outlierDetector;
+    
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    
+    @Autowired
+    private RetryRegistry retryRegistry;
+    
+    @Autowired
+    private ResponseCache responseCache;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // 请求路径中"/proxy/"前缀的长度
+    private static final int PROXY_PREFIX_LENGTH = "/proxy/".length();
+    
+    // 等待上游响应头的超时时间（毫秒）
+    @Value("${proxy.read-timeout-ms:30000}")
+    private long readTimeoutMillis;
+    
+    // 异步请求超时，转发截止时间在此之前，保证超时前能返回上游的响应或错误响应
+    @Value("${spring.mvc.async.request-timeout:35000ms}")
+    private Duration asyncRequestTimeout;
+    
+    // 转发截止时间比异步请求超时提前的时长（毫秒）
+    private static final long DEADLINE_MARGIN_MILLIS = 1000;
+    
+    // 转发响应体时等待上游数据的最长时间（毫秒），0表示不限制
+    @Value("${proxy.body-idle-timeout-ms:30000}")
+    private long bodyIdleTimeoutMillis;
+    
+    /**
+     * 请求属性：代理请求的响应体，WebConfig据此取消响应体写出阶段的异步请求超时
+     */
+    public static final String STREAMING_BODY_ATTRIBUTE = VirtualDomainProxyController.class.getName() + ".STREAMING_BODY";
+    
+    // 熔断时返回的错误信息
+    @Value("${proxy.circuit-breaker.open-message:服务熔断中，请稍后再试}")
+    private String circuitOpenMessage;
+    
+    // 熔断时原样返回的响应体，配置后代替默认的JSON错误响应
+    @Value("${proxy.circuit-breaker.open-body:}")
+    private String circuitOpenBody;
+    
+    // 熔断响应体的Content-Type
+    @Value("${proxy.circuit-breaker.open-content-type:application/json}")
+    private String circuitOpenContentType;
+    
+    // 逐跳头以及HttpClient不允许设置的请求头，不向上游转发
+    private static final Set<String> EXCLUDED_REQUEST_HEADERS = Set.of(
+            "host", "connection", "keep-alive", "proxy-connection", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade", "expect", "content-length");
+    
+    // 条件请求头，为响应缓存加载时不转发，避免上游对其他客户端的请求返回304
+    private static final Set<String> CONDITIONAL_REQUEST_HEADERS = Set.of(
+            "if-none-match", "if-modified-since", "if-match", "if-unmodified-since", "if-range");
+    
+    // 逐跳头不向客户端转发，由Servlet容器根据响应体重新生成
+    private static final Set<String> EXCLUDED_RESPONSE_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "te", "trailer", "transfer-encoding", "upgrade");
     
     /**
      * 通过虚拟域名或服务名代理请求到实际服务
      * 路径格式: /proxy/{virtualDomainOrServiceName}/**
      */
     @RequestMapping(value = "/{virtualDomainOrServiceName}/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE})
-    public ResponseEntity<?> proxyRequest(
+    public DeferredResult<ResponseEntity<StreamingResponseBody>> proxyRequest(
             @PathVariable String virtualDomainOrServiceName,
-            HttpServletRequest request,
-            @RequestBody(required = false) byte[] requestBody) {
+            HttpServletRequest request) {
+        
+        request.setAttribute(STREAMING_BODY_ATTRIBUTE, Boolean.TRUE);
+        // 有请求体时上传时间不可预计，不设置异步请求超时和转发截止时间，只在请求体发送完成后限制等待响应头的时间
+        boolean hasBody = hasRequestBody(request);
+        ClientRequest client = new ClientRequest(request, retryRegistry.isRetryable(request), hasBody ? Long.MAX_VALUE : deadlineNanos());
+        DeferredResult<ResponseEntity<StreamingResponseBody>> deferred = hasBody ? new DeferredResult<>(0L) : new DeferredResult<>();
+        deferred.onTimeout(() -> {
+            logger.warn("代理请求超时: {}", virtualDomainOrServiceName);
+            client.abort();
+            deferred.setResult(errorResponse(HttpStatus.GATEWAY_TIMEOUT, "服务响应超时"));
+        });
+        deferred.onError(error -> client.abort());
+        handle(virtualDomainOrServiceName, request, client).whenComplete((response, error) -> {
+            if (error != null) {
+                logger.error("虚拟域名代理请求失败: {}", error.getMessage(), error);
+                response = errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "代理请求失败: " + error.getMessage());
+            }
+            client.deliver(deferred, response);
+        });
+        return deferred;
+    }
+    
+    /**
+     * 转发截止时间，异步请求超时未启用时只受读取超时限制
+     */
+    private long deadlineNanos() {
+        long timeoutMillis = asyncRequestTimeout.toMillis();
+        if (timeoutMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis - DEADLINE_MARGIN_MILLIS));
+    }
+    
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> handle(
+            String virtualDomainOrServiceName, HttpServletRequest request, ClientRequest client) {
         
         try {
-            // 查找对应的服务
-            RegisteredService service = null;
+            // 从路由表解析虚拟域名或服务名，虚拟域名优先，按服务名转发时在所有在线实例之间负载均衡
+            ServiceUpstreams route = routeTable.resolve(virtualDomainOrServiceName);
+            if (route.getTotalInstances() == 0) {
+                logger.debug("未找到虚拟域名或服务名[{}]对应的服务", virtualDomainOrServiceName);
+                return CompletableFuture.completedFuture(errorResponse(HttpStatus.NOT_FOUND, "未找到虚拟域名或服务名对应的服务"));
+            }
             
-            // 先尝试通过虚拟域名查找
-            service = serviceRegistryService.findServiceByVirtualDomain(virtualDomainOrServiceName);
+            client.hashKey = loadBalancerService.hashKeyOf(route, request);
             
-            // 如果虚拟域名未找到，尝试通过服务名查找
-            if (service == null) {
-                logger.info("未找到虚拟域名[{}]，尝试通过服务名查找", virtualDomainOrServiceName);
-                List<RegisteredService> services = serviceRegistryService.findServices(virtualDomainOrServiceName, null);
-                
-                // 优先选择在线状态的服务
-                for (RegisteredService s : services) {
-                    if ("UP".equals(s.getStatus())) {
-                        service = s;
-                        break;
-                    }
-                }
-                
-                // 如果没有在线服务，选择第一个服务
-                if (service == null && !services.isEmpty()) {
-                    service = services.get(0);
-                }
+            // 检查按虚拟域名或服务名配置的限流规则（全局、按客户端IP、按请求头，可限定路径前缀）
+            String path = proxiedPath(request, virtualDomainOrServiceName);
+            client.ruleAdmission = rateLimitRuleService.check(virtualDomainOrServiceName, path, request);
+            RateLimitRuleService.CompiledRule deniedBy = client.ruleAdmission.getDeniedBy();
+            if (deniedBy != null) {
+                logger.warn("[{}]触发限流规则{}，计数维度：{}，每秒最大请求数：{}",
+                        virtualDomainOrServiceName, deniedBy.getId(), deniedBy.getKeyType(), deniedBy.getMaxRequestsPerSecond());
+                return CompletableFuture.completedFuture(errorResponse(HttpStatus.TOO_MANY_REQUESTS, deniedBy.getErrorMessage()));
             }
             
-            if (service == null) {
-                logger.warn("未找到虚拟域名或服务名[{}]对应的服务", virtualDomainOrServiceName);
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "未找到虚拟域名或服务名对应的服务");
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+            // 虚拟域名启用了响应缓存时，GET请求先查缓存，同一个键的并发未命中请求合并为一次上游调用
+            Upstream cacheOwner = cacheOwnerOf(route, virtualDomainOrServiceName);
+            if (cacheOwner != null && isCacheableRequest(request, cacheOwner)) {
+                return cachedProxy(request, client, route, virtualDomainOrServiceName, path, cacheOwner);
             }
+            return dispatch(client, route, virtualDomainOrServiceName, path, null);
             
-            if (!"UP".equals(service.getStatus())) {
-                logger.warn("服务[{}]已离线", service.getServiceName());
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", "服务已离线");
-                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        } catch (Exception e) {
+            logger.error("虚拟域名代理请求失败: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "代理请求失败: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 选择上游实例并转发，依次检查实例限流和服务并发限制
+     * @param cacheFill 为响应缓存加载时非空，响应体在大小上限内时完整读取
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> dispatch(ClientRequest client,
+            ServiceUpstreams route, String virtualDomainOrServiceName, String path, CacheFill cacheFill) {
+        
+        try {
+            Upstream target = loadBalancerService.choose(route, client.hashKey, Set.of());
+            if (target == null) {
+                if (!route.isEmpty()) {
+                    logger.warn("服务[{}]的所有在线实例均已熔断", virtualDomainOrServiceName);
+                    return CompletableFuture.completedFuture(circuitOpenResponse());
+                }
+                logger.warn("服务[{}]已离线", virtualDomainOrServiceName);
+                return CompletableFuture.completedFuture(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "服务已离线"));
             }
             
-            // 检查限流
-            if (service.getRateLimitEnabled() && service.getMaxRequestsPerSecond() > 0) {
-                String serviceKey = service.getServiceName() + ":" + service.getId();
-                boolean allowed = RateLimiter.isAllowed(serviceKey, service.getMaxRequestsPerSecond());
+            // 检查服务实例自身的限流配置
+            if (target.isRateLimited()) {
+                boolean allowed = clusterRateLimiter.isAllowed(target);
                 
                 if (!allowed) {
+                    // 被实例限流拒绝的请求退还限流规则的令牌
+                    if (client.ruleAdmission != null) {
+                        client.ruleAdmission.refund();
+                    }
                     logger.warn("服务[{}]触发限流，当前请求数：{}/{}", 
-                        service.getServiceName(), 
-                        RateLimiter.getCurrentCount(serviceKey), 
-                        service.getMaxRequestsPerSecond());
+                        target.getService().getServiceName(), 
+                        RateLimiter.getCurrentCount(target.getRateLimitKey(), target.getMaxRequestsPerSecond()), 
+                        target.getMaxRequestsPerSecond());
                     
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("success", false);
-                    errorResponse.put("message", service.getRateLimitErrorMessage());
-                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(errorResponse);
+                    return CompletableFuture.completedFuture(errorResponse(HttpStatus.TOO_MANY_REQUESTS, target.getRateLimitErrorMessage()));
                 }
             }
             
-            // 构建目标URL
-            String targetBaseUrl = "http://" + service.getIp() + ":" + service.getPort();
-            
-            // 获取请求路径中的剩余部分（除去/proxy/{virtualDomainOrServiceName}）
-            String pathInfo = request.getRequestURI().replaceFirst(Pattern.quote("/proxy/" + virtualDomainOrServiceName), "");
-            if (pathInfo.isEmpty()) {
-                pathInfo = "/";
+            // 限制服务的并发请求数，名额已满时短暂排队，排队期间不占用线程
+            ConcurrencyLimiter concurrencyLimiter = concurrencyLimiterRegistry.limiterFor(target.getService().getServiceName());
+            if (concurrencyLimiter == null) {
+                return forward(client, route, target, path, null, cacheFill);
             }
-            
-            // 构建完整的目标URI
-            UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(targetBaseUrl + pathInfo);
-            
-            // 复制原始请求的查询参数
-            request.getParameterMap().forEach((key, values) -> {
-                for (String value : values) {
-                    uriBuilder.queryParam(key, value);
+            return concurrencyLimiterRegistry.acquire(concurrencyLimiter).thenCompose(granted -> {
+                if (!granted) {
+                    logger.warn("服务[{}]并发请求数已达上限: {}", target.getService().getServiceName(), concurrencyLimiter.getLimit());
+                    return CompletableFuture.completedFuture(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后再试"));
                 }
+                return forward(client, route, target, path, concurrencyLimiter, cacheFill);
             });
             
-            URI targetUri = uriBuilder.build().toUri();
-            logger.debug("转发请求到: {}，HTTP方法: {}", targetUri, request.getMethod());
-            
-            // 创建新的请求头
-            HttpHeaders headers = new HttpHeaders();
-            
-            // 复制原始请求的头信息
+        } catch (Exception e) {
+            logger.error("虚拟域名代理请求失败: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "代理请求失败: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 启用了响应缓存的虚拟域名路由返回其实例，按服务名转发或未启用缓存时返回null
+     */
+    private static Upstream cacheOwnerOf(ServiceUpstreams route, String virtualDomainOrServiceName) {
+        if (route.getUpstreams().size() != 1) {
+            return null;
+        }
+        Upstream owner = route.getUpstreams().get(0);
+        return owner.isResponseCacheEnabled() && virtualDomainOrServiceName.equals(owner.getService().getVirtualDomain())
+                ? owner : null;
+    }
+    
+    /**
+     * 可以使用缓存的请求：没有请求体的GET请求，客户端没有要求跳过缓存，
+     * 携带Authorization时只有该请求头参与缓存键才可以缓存
+     */
+    private static boolean isCacheableRequest(HttpServletRequest request, Upstream owner) {
+        if (!"GET".equals(request.getMethod()) || request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null) {
+            return false;
+        }
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null) {
+            String lowerCase = cacheControl.toLowerCase(Locale.ROOT);
+            if (lowerCase.contains("no-cache") || lowerCase.contains("no-store")) {
+                return false;
+            }
+        }
+        return request.getHeader(HttpHeaders.AUTHORIZATION) == null
+                || owner.getResponseCacheVaryHeaders().stream().anyMatch(HttpHeaders.AUTHORIZATION::equalsIgnoreCase);
+    }
+    
+    /**
+     * 通过响应缓存转发：命中未过期的条目时直接返回；未命中时只有第一个请求转发到上游，其余请求等待其结果
+     * 响应不能缓存时等待的请求各自转发
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> cachedProxy(HttpServletRequest request, ClientRequest client,
+            ServiceUpstreams route, String virtualDomain, String path, Upstream owner) {
+        
+        String key = responseCache.keyOf(virtualDomain, request, owner.getResponseCacheVaryHeaders());
+        CachedResponse cached = responseCache.get(key);
+        if (cached != null && cached.isFresh(System.nanoTime())) {
+            responseCache.recordHit();
+            return CompletableFuture.completedFuture(cachedResponseEntity(cached, client.ifNoneMatch, "HIT"));
+        }
+        
+        CompletableFuture<CachedResponse> leader = new CompletableFuture<>();
+        CompletableFuture<CachedResponse> inFlight = responseCache.startLoad(key, leader);
+        if (inFlight != null) {
+            responseCache.recordCoalesced();
+            return inFlight.thenCompose(loaded -> loaded != null
+                    ? CompletableFuture.completedFuture(cachedResponseEntity(loaded, client.ifNoneMatch, "HIT"))
+                    : dispatch(client, route, virtualDomain, path, null));
+        }
+        
+        responseCache.recordMiss();
+        CompletableFuture<ResponseEntity<StreamingResponseBody>> upstream;
+        try {
+            upstream = dispatch(client, route, virtualDomain, path, new CacheFill(cached != null ? cached.getEtag() : null));
+        } catch (RuntimeException e) {
+            responseCache.finishLoad(key, leader, null);
+            throw e;
+        }
+        return upstream.handle((response, error) -> {
+            if (error != null) {
+                responseCache.finishLoad(key, leader, null);
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            boolean revalidated = cached != null && response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value();
+            CachedResponse stored = store(key, virtualDomain, owner, cached, response);
+            responseCache.finishLoad(key, leader, stored);
+            if (stored == null) {
+                return response;
+            }
+            if (revalidated) {
+                responseCache.recordRevalidated();
+            }
+            return cachedResponseEntity(stored, client.ifNoneMatch, revalidated ? "REVALIDATED" : "MISS");
+        });
+    }
+    
+    /**
+     * 保存上游响应，上游对重新验证返回304时延长原条目的过期时间
+     * @return 保存的条目，响应不能缓存时返回null
+     */
+    private CachedResponse store(String key, String virtualDomain, Upstream owner, CachedResponse previous,
+                                 ResponseEntity<StreamingResponseBody> response) {
+        int status = response.getStatusCode().value();
+        long nowNanos = System.nanoTime();
+        if (previous != null && status == HttpStatus.NOT_MODIFIED.value()) {
+            // 304响应没有Cache-Control时沿用原响应的缓存策略
+            HttpHeaders policyHeaders = response.getHeaders().containsKey(HttpHeaders.CACHE_CONTROL)
+                    ? response.getHeaders() : previous.getHeaders();
+            long ttlMillis = Math.max(0, responseCache.ttlMillis(policyHeaders, owner.getResponseCacheTtlSeconds(), owner.getResponseCacheVaryHeaders()));
+            CachedResponse refreshed = previous.withExpiry(nowNanos + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+            return responseCache.put(refreshed) ? refreshed : null;
+        }
+        if (status != HttpStatus.OK.value() || !(response.getBody() instanceof BufferedBody body)) {
+            return null;
+        }
+        long ttlMillis = responseCache.ttlMillis(response.getHeaders(), owner.getResponseCacheTtlSeconds(), owner.getResponseCacheVaryHeaders());
+        String etag = response.getHeaders().getETag();
+        // 每次使用前都需要重新验证的响应只有带ETag时才缓存
+        if (ttlMillis < 0 || (ttlMillis == 0 && etag == null)) {
+            return null;
+        }
+        CachedResponse stored = new CachedResponse(key, virtualDomain, status, response.getHeaders(), body.bytes, etag,
+                nowNanos + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        return responseCache.put(stored) ? stored : null;
+    }
+    
+    /**
+     * 用缓存条目构建响应，客户端的If-None-Match与缓存的ETag匹配时返回304
+     */
+    private static ResponseEntity<StreamingResponseBody> cachedResponseEntity(CachedResponse cached, String ifNoneMatch, String cacheStatus) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(cached.getHeaders());
+        headers.set("X-Cache", cacheStatus);
+        if (cached.matches(ifNoneMatch)) {
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        return ResponseEntity.status(cached.getStatus()).headers(headers).body(new BufferedBody(cached.getBody()));
+    }
+    
+    /**
+     * 转发请求到选中的上游实例，没有请求体的GET请求按配置在连接失败时重试其他实例，并在响应过慢时发送对冲请求
+     * @param concurrencyLimiter 已获取名额的并发限制器，未启用并发限制时为null
+     * @param cacheFill 为响应缓存加载时非空
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> forward(
+            ClientRequest client, ServiceUpstreams route, Upstream target, String path,
+            ConcurrencyLimiter concurrencyLimiter, CacheFill cacheFill) {
+        
+        String serviceName = target.getService().getServiceName();
+        boolean retryable = client.retryable;
+        ProxyExchange exchange = new ProxyExchange(client, route, path, serviceName, concurrencyLimiter, retryable, cacheFill);
+        if (retryable) {
+            retryRegistry.onRequest(serviceName);
+        }
+        // 排队等待并发名额期间请求可能已经超时，此时绑定会直接中止本次转发
+        client.attach(exchange);
+        exchange.start(target);
+        
+        // 超过服务最近的p95延迟仍未响应时向另一个实例发送对冲请求，对冲时间晚于转发截止时间时不发送
+        if (retryable) {
+            long hedgeDelayMillis = retryRegistry.hedgeDelayMillis(serviceName);
+            if (hedgeDelayMillis > 0 && hedgeDelayMillis < client.remainingMillis() && route.getUpstreams().size() > 1) {
+                CompletableFuture.runAsync(exchange::hedge,
+                        CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS));
+            }
+        }
+        return exchange.result;
+    }
+    
+    /**
+     * 向一个上游实例发送请求，返回的结果总是正常完成，失败原因记录在Attempt中
+     */
+    private Attempt attempt(ClientRequest client, Upstream target, URI targetUri,
+                            ConcurrencyLimiter concurrencyLimiter, CacheFill cacheFill) {
+        Attempt attempt = new Attempt(target, targetUri);
+        
+        // 等待上游响应的时间不超过转发截止时间
+        long timeoutMillis = Math.min(readTimeoutMillis, client.remainingMillis());
+        if (timeoutMillis <= 0) {
+            logger.warn("服务[{}]的请求已超过转发截止时间", target.getService().getServiceName());
+            return attempt.reject(errorResponse(HttpStatus.GATEWAY_TIMEOUT, "服务响应超时"));
+        }
+        
+        // 获取熔断器许可，半开状态下试探名额在选择实例之后被其他请求用完时快速失败
+        if (!circuitBreakerRegistry.tryAcquire(target)) {
+            logger.warn("服务[{}]的实例{}已熔断", target.getService().getServiceName(), target.getAuthority());
+            return attempt.reject(circuitOpenResponse());
+        }
+        
+        // 限制到单个上游的并发连接数，避免一个慢服务占满连接
+        String upstream = target.getAuthority();
+        if (!upstreamConnectionLimiter.tryAcquire(upstream)) {
+            circuitBreakerRegistry.release(target);
+            logger.warn("服务[{}]的上游连接数已达上限: {}", target.getService().getServiceName(), upstream);
+            return attempt.reject(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "服务连接数已达上限，请稍后再试"));
+        }
+        
+        // 连接名额在响应体转发完成后才释放，保证只释放一次；处理中请求数用于最少请求类负载均衡策略
+        UpstreamStats stats = target.getStats();
+        stats.incrementInFlight();
+        AtomicBoolean released = new AtomicBoolean();
+        attempt.releaseConnection = () -> {
+            if (released.compareAndSet(false, true)) {
+                stats.decrementInFlight();
+                upstreamConnectionLimiter.release(upstream);
+            }
+        };
+        
+        HttpRequest upstreamRequest;
+        try {
+            upstreamRequest = buildUpstreamRequest(client, targetUri, timeoutMillis, cacheFill, attempt);
+        } catch (RuntimeException e) {
+            circuitBreakerRegistry.release(target);
+            attempt.releaseConnection.run();
+            logger.error("虚拟域名代理请求失败: {}", e.getMessage(), e);
+            return attempt.reject(errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "代理请求失败: " + e.getMessage()));
+        }
+        
+        // 异步转发请求，收到上游响应头后即开始向客户端流式转发响应体
+        logger.debug("转发请求到: {}，HTTP方法: {}", targetUri, client.method);
+        long startNanos = System.nanoTime();
+        attempt.send = proxyHttpClient.sendAsync(upstreamRequest, HttpResponse.BodyHandlers.ofInputStream());
+        attempt.outcome = attempt.send.handle((upstreamResponse, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                if (!attempt.headerTimedOut) {
+                    // 对冲请求中落后的一方被取消，不计入健康统计
+                    circuitBreakerRegistry.release(target);
+                    attempt.releaseConnection.run();
+                    attempt.error = cause;
+                    return attempt;
+                }
+                cause = new HttpTimeoutException("等待上游响应头超时");
+            }
+            long latencyNanos = System.nanoTime() - startNanos;
+            if (concurrencyLimiter != null) {
+                // 连接失败、超时或上游返回503视为过载，自适应模式下收缩并发上限
+                boolean overloaded = error != null || upstreamResponse.statusCode() == HttpStatus.SERVICE_UNAVAILABLE.value();
+                concurrencyLimiter.onResponse(latencyNanos, overloaded);
+            }
+            // 连接失败、超时和5xx计入被动健康检查和熔断器，失败过多的实例暂时摘除或熔断
+            if (error != null || upstreamResponse.statusCode() >= 500) {
+                outlierDetector.onFailure(target);
+                circuitBreakerRegistry.onFailure(target);
+            } else {
+                outlierDetector.onSuccess(target.getStats());
+                circuitBreakerRegistry.onSuccess(target);
+                retryRegistry.recordLatency(target.getService().getServiceName(), latencyNanos);
+            }
+            if (error != null) {
+                attempt.releaseConnection.run();
+                attempt.error = cause;
+            } else {
+                attempt.response = upstreamResponse;
+            }
+            return attempt;
+        });
+        return attempt;
+    }
+    
+    /**
+     * 一次转发请求：首个请求、连接失败后的重试以及对冲请求，采用最先得到的响应，其余请求取消
+     * 状态在锁内修改，发送请求和释放资源在锁外进行
+     */
+    private final class ProxyExchange {
+        
+        private final ClientRequest client;
+        private final ServiceUpstreams route;
+        private final String path;
+        private final String serviceName;
+        private final ConcurrencyLimiter concurrencyLimiter;
+        private final boolean retryable;
+        private final CacheFill cacheFill;
+        
+        private final CompletableFuture<ResponseEntity<StreamingResponseBody>> result = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        
+        // 已发送过请求的实例，重试和对冲时不再选择
+        private final Set<Upstream> tried = new HashSet<>();
+        
+        // 尚未得到结果的请求
+        private final List<Attempt> pending = new ArrayList<>();
+        
+        private int retriesLeft;
+        private boolean hedged;
+        private boolean done;
+        private final AtomicBoolean slotReleased = new AtomicBoolean();
+        
+        ProxyExchange(ClientRequest client, ServiceUpstreams route, String path, String serviceName,
+                      ConcurrencyLimiter concurrencyLimiter, boolean retryable, CacheFill cacheFill) {
+            this.client = client;
+            this.route = route;
+            this.path = path;
+            this.serviceName = serviceName;
+            this.concurrencyLimiter = concurrencyLimiter;
+            this.retryable = retryable;
+            this.cacheFill = cacheFill;
+            this.retriesLeft = retryable ? retryRegistry.getMaxRetries() : 0;
+        }
+        
+        void start(Upstream target) {
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 构建目标URI，直接使用原始请求的路径和查询字符串，避免重新编码
+            URI targetUri = targetUri(target, path, client.queryString);
+            Attempt attempt = attempt(client, target, targetUri, concurrencyLimiter, cacheFill);
+            boolean aborted;
+            lock.lock();
+            try {
+                // 发送期间转发可能已被中止
+                aborted = done;
+                if (!aborted) {
+                    tried.add(target);
+                    pending.add(attempt);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (aborted) {
+                attempt.cancel();
+                attempt.outcome.thenAccept(Attempt::discard);
+                return;
+            }
+            attempt.outcome.thenAccept(this::onAttempt).exceptionally(e -> {
+                logger.error("虚拟域名代理请求失败: {}", e.getMessage(), e);
+                attempt.discard();
+                releaseSlot();
+                result.complete(errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "代理请求失败: " + e.getMessage()));
+                return null;
+            });
+        }
+        
+        /**
+         * 首个请求超过对冲延迟仍未响应时，向另一个实例发送对冲请求
+         */
+        void hedge() {
+            Upstream hedgeTarget;
+            lock.lock();
+            try {
+                if (done || hedged || pending.size() != 1) {
+                    return;
+                }
+                hedgeTarget = nextTarget();
+                if (hedgeTarget == null) {
+                    return;
+                }
+                hedged = true;
+            } finally {
+                lock.unlock();
+            }
+            logger.debug("服务[{}]响应超过对冲延迟，发送对冲请求到: {}", serviceName, hedgeTarget.getAuthority());
+            start(hedgeTarget);
+        }
+        
+        private void onAttempt(Attempt attempt) {
+            Upstream retryTarget = null;
+            List<Attempt> losers = null;
+            boolean discard = false;
+            lock.lock();
+            try {
+                pending.remove(attempt);
+                if (done) {
+                    discard = true;
+                } else if (attempt.isConnectFailure() && retriesLeft > 0 && (retryTarget = nextTarget()) != null) {
+                    retriesLeft--;
+                } else if (attempt.response == null && !pending.isEmpty()) {
+                    // 对冲请求仍在进行，等待其结果
+                    discard = true;
+                } else {
+                    done = true;
+                    losers = new ArrayList<>(pending);
+                    pending.clear();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (discard) {
+                attempt.discard();
+                return;
+            }
+            if (retryTarget != null) {
+                logger.warn("无法连接到服务: {}，重试实例: {}", attempt.targetUri, retryTarget.getAuthority());
+                start(retryTarget);
+                return;
+            }
+            for (Attempt loser : losers) {
+                loser.cancel();
+            }
+            complete(attempt);
+        }
+        
+        /**
+         * 中止转发：取消所有未完成的请求并释放并发名额，已完成的转发不受影响
+         */
+        void abort() {
+            List<Attempt> cancelled;
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                done = true;
+                cancelled = new ArrayList<>(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            // 取消前已经收到的响应在onAttempt中丢弃
+            for (Attempt attempt : cancelled) {
+                attempt.cancel();
+            }
+            releaseSlot();
+            result.complete(errorResponse(HttpStatus.GATEWAY_TIMEOUT, "服务响应超时"));
+        }
+        
+        /**
+         * 选择一个未尝试过的实例并占用一次重试预算，需在锁内调用
+         */
+        private Upstream nextTarget() {
+            if (!retryable || client.remainingMillis() <= 0) {
+                return null;
+            }
+            Upstream next = loadBalancerService.choose(route, client.hashKey, tried);
+            if (next == null) {
+                return null;
+            }
+            // 重试实例同样受实例自身的限流配置约束
+            if (next.isRateLimited() && !clusterRateLimiter.isAllowed(next)) {
+                return null;
+            }
+            if (!retryRegistry.tryAcquire(serviceName)) {
+                logger.debug("服务[{}]重试预算已用完", serviceName);
+                return null;
+            }
+            return next;
+        }
+        
+        private void complete(Attempt attempt) {
+            if (attempt.response == null) {
+                releaseSlot();
+                result.complete(attempt.rejected != null ? attempt.rejected : upstreamErrorResponse(attempt.targetUri, attempt.error));
+                return;
+            }
+            // 转发响应状态码、头信息和响应体
+            HttpResponse<InputStream> upstreamResponse = attempt.response;
+            InputStream body = upstreamResponse.body();
+            if (cacheFill != null) {
+                // 为响应缓存加载时读取响应体，不超过缓存大小上限时完整保存，否则已读取的部分与剩余部分一起流式转发
+                int maxEntryBytes = responseCache.getMaxEntryBytes();
+                byte[] prefix;
+                try {
+                    prefix = body.readNBytes(maxEntryBytes + 1);
+                } catch (IOException e) {
+                    attempt.discard();
+                    releaseSlot();
+                    result.complete(upstreamErrorResponse(attempt.targetUri, e));
+                    return;
+                }
+                if (prefix.length <= maxEntryBytes) {
+                    attempt.discard();
+                    releaseSlot();
+                    result.complete(ResponseEntity
+                            .status(upstreamResponse.statusCode())
+                            .headers(copyResponseHeaders(upstreamResponse))
+                            .body(new BufferedBody(prefix)));
+                    return;
+                }
+                body = new SequenceInputStream(new ByteArrayInputStream(prefix), body);
+            }
+            UpstreamBody upstreamBody = new UpstreamBody(body, bodyIdleTimeoutMillis, attempt.targetUri, () -> {
+                attempt.releaseConnection.run();
+                releaseSlot();
+            });
+            if (!result.complete(ResponseEntity
+                    .status(upstreamResponse.statusCode())
+                    .headers(copyResponseHeaders(upstreamResponse))
+                    .body(upstreamBody))) {
+                upstreamBody.discard();
+            }
+        }
+        
+        private void releaseSlot() {
+            if (concurrencyLimiter != null && slotReleased.compareAndSet(false, true)) {
+                concurrencyLimiter.release();
+            }
+        }
+    }
+    
+    /**
+     * 发送到单个上游实例的请求及其结果
+     */
+    private static final class Attempt {
+        
+        private final Upstream target;
+        private final URI targetUri;
+        
+        private volatile CompletableFuture<HttpResponse<InputStream>> send;
+        private CompletableFuture<Attempt> outcome;
+        private Runnable releaseConnection = () -> { };
+        
+        // 请求体发送完成后等待响应头超时，send因此被取消
+        private volatile boolean headerTimedOut;
+        
+        // 以下三者只有一个非空：上游响应、上游调用异常、本地拒绝时返回的响应
+        private HttpResponse<InputStream> response;
+        private Throwable error;
+        private ResponseEntity<StreamingResponseBody> rejected;
+        
+        Attempt(Upstream target, URI targetUri) {
+            this.target = target;
+            this.targetUri = targetUri;
+        }
+        
+        Attempt reject(ResponseEntity<StreamingResponseBody> response) {
+            this.rejected = response;
+            this.outcome = CompletableFuture.completedFuture(this);
+            return this;
+        }
+        
+        boolean isConnectFailure() {
+            return error instanceof HttpConnectTimeoutException || error instanceof ConnectException;
+        }
+        
+        void cancel() {
+            if (send != null) {
+                send.cancel(true);
+            }
+        }
+        
+        /**
+         * 请求体发送完成后开始计算等待响应头的超时
+         */
+        void startHeaderTimeout(long timeoutMillis) {
+            CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                CompletableFuture<HttpResponse<InputStream>> pending = send;
+                if (pending != null && !pending.isDone()) {
+                    headerTimedOut = true;
+                    pending.cancel(true);
+                }
+            });
+        }
+        
+        /**
+         * 丢弃未被采用的结果，关闭响应体并释放连接
+         */
+        void discard() {
+            if (response != null) {
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    logger.debug("关闭上游响应体失败: {}", e.getMessage());
+                }
+            }
+            releaseConnection.run();
+        }
+    }
+    
+    /**
+     * 一次代理请求在客户端一侧的状态：转发所需的请求信息快照、转发截止时间、正在进行的转发以及已交给Spring MVC的上游响应体
+     * 异步请求超时或出错时中止，取消未完成的上游请求；响应体尚未开始写出时关闭并释放名额
+     */
+    private static final class ClientRequest {
+        
+        private final String method;
+        private final String queryString;
+        private final String remoteAddr;
+        private final String ifNoneMatch;
+        
+        // 转发到上游的请求头，已去掉逐跳头，按原始顺序保存
+        private final List<Map.Entry<String, String>> headers = new ArrayList<>();
+        
+        // 请求体在第一次发送时才读取，有请求体的请求不会重试或对冲，只会读取一次
+        private final HttpRequest.BodyPublisher bodyPublisher;
+        private final boolean hasBody;
+        
+        private final boolean retryable;
+        
+        // 一致性哈希键，在解析路由后设置，未使用一致性哈希时为null
+        private String hashKey;
+        
+        // 限流规则的检查结果，实例限流拒绝请求时据此退还规则的令牌
+        private RateLimitRuleService.Admission ruleAdmission;
+        
+        private final long deadlineNanos;
+        private final AtomicReference<ProxyExchange> exchange = new AtomicReference<>();
+        private final AtomicReference<UpstreamBody> deliveredBody = new AtomicReference<>();
+        private volatile boolean aborted;
+        
+        ClientRequest(HttpServletRequest request, boolean retryable, long deadlineNanos) {
+            this.method = request.getMethod();
+            this.queryString = request.getQueryString();
+            this.remoteAddr = request.getRemoteAddr();
+            this.ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
             Enumeration<String> headerNames = request.getHeaderNames();
             while (headerNames.hasMoreElements()) {
                 String headerName = headerNames.nextElement();
+                if (EXCLUDED_REQUEST_HEADERS.contains(headerName.toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
                 Enumeration<String> headerValues = request.getHeaders(headerName);
                 while (headerValues.hasMoreElements()) {
-                    String headerValue = headerValues.nextElement();
-                    // 跳过Host头，由RestTemplate自动处理
-                    if (!"Host".equalsIgnoreCase(headerName)) {
-                        headers.add(headerName, headerValue);
-                    }
+                    headers.add(Map.entry(headerName, headerValues.nextElement()));
                 }
             }
+            this.bodyPublisher = requestBodyPublisher(request);
+            this.hasBody = hasRequestBody(request);
+            this.retryable = retryable;
+            this.deadlineNanos = deadlineNanos;
+        }
+        
+        long remainingMillis() {
+            return deadlineNanos == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+        
+        /**
+         * 绑定本次请求的转发，请求已中止时直接中止该转发
+         */
+        void attach(ProxyExchange proxyExchange) {
+            exchange.set(proxyExchange);
+            if (aborted) {
+                proxyExchange.abort();
+            }
+        }
+        
+        /**
+         * 将响应交给Spring MVC，请求已超时或已结束时丢弃响应体
+         */
+        void deliver(DeferredResult<ResponseEntity<StreamingResponseBody>> deferred, ResponseEntity<StreamingResponseBody> response) {
+            UpstreamBody body = response.getBody() instanceof UpstreamBody upstreamBody ? upstreamBody : null;
+            if (body != null) {
+                deliveredBody.set(body);
+            }
+            if ((!deferred.setResult(response) || aborted) && body != null) {
+                body.discard();
+            }
+        }
+        
+        void abort() {
+            aborted = true;
+            ProxyExchange proxyExchange = exchange.get();
+            if (proxyExchange != null) {
+                proxyExchange.abort();
+            }
+            UpstreamBody body = deliveredBody.get();
+            if (body != null) {
+                body.discard();
+            }
+        }
+    }
+    
+    /**
+     * 上游响应体，由Spring MVC写出或在请求中止时丢弃，二者只会执行其一
+     * 写出或丢弃完成后关闭上游输入流并释放连接名额和并发名额
+     * 写出期间单次读取上游等待超过空闲超时时关闭上游输入流，中断转发；等待客户端读取的时间不计入
+     */
+    private static final class UpstreamBody implements StreamingResponseBody {
+        
+        private final InputStream upstreamBody;
+        private final long idleTimeoutMillis;
+        private final URI targetUri;
+        private final Runnable onComplete;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        
+        // 当前这次读取上游开始的时间，未在读取时为0
+        private volatile long readStartedNanos;
+        private volatile boolean finished;
+        
+        UpstreamBody(InputStream upstreamBody, long idleTimeoutMillis, URI targetUri, Runnable onComplete) {
+            this.upstreamBody = upstreamBody;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.targetUri = targetUri;
+            this.onComplete = onComplete;
+        }
+        
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            if (!claimed.compareAndSet(false, true)) {
+                // 请求已中止，响应体已被丢弃
+                return;
+            }
+            if (idleTimeoutMillis > 0) {
+                scheduleIdleCheck(idleTimeoutMillis);
+            }
+            try (InputStream in = idleTimeoutMillis > 0 ? new IdleTrackingInputStream(upstreamBody) : upstreamBody) {
+                BufferPool.copy(in, outputStream);
+            } finally {
+                finished = true;
+                onComplete.run();
+            }
+        }
+        
+        private void scheduleIdleCheck(long delayMillis) {
+            CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                if (finished) {
+                    return;
+                }
+                long startedNanos = readStartedNanos;
+                long waitedMillis = startedNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+                if (waitedMillis >= idleTimeoutMillis) {
+                    logger.warn("上游响应体超过 {} 毫秒没有数据，中断转发: {}", idleTimeoutMillis, targetUri);
+                    try {
+                        upstreamBody.close();
+                    } catch (IOException e) {
+                        logger.debug("关闭上游响应体失败: {}", e.getMessage());
+                    }
+                    return;
+                }
+                scheduleIdleCheck(idleTimeoutMillis - waitedMillis);
+            });
+        }
+        
+        /**
+         * 记录每次读取上游的开始时间，供空闲检查使用
+         */
+        private final class IdleTrackingInputStream extends FilterInputStream {
             
-            // 设置X-Forwarded-For头，表明请求经过转发
-            String clientIp = request.getRemoteAddr();
-            headers.add("X-Forwarded-For", clientIp);
-            
-            // 创建请求实体
-            HttpEntity<byte[]> requestEntity = new HttpEntity<>(requestBody, headers);
-            
-            // 根据原始请求方法转发请求
-            ResponseEntity<byte[]> responseEntity;
-            switch (request.getMethod()) {
-                case "GET":
-                    responseEntity = restTemplate.exchange(targetUri, HttpMethod.GET, requestEntity, byte[].class);
-                    break;
-                case "POST":
-                    responseEntity = restTemplate.exchange(targetUri, HttpMethod.POST, requestEntity, byte[].class);
-                    break;
-                case "PUT":
-                    responseEntity = restTemplate.exchange(targetUri, HttpMethod.PUT, requestEntity, byte[].class);
-                    break;
-                case "DELETE":
-                    responseEntity = restTemplate.exchange(targetUri, HttpMethod.DELETE, requestEntity, byte[].class);
-                    break;
-                default:
-                    logger.warn("不支持的HTTP方法: {}", request.getMethod());
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("success", false);
-                    errorResponse.put("message", "不支持的HTTP方法");
-                    return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).body(errorResponse);
+            IdleTrackingInputStream(InputStream in) {
+                super(in);
             }
             
-            // 转发响应状态码、头信息和响应体
-            return ResponseEntity
-                    .status(responseEntity.getStatusCode())
-                    .headers(responseEntity.getHeaders())
-                    .body(responseEntity.getBody());
+            @Override
+            public int read() throws IOException {
+                readStartedNanos = System.nanoTime();
+                try {
+                    return super.read();
+                } finally {
+                    readStartedNanos = 0;
+                }
+            }
             
-        } catch (Exception e) {
-            logger.error("虚拟域名代理请求失败: {}", e.getMessage(), e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "代理请求失败: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                readStartedNanos = System.nanoTime();
+                try {
+                    return super.read(b, off, len);
+                } finally {
+                    readStartedNanos = 0;
+                }
+            }
+        }
+        
+        void discard() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                upstreamBody.close();
+            } catch (IOException e) {
+                logger.debug("关闭上游响应体失败: {}", e.getMessage());
+            } finally {
+                onComplete.run();
+            }
+        }
+    }
+    
+    /**
+     * 为响应缓存加载上游响应时的选项
+     */
+    private static final class CacheFill {
+        
+        // 缓存中已过期条目的ETag，用于向上游发送条件请求，没有时为null
+        private final String etag;
+        
+        CacheFill(String etag) {
+            this.etag = etag;
+        }
+    }
+    
+    /**
+     * 已完整读取到内存中的响应体
+     */
+    private static final class BufferedBody implements StreamingResponseBody {
+        
+        private final byte[] bytes;
+        
+        BufferedBody(byte[] bytes) {
+            this.bytes = bytes;
+        }
+        
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(bytes);
+        }
+    }
+    
+    /**
+     * 去掉/proxy/{virtualDomainOrServiceName}前缀后的原始请求路径，为空时返回/
+     */
+    private static String proxiedPath(HttpServletRequest request, String virtualDomainOrServiceName) {
+        String requestUri = request.getRequestURI();
+        int pathStart = request.getContextPath().length() + PROXY_PREFIX_LENGTH + virtualDomainOrServiceName.length();
+        return pathStart >= requestUri.length() ? "/" : requestUri.substring(pathStart);
+    }
+    
+    /**
+     * 拼接目标URI：上游基础地址 + 原始路径 + 原始查询字符串
+     */
+    private static URI targetUri(Upstream target, String path, String queryString) {
+        StringBuilder uri = new StringBuilder(target.getBaseUri().length() + path.length()
+                + (queryString != null ? queryString.length() + 1 : 0));
+        uri.append(target.getBaseUri()).append(path);
+        if (queryString != null) {
+            uri.append('?').append(queryString);
+        }
+        return URI.create(uri.toString());
+    }
+    
+    /**
+     * 用请求快照构建转发到上游的请求，复制原始请求头并设置X-Forwarded-For
+     * 为响应缓存加载时不转发客户端的条件请求头，缓存中有ETag时改为用该ETag重新验证
+     * HttpRequest的超时包含发送请求体的时间，有请求体时不设置，改为在请求体发送完成后由attempt开始计时
+     */
+    private HttpRequest buildUpstreamRequest(ClientRequest client, URI targetUri, long timeoutMillis, CacheFill cacheFill, Attempt attempt) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(targetUri);
+        HttpRequest.BodyPublisher bodyPublisher = client.bodyPublisher;
+        if (client.hasBody) {
+            bodyPublisher = new BodySentPublisher(bodyPublisher, () -> attempt.startHeaderTimeout(timeoutMillis));
+        } else {
+            builder.timeout(Duration.ofMillis(timeoutMillis));
+        }
+        
+        // 复制原始请求的头信息，逐跳头和由HttpClient自动处理的头在快照中已去掉
+        for (Map.Entry<String, String> header : client.headers) {
+            if (cacheFill != null && CONDITIONAL_REQUEST_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            builder.header(header.getKey(), header.getValue());
+        }
+        
+        // 设置X-Forwarded-For头，表明请求经过转发
+        builder.header("X-Forwarded-For", client.remoteAddr);
+        if (cacheFill != null && cacheFill.etag != null) {
+            builder.header(HttpHeaders.IF_NONE_MATCH, cacheFill.etag);
+        }
+        
+        return builder.method(client.method, bodyPublisher).build();
+    }
+    
+    /**
+     * 以流的方式读取原始请求体
+     * 已知长度时按原长度发送，分块传输的请求体以分块方式发送，没有请求体时不发送
+     */
+    private static HttpRequest.BodyPublisher requestBodyPublisher(HttpServletRequest request) {
+        if (!hasRequestBody(request)) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        long contentLength = request.getContentLengthLong();
+        HttpRequest.BodyPublisher streaming = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return request.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return contentLength > 0 ? HttpRequest.BodyPublishers.fromPublisher(streaming, contentLength) : streaming;
+    }
+    
+    /**
+     * 请求是否带有请求体：声明了正数的Content-Length或使用分块传输
+     */
+    private static boolean hasRequestBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null;
+    }
+    
+    /**
+     * 请求体全部交给HttpClient后回调的BodyPublisher，用于从此时开始计算等待响应头的超时
+     */
+    private static final class BodySentPublisher implements HttpRequest.BodyPublisher {
+        
+        private final HttpRequest.BodyPublisher delegate;
+        private final Runnable onSent;
+        
+        BodySentPublisher(HttpRequest.BodyPublisher delegate, Runnable onSent) {
+            this.delegate = delegate;
+            this.onSent = onSent;
+        }
+        
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+        
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            delegate.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+                
+                @Override
+                public void onNext(ByteBuffer item) {
+                    subscriber.onNext(item);
+                }
+                
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+                
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                    onSent.run();
+                }
+            });
+        }
+    }
+    
+    /**
+     * 复制上游响应头，跳过逐跳头
+     */
+    private static HttpHeaders copyResponseHeaders(HttpResponse<?> upstreamResponse) {
+        HttpHeaders headers = new HttpHeaders();
+        upstreamResponse.headers().map().forEach((name, values) -> {
+            if (!EXCLUDED_RESPONSE_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                headers.addAll(name, values);
+            }
+        });
+        return headers;
+    }
+    
+    /**
+     * 将上游调用异常转换为响应：连接失败返回502，超时返回504
+     */
+    private ResponseEntity<StreamingResponseBody> upstreamErrorResponse(URI targetUri, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpConnectTimeoutException || cause instanceof ConnectException) {
+            logger.warn("无法连接到服务: {} - {}", targetUri, cause.getMessage());
+            return errorResponse(HttpStatus.BAD_GATEWAY, "无法连接到服务");
+        }
+        if (cause instanceof HttpTimeoutException) {
+            logger.warn("服务响应超时: {}", targetUri);
+            return errorResponse(HttpStatus.GATEWAY_TIMEOUT, "服务响应超时");
+        }
+        logger.error("虚拟域名代理请求失败: {}", cause.getMessage(), cause);
+        return errorResponse(HttpStatus.BAD_GATEWAY, "代理请求失败: " + cause.getMessage());
+    }
+    
+    /**
+     * 熔断时的503响应，配置了proxy.circuit-breaker.open-body时原样返回，否则返回JSON格式的错误响应
+     */
+    private ResponseEntity<StreamingResponseBody> circuitOpenResponse() {
+        if (circuitOpenBody == null || circuitOpenBody.isEmpty()) {
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, circuitOpenMessage);
+        }
+        byte[] body = circuitOpenBody.getBytes(StandardCharsets.UTF_8);
+        StreamingResponseBody streamingBody = outputStream -> outputStream.write(body);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.parseMediaType(circuitOpenContentType))
+                .contentLength(body.length)
+                .body(streamingBody);
+    }
+    
+    /**
+     * 构建JSON格式的错误响应，与正常响应一样以StreamingResponseBody返回
+     */
+    private ResponseEntity<StreamingResponseBody> errorResponse(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
         }
+        StreamingResponseBody streamingBody = outputStream -> outputStream.write(body);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .body(streamingBody);
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.example.registercenter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 代理限流规则，按虚拟域名或服务名配置，可限定路径前缀，并按客户端IP或请求头分别计数
+ * 同一请求匹配的所有规则以及服务实例自身的限流配置都会生效
+ */
+@Data
+@Entity
+@Table(name = "rate_limit_rule", indexes = {
+        @Index(name = "idx_rate_limit_rule_target", columnList = "target")
+})
+public class RateLimitRule {
+    
+    // 全部请求共用一个计数
+    public static final String KEY_GLOBAL = "GLOBAL";
+    
+    // 按客户端IP分别计数
+    public static final String KEY_CLIENT_IP = "CLIENT_IP";
+    
+    // 按请求头（如API Key、租户标识）分别计数
+    public static final String KEY_HEADER = "HEADER";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // 规则作用的虚拟域名或服务名，即/proxy/{virtualDomainOrServiceName}中的名称
+    @Column(nullable = false, length = 100)
+    private String target;
+    
+    // 路径前缀，相对于/proxy/{virtualDomainOrServiceName}，为空时匹配所有路径
+    @Column(nullable = true, length = 200)
+    private String pathPrefix;
+    
+    // 计数维度：GLOBAL、CLIENT_IP、HEADER
+    @Column(nullable = false, length = 20)
+    private String keyType = KEY_GLOBAL;
+    
+    // 计数维度为HEADER时使用的请求头名称
+    @Column(nullable = true, length = 100)
+    private String headerName;
+    
+    @Column(nullable = false)
+    private Integer maxRequestsPerSecond;
+    
+    // 突发容量，为空时等于每秒最大请求数
+    @Column(nullable = true)
+    private Integer burst;
+    
+    @Column(nullable = false)
+    private Boolean enabled = true;
+    
+    // 限流提示消息，为空时使用默认消息
+    @Column(nullable = true)
+    private String errorMessage;
+}
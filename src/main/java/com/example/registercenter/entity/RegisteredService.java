@@ -9,6 +9,11 @@ import java.time.LocalDateTime;
 @Table(name = "service", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"serviceName", "serviceVersion", "ip", "port"}),
         @UniqueConstraint(columnNames = {"virtualDomain"})
+}, indexes = {
+        // 注册时按IP+端口查找冲突实例
+        @Index(name = "idx_service_ip_port", columnList = "ip, port"),
+        // 按服务名查找所有版本
+        @Index(name = "idx_service_name", columnList = "serviceName")
 })
 public class RegisteredService {
     
@@ -50,4 +55,90 @@ public class RegisteredService {
     
     @Column(nullable = true)
     private String rateLimitErrorMessage = "服务暂时繁忙，请稍后再试"; // 限流提示消息
+    
+    @Column(nullable = true)
+    private Integer rateLimitBurst; // 突发容量，为空时等于每秒最大请求数
+    
+    // 并发限制相关字段，按服务名生效，为空或非正数时不限制
+    @Column(nullable = true)
+    private Integer maxConcurrentRequests;
+    
+    @Column(nullable = true)
+    private Boolean adaptiveConcurrency = false; // 是否根据上游延迟自动调整并发上限
+    
+    // 响应缓存相关字段，只对通过虚拟域名转发的GET请求生效，缓存时长为空或非正数时不缓存
+    @Column(nullable = true)
+    private Integer responseCacheTtlSeconds;
+    
+    @Column(nullable = true, length = 200)
+    private String responseCacheVaryHeaders; // 参与缓存键的请求头，逗号分隔
+    
+    // 心跳超时时间（秒），为空时使用全局配置registry.heartbeat.timeout-seconds
+    @Column(nullable = true)
+    private Integer heartbeatTimeoutSeconds;
+    
+    // 主动健康检查类型：HTTP或TCP，为空时不检查
+    @Column(nullable = true, length = 10)
+    private String healthCheckType;
+    
+    // HTTP健康检查路径
+    @Column(nullable = true, length = 200)
+    private String healthCheckPath;
+    
+    // 健康检查间隔（秒），为空时使用全局配置registry.health-check.interval-seconds
+    @Column(nullable = true)
+    private Integer healthCheckIntervalSeconds;
+    
+    // 负载均衡权重，为空时按1处理
+    @Column(nullable = true)
+    private Integer weight = 1;
+    
+    // 负载均衡策略，同一服务名下取第一个设置了策略的实例，为空时使用全局配置proxy.load-balancer.strategy
+    @Column(nullable = true, length = 30)
+    private String loadBalanceStrategy;
+    
+    // 集群复制使用的版本：最近一次变更的时间戳（毫秒）和发生变更的节点，多个节点并发修改时以较新的版本为准
+    @Column(nullable = true)
+    private Long modifiedAt;
+    
+    @Column(nullable = true, length = 100)
+    private String modifiedBy;
+    
+    // 实例最近一次变更时的注册表版本号，只存在于内存注册表中，不持久化
+    @Transient
+    private Long revision;
+    
+    /**
+     * 复制当前实例的所有字段，生成与持久化上下文脱离的副本，用于内存注册表快照
+     */
+    public RegisteredService copy() {
+        RegisteredService copy = new RegisteredService();
+        copy.setId(id);
+        copy.setServiceName(serviceName);
+        copy.setServiceVersion(serviceVersion);
+        copy.setIp(ip);
+        copy.setPort(port);
+        copy.setStatus(status);
+        copy.setRegisterTime(registerTime);
+        copy.setLastHeartbeat(lastHeartbeat);
+        copy.setVirtualDomain(virtualDomain);
+        copy.setMaxRequestsPerSecond(maxRequestsPerSecond);
+        copy.setRateLimitEnabled(rateLimitEnabled);
+        copy.setRateLimitErrorMessage(rateLimitErrorMessage);
+        copy.setRateLimitBurst(rateLimitBurst);
+        copy.setMaxConcurrentRequests(maxConcurrentRequests);
+        copy.setAdaptiveConcurrency(adaptiveConcurrency);
+        copy.setResponseCacheTtlSeconds(responseCacheTtlSeconds);
+        copy.setResponseCacheVaryHeaders(responseCacheVaryHeaders);
+        copy.setHeartbeatTimeoutSeconds(heartbeatTimeoutSeconds);
+        copy.setHealthCheckType(healthCheckType);
+        copy.setHealthCheckPath(healthCheckPath);
+        copy.setHealthCheckIntervalSeconds(healthCheckIntervalSeconds);
+        copy.setWeight(weight);
+        copy.setLoadBalanceStrategy(loadBalanceStrategy);
+        copy.setModifiedAt(modifiedAt);
+        copy.setModifiedBy(modifiedBy);
+        copy.setRevision(revision);
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.example.registercenter.proxy;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存的上游响应，创建后不可变，刷新过期时间时生成新对象
+ */
+public class CachedResponse {
+
+    // 条目固定开销的估算值（字节）
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final String key;
+    private final String virtualDomain;
+    private final int status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final String etag;
+
+    // 过期时刻（System.nanoTime()），过期后带ETag的响应向上游发送条件请求重新验证
+    private final long expiresAtNanos;
+
+    // 估算的内存占用（字节）
+    private final long size;
+
+    public CachedResponse(String key, String virtualDomain, int status, HttpHeaders headers, byte[] body,
+                          String etag, long expiresAtNanos) {
+        this.key = key;
+        this.virtualDomain = virtualDomain;
+        this.status = status;
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+        this.body = body;
+        this.etag = etag;
+        this.expiresAtNanos = expiresAtNanos;
+        this.size = estimateSize(key, headers, body);
+    }
+
+    private CachedResponse(CachedResponse source, long expiresAtNanos) {
+        this.key = source.key;
+        this.virtualDomain = source.virtualDomain;
+        this.status = source.status;
+        this.headers = source.headers;
+        this.body = source.body;
+        this.etag = source.etag;
+        this.expiresAtNanos = expiresAtNanos;
+        this.size = source.size;
+    }
+
+    /**
+     * 重新验证通过后生成新过期时间的副本
+     */
+    public CachedResponse withExpiry(long expiresAtNanos) {
+        return new CachedResponse(this, expiresAtNanos);
+    }
+
+    public boolean isFresh(long nowNanos) {
+        return nowNanos - expiresAtNanos < 0;
+    }
+
+    /**
+     * 客户端If-None-Match请求头是否与缓存的ETag匹配，按弱比较处理
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (etag == null || ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getVirtualDomain() {
+        return virtualDomain;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long estimateSize(String key, HttpHeaders headers, byte[] body) {
+        long size = ENTRY_OVERHEAD + body.length + 2L * key.length();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            size += 2L * header.getKey().length();
+            for (String value : header.getValue()) {
+                size += 2L * value.length();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.util.SlidingWindowCounter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个上游实例的熔断器状态，状态转换由CircuitBreakerRegistry负责
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        // 正常转发，统计失败率
+        CLOSED,
+        // 熔断中，直接拒绝
+        OPEN,
+        // 熔断时间结束，放行少量试探请求
+        HALF_OPEN
+    }
+
+    private volatile State state = State.CLOSED;
+
+    // 最近一次进入OPEN状态的时刻（System.nanoTime()）
+    private final AtomicLong openedAtNanos = new AtomicLong();
+
+    // HALF_OPEN状态下已放行和已成功的试探请求数
+    private final AtomicInteger halfOpenCalls = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    // CLOSED状态下的调用结果
+    private final SlidingWindowCounter results;
+
+    public CircuitBreaker(int windowBuckets, long windowMillis) {
+        this.results = new SlidingWindowCounter(windowBuckets, windowMillis);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    AtomicLong getOpenedAtNanos() {
+        return openedAtNanos;
+    }
+
+    AtomicInteger getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    AtomicInteger getHalfOpenSuccesses() {
+        return halfOpenSuccesses;
+    }
+
+    public SlidingWindowCounter getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.util.SlidingWindowCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游实例熔断器
+ * CLOSED：窗口内请求数足够且失败率超过阈值时进入OPEN
+ * OPEN：直接拒绝，熔断时间结束后进入HALF_OPEN
+ * HALF_OPEN：最多放行halfOpenMaxCalls个试探请求，全部成功后回到CLOSED，任意一个失败立即回到OPEN
+ * 负载均衡只选择允许请求的实例，同一服务的其他实例可以继续接收流量
+ */
+@Component
+public class CircuitBreakerRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerRegistry.class);
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private UpstreamRegistry upstreamRegistry;
+
+    @Value("${proxy.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    // 窗口内失败率（百分比）超过该值时熔断
+    @Value("${proxy.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    // 按失败率判断所需的最少请求数
+    @Value("${proxy.circuit-breaker.minimum-requests:20}")
+    private int minimumRequests;
+
+    // 熔断持续时间（毫秒）
+    @Value("${proxy.circuit-breaker.open-ms:30000}")
+    private long openMillis;
+
+    // HALF_OPEN状态下最多放行的试探请求数
+    @Value("${proxy.circuit-breaker.half-open-max-calls:3}")
+    private int halfOpenMaxCalls;
+
+    /**
+     * 实例当前是否允许请求，不改变状态，用于负载均衡筛选实例
+     */
+    public boolean allowsRequests(Upstream upstream) {
+        if (!enabled) {
+            return true;
+        }
+        CircuitBreaker breaker = upstream.getStats().getCircuitBreaker();
+        switch (breaker.getState()) {
+            case OPEN:
+                return System.nanoTime() - breaker.getOpenedAtNanos().get() >= TimeUnit.MILLISECONDS.toNanos(openMillis);
+            case HALF_OPEN:
+                return breaker.getHalfOpenCalls().get() < halfOpenMaxCalls;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 获取转发许可，OPEN状态的熔断时间结束时转为HALF_OPEN并占用一个试探名额
+     * @return 是否允许转发
+     */
+    public boolean tryAcquire(Upstream upstream) {
+        if (!enabled) {
+            return true;
+        }
+        CircuitBreaker breaker = upstream.getStats().getCircuitBreaker();
+        while (true) {
+            switch (breaker.getState()) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - breaker.getOpenedAtNanos().get() < TimeUnit.MILLISECONDS.toNanos(openMillis)) {
+                        return false;
+                    }
+                    halfOpen(upstream, breaker);
+                    continue;
+                case HALF_OPEN:
+                    while (true) {
+                        int calls = breaker.getHalfOpenCalls().get();
+                        if (calls >= halfOpenMaxCalls) {
+                            return false;
+                        }
+                        if (breaker.getHalfOpenCalls().compareAndSet(calls, calls + 1)) {
+                            return true;
+                        }
+                    }
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * 获取许可后未实际转发时归还试探名额
+     */
+    public void release(Upstream upstream) {
+        if (!enabled) {
+            return;
+        }
+        CircuitBreaker breaker = upstream.getStats().getCircuitBreaker();
+        if (breaker.getState() == CircuitBreaker.State.HALF_OPEN) {
+            breaker.getHalfOpenCalls().updateAndGet(calls -> Math.max(0, calls - 1));
+        }
+    }
+
+    /**
+     * 记录一次成功的转发
+     */
+    public void onSuccess(Upstream upstream) {
+        if (!enabled) {
+            return;
+        }
+        CircuitBreaker breaker = upstream.getStats().getCircuitBreaker();
+        if (breaker.getState() == CircuitBreaker.State.HALF_OPEN) {
+            if (breaker.getHalfOpenSuccesses().incrementAndGet() >= halfOpenMaxCalls) {
+                close(upstream.getService().getServiceName(), upstream.getAuthority(), breaker);
+            }
+        } else if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+            breaker.getResults().recordSuccess(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 记录一次失败的转发（连接失败、超时或5xx）
+     */
+    public void onFailure(Upstream upstream) {
+        if (!enabled) {
+            return;
+        }
+        CircuitBreaker breaker = upstream.getStats().getCircuitBreaker();
+        if (breaker.getState() == CircuitBreaker.State.HALF_OPEN) {
+            open(upstream, breaker, "半开状态试探失败");
+        } else if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+            long nowMillis = System.currentTimeMillis();
+            SlidingWindowCounter results = breaker.getResults();
+            results.recordFailure(nowMillis);
+            int failures = results.failures(nowMillis);
+            int total = failures + results.successes(nowMillis);
+            if (total >= minimumRequests && failures * 100L >= (long) failureRateThreshold * total) {
+                open(upstream, breaker, "失败率" + (failures * 100 / total) + "%");
+            }
+        }
+    }
+
+    /**
+     * 所有已产生过代理流量的实例的熔断器状态，同时包含被动健康检查的摘除状态
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RegisteredService service : registryCache.listAll()) {
+            UpstreamStats stats = upstreamRegistry.findStats(service.getId());
+            if (stats == null) {
+                continue;
+            }
+            Map<String, Object> item = describe(stats.getCircuitBreaker());
+            item.put("serviceId", service.getId());
+            item.put("serviceName", service.getServiceName());
+            item.put("ip", service.getIp());
+            item.put("port", service.getPort());
+            item.put("status", service.getStatus());
+            item.put("inFlight", stats.getInFlight());
+            long ejectedUntil = stats.getEjectedUntilNanos().get();
+            item.put("ejected", ejectedUntil != 0 && System.nanoTime() - ejectedUntil < 0);
+            item.put("ejections", stats.getEjections().get());
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 手动将实例的熔断器恢复为CLOSED
+     * @return 实例不存在或尚未产生代理流量时返回false
+     */
+    public boolean reset(Long serviceId) {
+        RegisteredService service = registryCache.get(serviceId);
+        UpstreamStats stats = service != null ? upstreamRegistry.findStats(serviceId) : null;
+        if (stats == null) {
+            return false;
+        }
+        close(service.getServiceName(), service.getIp() + ":" + service.getPort(), stats.getCircuitBreaker());
+        return true;
+    }
+
+    private Map<String, Object> describe(CircuitBreaker breaker) {
+        long nowMillis = System.currentTimeMillis();
+        int failures = breaker.getResults().failures(nowMillis);
+        int successes = breaker.getResults().successes(nowMillis);
+        Map<String, Object> info = new HashMap<>();
+        info.put("state", breaker.getState().name());
+        info.put("failures", failures);
+        info.put("successes", successes);
+        info.put("failureRate", failures + successes == 0 ? 0 : failures * 100 / (failures + successes));
+        if (breaker.getState() == CircuitBreaker.State.OPEN) {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(openMillis) - (System.nanoTime() - breaker.getOpenedAtNanos().get());
+            info.put("remainingOpenMs", Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+        }
+        if (breaker.getState() == CircuitBreaker.State.HALF_OPEN) {
+            info.put("halfOpenCalls", breaker.getHalfOpenCalls().get());
+            info.put("halfOpenSuccesses", breaker.getHalfOpenSuccesses().get());
+        }
+        return info;
+    }
+
+    private void halfOpen(Upstream upstream, CircuitBreaker breaker) {
+        synchronized (breaker) {
+            // 其他线程已完成转换
+            if (breaker.getState() != CircuitBreaker.State.OPEN) {
+                return;
+            }
+            breaker.getHalfOpenCalls().set(0);
+            breaker.getHalfOpenSuccesses().set(0);
+            breaker.setState(CircuitBreaker.State.HALF_OPEN);
+        }
+        logger.info("实例[{}] {} 熔断结束，进入半开状态", upstream.getService().getServiceName(), upstream.getAuthority());
+    }
+
+    private void open(Upstream upstream, CircuitBreaker breaker, String reason) {
+        synchronized (breaker) {
+            if (breaker.getState() == CircuitBreaker.State.OPEN) {
+                return;
+            }
+            breaker.getOpenedAtNanos().set(System.nanoTime());
+            breaker.setState(CircuitBreaker.State.OPEN);
+        }
+        logger.warn("实例[{}] {} 熔断（{}），持续 {} 毫秒",
+                upstream.getService().getServiceName(), upstream.getAuthority(), reason, openMillis);
+    }
+
+    private void close(String serviceName, String authority, CircuitBreaker breaker) {
+        synchronized (breaker) {
+            if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+                return;
+            }
+            breaker.getResults().reset();
+            breaker.setState(CircuitBreaker.State.CLOSED);
+        }
+        logger.info("实例[{}] {} 熔断恢复", serviceName, authority);
+    }
+}
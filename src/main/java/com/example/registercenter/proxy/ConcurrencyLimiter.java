@@ -0,0 +1,188 @@
+package com.example.registercenter.proxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个服务的并发请求数限制器
+ * 并发数达到上限时请求进入有界等待队列，等待期间不占用线程；队列已满或等待超时的请求被拒绝
+ * 自适应模式下按AIMD调整上限：响应延迟明显高于基线延迟或上游过载时上限乘以0.9，否则每完成约limit个请求上限加1
+ */
+public class ConcurrencyLimiter {
+
+    // 延迟超过基线延迟的倍数时视为上游变慢
+    private final double latencyTolerance;
+
+    // 自适应模式下上限的最小值
+    private final int minLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<CompletableFuture<Boolean>> waiters = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    // 配置的最大并发数，自适应模式下为上限的最大值
+    private volatile int maxLimit;
+
+    private volatile boolean adaptive;
+
+    // 当前生效的并发上限
+    private volatile int limit;
+
+    // 以下字段只在持有this锁时修改
+    private double adaptiveLimit;
+    private long baselineLatencyNanos;
+    private long lastDecreaseNanos;
+
+    public ConcurrencyLimiter(int maxLimit, boolean adaptive, int minLimit, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.latencyTolerance = latencyTolerance;
+        // 直接初始化而不调用可被覆盖的configure，构造期间还没有等待的请求
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        this.adaptiveLimit = maxLimit;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * 更新配置，配置未变化时不做任何操作
+     */
+    public void configure(int maxLimit, boolean adaptive) {
+        if (this.maxLimit == maxLimit && this.adaptive == adaptive) {
+            return;
+        }
+        synchronized (this) {
+            this.maxLimit = maxLimit;
+            this.adaptive = adaptive;
+            // 自适应模式从配置上限开始，由延迟反馈逐步收缩
+            this.adaptiveLimit = maxLimit;
+            this.limit = maxLimit;
+        }
+        drain();
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getBaselineLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(baselineLatencyNanos);
+    }
+
+    /**
+     * 获取一个并发名额
+     * @param maxWaitMillis 最长等待时间，0表示不等待
+     * @param maxQueueSize 最多等待的请求数
+     * @return 获取成功时完成为true，队列已满或等待超时时完成为false
+     */
+    public CompletableFuture<Boolean> acquire(long maxWaitMillis, int maxQueueSize) {
+        if (tryAcquire()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (maxWaitMillis <= 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (waiting.incrementAndGet() > maxQueueSize) {
+            waiting.decrementAndGet();
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        waiter.whenComplete((granted, error) -> {
+            waiting.decrementAndGet();
+            if (!Boolean.TRUE.equals(granted)) {
+                // 超时的等待者立即出队，队列长度不超过maxQueueSize
+                waiters.remove(waiter);
+            }
+        });
+        waiters.offer(waiter);
+        waiter.completeOnTimeout(false, maxWaitMillis, TimeUnit.MILLISECONDS);
+        // 入队前可能已有请求完成，检查一次避免等待者错过空闲名额
+        drain();
+        return waiter;
+    }
+
+    /**
+     * 归还并发名额，并唤醒等待中的请求
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * 记录一次上游调用结果，自适应模式下调整并发上限
+     * @param latencyNanos 收到响应头的耗时
+     * @param overloaded 上游是否过载（连接失败、超时或返回503）
+     */
+    public void onResponse(long latencyNanos, boolean overloaded) {
+        if (!adaptive) {
+            return;
+        }
+        synchronized (this) {
+            if (!overloaded) {
+                // 基线取观测到的最小延迟，并缓慢上浮，适应上游正常的延迟变化
+                if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+                    baselineLatencyNanos = latencyNanos;
+                } else {
+                    baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) >> 8;
+                }
+            }
+            long now = System.nanoTime();
+            boolean slow = latencyNanos > baselineLatencyNanos * latencyTolerance;
+            if (overloaded || slow) {
+                // 同一批请求的反馈只减小一次，避免上限瞬间跌到最小值
+                if (now - lastDecreaseNanos > Math.max(baselineLatencyNanos, latencyNanos)) {
+                    adaptiveLimit = Math.max(minLimit, adaptiveLimit * 0.9);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                adaptiveLimit = Math.min(maxLimit, adaptiveLimit + 1.0 / Math.max(1, adaptiveLimit));
+            }
+            limit = (int) adaptiveLimit;
+        }
+        drain();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 有空闲名额时按先后顺序唤醒等待者，已超时的等待者把名额还回去
+     */
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            CompletableFuture<Boolean> waiter = waiters.poll();
+            if (waiter == null || !waiter.complete(true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
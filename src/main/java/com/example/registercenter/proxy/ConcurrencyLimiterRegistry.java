@@ -0,0 +1,123 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按服务名维护并发请求数限制器，同一服务名下的所有实例共用一个限制器
+ * 配置在注册表变更时按服务名重新计算：取各实例maxConcurrentRequests中最小的正数，任一设置了上限的实例启用自适应时即为自适应模式，
+ * 请求路径上只查找限制器，不再按被选中的实例修改配置
+ */
+@Component
+public class ConcurrencyLimiterRegistry {
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    // 并发数已满时最长等待时间（毫秒），0表示直接拒绝
+    @Value("${proxy.concurrency.max-wait-ms:500}")
+    private long maxWaitMillis;
+
+    // 每个服务最多等待的请求数
+    @Value("${proxy.concurrency.queue-size:100}")
+    private int queueSize;
+
+    // 自适应模式下并发上限的最小值
+    @Value("${proxy.concurrency.min-limit:1}")
+    private int minLimit;
+
+    // 自适应模式下延迟超过基线延迟的倍数时视为上游变慢
+    @Value("${proxy.concurrency.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 注册表变更监听器在注册表写锁内同步调用，同一服务名的重新计算天然串行
+        registryCache.addListener(event -> refresh(event.getService().getServiceName()));
+        registryCache.addReloadListener(this::onReload);
+    }
+
+    /**
+     * 获取服务的限制器，服务未配置并发上限时返回null
+     */
+    public ConcurrencyLimiter limiterFor(String serviceName) {
+        return limiters.get(serviceName);
+    }
+
+    private void onReload() {
+        Set<String> serviceNames = new HashSet<>(limiters.keySet());
+        for (RegisteredService service : registryCache.listAll()) {
+            serviceNames.add(service.getServiceName());
+        }
+        serviceNames.forEach(this::refresh);
+    }
+
+    /**
+     * 按服务名下所有实例的配置更新限制器，配置未变化时保留限制器的自适应状态，没有实例设置上限时移除限制器
+     */
+    private void refresh(String serviceName) {
+        int maxConcurrent = 0;
+        boolean adaptive = false;
+        for (RegisteredService service : registryCache.findByServiceName(serviceName)) {
+            Integer limit = service.getMaxConcurrentRequests();
+            if (limit != null && limit > 0) {
+                maxConcurrent = maxConcurrent == 0 ? limit : Math.min(maxConcurrent, limit);
+                adaptive |= Boolean.TRUE.equals(service.getAdaptiveConcurrency());
+            }
+        }
+        if (maxConcurrent == 0) {
+            limiters.remove(serviceName);
+            return;
+        }
+        int limit = maxConcurrent;
+        boolean adaptiveLimit = adaptive;
+        limiters.compute(serviceName, (key, limiter) -> {
+            if (limiter == null) {
+                return new ConcurrencyLimiter(limit, adaptiveLimit, minLimit, latencyTolerance);
+            }
+            limiter.configure(limit, adaptiveLimit);
+            return limiter;
+        });
+    }
+
+    /**
+     * 获取并发名额，按配置的最长等待时间和队列长度排队
+     */
+    public CompletableFuture<Boolean> acquire(ConcurrencyLimiter limiter) {
+        return limiter.acquire(maxWaitMillis, queueSize);
+    }
+
+    /**
+     * 各服务限制器的当前状态
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        limiters.forEach((serviceName, limiter) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("serviceName", serviceName);
+            item.put("maxConcurrentRequests", limiter.getMaxLimit());
+            item.put("adaptive", limiter.isAdaptive());
+            item.put("limit", limiter.getLimit());
+            item.put("inFlight", limiter.getInFlight());
+            item.put("waiting", limiter.getWaiting());
+            item.put("baselineLatencyMs", limiter.getBaselineLatencyMillis());
+            result.add(item);
+        });
+        return result;
+    }
+}
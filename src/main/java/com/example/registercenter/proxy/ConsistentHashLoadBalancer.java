@@ -0,0 +1,29 @@
+package com.example.registercenter.proxy;
+
+import java.util.function.Predicate;
+
+/**
+ * 一致性哈希：相同键的请求总是转发到同一个实例，实例增减时只有少量键改变归属
+ * 键所在位置的实例不可用时沿哈希环顺时针顺延
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible) {
+        int position = upstreams.ringPosition(hashKey == null ? "" : hashKey);
+        int ringSize = upstreams.ringSize();
+        int lastOwner = -1;
+        for (int i = 0; i < ringSize; i++) {
+            int owner = upstreams.ringOwner((position + i) % ringSize);
+            if (owner == lastOwner) {
+                continue;
+            }
+            Upstream candidate = upstreams.getUpstreams().get(owner);
+            if (eligible.test(candidate)) {
+                return candidate;
+            }
+            lastOwner = owner;
+        }
+        return null;
+    }
+}
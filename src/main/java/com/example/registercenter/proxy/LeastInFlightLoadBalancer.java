@@ -0,0 +1,37 @@
+package com.example.registercenter.proxy;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * 最少处理中请求：选择处理中请求数与权重之比最小的实例
+ * 从随机位置开始扫描，负载相同时请求不会集中到第一个实例
+ */
+public class LeastInFlightLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible) {
+        return leastLoaded(upstreams.getUpstreams(), eligible);
+    }
+
+    static Upstream leastLoaded(List<Upstream> candidates, Predicate<Upstream> eligible) {
+        int size = candidates.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        Upstream best = null;
+        for (int i = 0; i < size; i++) {
+            Upstream candidate = candidates.get((start + i) % size);
+            if ((best == null || lessLoaded(candidate, best)) && eligible.test(candidate)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 比较 inFlight / weight，交叉相乘避免浮点运算
+     */
+    static boolean lessLoaded(Upstream a, Upstream b) {
+        return (long) a.getStats().getInFlight() * b.getWeight() < (long) b.getStats().getInFlight() * a.getWeight();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.registercenter.proxy;
+
+/**
+ * 负载均衡策略
+ */
+public enum LoadBalanceStrategy {
+
+    // 轮询
+    ROUND_ROBIN,
+
+    // 加权轮询
+    WEIGHTED_ROUND_ROBIN,
+
+    // 最少处理中请求
+    LEAST_IN_FLIGHT,
+
+    // 随机选两个实例，取处理中请求较少的一个
+    POWER_OF_TWO_CHOICES,
+
+    // 按请求头、Cookie或客户端IP做一致性哈希
+    CONSISTENT_HASH;
+
+    /**
+     * 解析策略名称，无法识别时返回null
+     */
+    public static LoadBalanceStrategy parse(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
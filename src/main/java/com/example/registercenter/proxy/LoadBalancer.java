@@ -0,0 +1,19 @@
+package com.example.registercenter.proxy;
+
+import java.util.function.Predicate;
+
+/**
+ * 负载均衡器，从服务的在线实例中选择一个
+ * 实现不持有可变状态，轮询计数器等状态保存在ServiceUpstreams中
+ */
+public interface LoadBalancer {
+
+    /**
+     * 选择一个上游实例
+     * @param upstreams 服务的在线实例，至少包含一个实例
+     * @param hashKey 一致性哈希使用的键，其他策略忽略
+     * @param eligible 实例当前是否可以接收流量，被摘除的实例按策略顺延到下一个
+     * @return 选中的实例，没有可用实例时返回null
+     */
+    Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible);
+}
@@ -0,0 +1,112 @@
+package com.example.registercenter.proxy;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 代理负载均衡入口，根据服务指定的策略或全局默认策略选择上游实例
+ * 被动健康检查摘除的实例和熔断中的实例不参与选择；所有在线实例都被摘除时忽略摘除状态，避免服务完全不可用
+ * 熔断状态不会被忽略，所有实例都熔断时返回null，由调用方快速失败
+ */
+@Component
+public class LoadBalancerService {
+    private static final Logger logger = LoggerFactory.getLogger(LoadBalancerService.class);
+
+    @Autowired
+    private OutlierDetector outlierDetector;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    // 服务未指定策略时使用的默认策略
+    @Value("${proxy.load-balancer.strategy:ROUND_ROBIN}")
+    private String defaultStrategyName;
+
+    // 一致性哈希优先使用的请求头
+    @Value("${proxy.load-balancer.hash-header:X-Session-Id}")
+    private String hashHeader;
+
+    // 请求头不存在时使用的Cookie，两者都不存在时使用客户端IP
+    @Value("${proxy.load-balancer.hash-cookie:JSESSIONID}")
+    private String hashCookie;
+
+    private final Map<LoadBalanceStrategy, LoadBalancer> balancers = new EnumMap<>(LoadBalanceStrategy.class);
+
+    private LoadBalanceStrategy defaultStrategy;
+
+    @PostConstruct
+    public void init() {
+        balancers.put(LoadBalanceStrategy.ROUND_ROBIN, new RoundRobinLoadBalancer());
+        balancers.put(LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN, new WeightedRoundRobinLoadBalancer());
+        balancers.put(LoadBalanceStrategy.LEAST_IN_FLIGHT, new LeastInFlightLoadBalancer());
+        balancers.put(LoadBalanceStrategy.POWER_OF_TWO_CHOICES, new PowerOfTwoChoicesLoadBalancer());
+        balancers.put(LoadBalanceStrategy.CONSISTENT_HASH, new ConsistentHashLoadBalancer());
+
+        defaultStrategy = LoadBalanceStrategy.parse(defaultStrategyName);
+        if (defaultStrategy == null) {
+            logger.warn("不支持的负载均衡策略[{}]，使用ROUND_ROBIN", defaultStrategyName);
+            defaultStrategy = LoadBalanceStrategy.ROUND_ROBIN;
+        }
+    }
+
+    /**
+     * 从在线实例中选择一个不在excluded中的实例，没有可用实例或所有在线实例都已熔断时返回null
+     * 哈希键预先在请求线程中计算，重试和对冲请求在请求线程之外选择实例时不能再读取请求对象
+     * @param hashKey hashKeyOf返回的哈希键
+     * @param excluded 已尝试过的实例，首次选择时传空集合
+     */
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Set<Upstream> excluded) {
+        if (upstreams.isEmpty()) {
+            return null;
+        }
+        LoadBalancer balancer = balancers.get(strategyOf(upstreams));
+        Upstream chosen = balancer.choose(upstreams, hashKey, upstream -> !excluded.contains(upstream)
+                && circuitBreakerRegistry.allowsRequests(upstream) && outlierDetector.isAvailable(upstream));
+        if (chosen == null) {
+            chosen = balancer.choose(upstreams, hashKey, upstream -> !excluded.contains(upstream)
+                    && circuitBreakerRegistry.allowsRequests(upstream));
+            if (chosen != null) {
+                logger.warn("服务[{}]的所有在线实例均已被摘除，忽略摘除状态", upstreams.getServiceName());
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 请求的一致性哈希键，服务使用其他策略时返回null
+     */
+    public String hashKeyOf(ServiceUpstreams upstreams, HttpServletRequest request) {
+        return strategyOf(upstreams) == LoadBalanceStrategy.CONSISTENT_HASH ? hashKeyOf(request) : null;
+    }
+
+    private LoadBalanceStrategy strategyOf(ServiceUpstreams upstreams) {
+        return upstreams.getStrategy() != null ? upstreams.getStrategy() : defaultStrategy;
+    }
+
+    private String hashKeyOf(HttpServletRequest request) {
+        if (hashHeader != null && !hashHeader.isEmpty()) {
+            String value = request.getHeader(hashHeader);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        if (hashCookie != null && !hashCookie.isEmpty() && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (hashCookie.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.util.SlidingWindowCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 被动健康检查：根据代理转发的结果摘除异常实例
+ * 连续失败次数达到阈值，或窗口内请求数足够且失败率超过阈值时，实例在退避时间内不参与负载均衡
+ * 退避时间随摘除次数指数增长；退避结束后在慢启动时间内按比例逐步恢复流量，期间再次失败会重新摘除
+ */
+@Component
+public class OutlierDetector {
+    private static final Logger logger = LoggerFactory.getLogger(OutlierDetector.class);
+
+    // 慢启动开始时分配到的最小流量比例
+    private static final double MIN_READMIT_RATIO = 0.1;
+
+    @Value("${proxy.outlier.enabled:true}")
+    private boolean enabled;
+
+    // 连续失败多少次后摘除
+    @Value("${proxy.outlier.consecutive-failures:5}")
+    private int consecutiveFailureThreshold;
+
+    // 窗口内失败率（百分比）超过该值时摘除
+    @Value("${proxy.outlier.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    // 按失败率判断所需的最少请求数
+    @Value("${proxy.outlier.minimum-requests:20}")
+    private int minimumRequests;
+
+    // 首次摘除的时长（毫秒），之后每次翻倍
+    @Value("${proxy.outlier.base-ejection-ms:10000}")
+    private long baseEjectionMillis;
+
+    // 摘除时长上限（毫秒），实例持续健康超过该时长后摘除次数清零
+    @Value("${proxy.outlier.max-ejection-ms:300000}")
+    private long maxEjectionMillis;
+
+    // 恢复后逐步增加流量的时长（毫秒）
+    @Value("${proxy.outlier.slow-start-ms:30000}")
+    private long slowStartMillis;
+
+    /**
+     * 记录一次成功的转发
+     */
+    public void onSuccess(UpstreamStats stats) {
+        if (!enabled) {
+            return;
+        }
+        stats.getConsecutiveFailures().set(0);
+        stats.getResults().recordSuccess(System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次失败的转发（连接失败、超时或5xx），达到阈值时摘除实例
+     */
+    public void onFailure(Upstream upstream) {
+        if (!enabled) {
+            return;
+        }
+        UpstreamStats stats = upstream.getStats();
+        long nowMillis = System.currentTimeMillis();
+        SlidingWindowCounter results = stats.getResults();
+        results.recordFailure(nowMillis);
+        int consecutive = stats.getConsecutiveFailures().incrementAndGet();
+
+        boolean eject = consecutive >= consecutiveFailureThreshold;
+        if (!eject) {
+            int failures = results.failures(nowMillis);
+            int total = failures + results.successes(nowMillis);
+            eject = total >= minimumRequests && failures * 100L >= (long) failureRateThreshold * total;
+        }
+        if (eject) {
+            eject(upstream, System.nanoTime());
+        }
+    }
+
+    /**
+     * 实例当前是否可以接收流量，慢启动期间按比例随机放行
+     */
+    public boolean isAvailable(Upstream upstream) {
+        if (!enabled) {
+            return true;
+        }
+        long ejectedUntil = upstream.getStats().getEjectedUntilNanos().get();
+        if (ejectedUntil == 0) {
+            return true;
+        }
+        long elapsed = System.nanoTime() - ejectedUntil;
+        if (elapsed < 0) {
+            return false;
+        }
+        long slowStartNanos = TimeUnit.MILLISECONDS.toNanos(slowStartMillis);
+        if (elapsed >= slowStartNanos) {
+            return true;
+        }
+        double ratio = Math.max(MIN_READMIT_RATIO, (double) elapsed / slowStartNanos);
+        return ThreadLocalRandom.current().nextDouble() < ratio;
+    }
+
+    /**
+     * 实例是否处于摘除状态（不含慢启动阶段）
+     */
+    public boolean isEjected(Upstream upstream) {
+        long ejectedUntil = upstream.getStats().getEjectedUntilNanos().get();
+        return ejectedUntil != 0 && System.nanoTime() - ejectedUntil < 0;
+    }
+
+    private void eject(Upstream upstream, long nowNanos) {
+        UpstreamStats stats = upstream.getStats();
+        long previous = stats.getEjectedUntilNanos().get();
+        if (previous != 0 && nowNanos - previous < 0) {
+            // 已处于摘除状态，摘除期间结束的请求不再延长摘除时间
+            return;
+        }
+        // 上次摘除结束后持续健康超过摘除时长上限，退避从头开始
+        if (previous != 0 && nowNanos - previous > TimeUnit.MILLISECONDS.toNanos(maxEjectionMillis)) {
+            stats.getEjections().set(0);
+        }
+        int ejections = stats.getEjections().get();
+        long ejectionMillis = Math.min(maxEjectionMillis, baseEjectionMillis << Math.min(ejections, 20));
+        long until = nowNanos + TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+        if (until == 0) {
+            until = 1;
+        }
+        if (!stats.getEjectedUntilNanos().compareAndSet(previous, until)) {
+            return;
+        }
+        stats.getEjections().incrementAndGet();
+        // 恢复后重新统计
+        stats.getConsecutiveFailures().set(0);
+        stats.getResults().reset();
+        logger.warn("实例[{}] {} 转发失败过多，摘除 {} 毫秒（第{}次）",
+                upstream.getService().getServiceName(), upstream.getAuthority(), ejectionMillis, ejections + 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.registercenter.proxy;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * 两次随机选择：随机选两个不同的实例，取处理中请求较少的一个
+ * 效果接近最少处理中请求，但不需要扫描所有实例；两个都不可用时退化为扫描
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible) {
+        List<Upstream> candidates = upstreams.getUpstreams();
+        int size = candidates.size();
+        if (size == 1) {
+            Upstream only = candidates.get(0);
+            return eligible.test(only) ? only : null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Upstream a = candidates.get(first);
+        Upstream b = candidates.get(second);
+        boolean aEligible = eligible.test(a);
+        boolean bEligible = eligible.test(b);
+        if (aEligible && bEligible) {
+            return LeastInFlightLoadBalancer.lessLoaded(b, a) ? b : a;
+        }
+        if (aEligible) {
+            return a;
+        }
+        if (bEligible) {
+            return b;
+        }
+        return LeastInFlightLoadBalancer.leastLoaded(candidates, eligible);
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 代理响应缓存，按虚拟域名启用，只缓存GET请求的200响应
+ * 缓存键由虚拟域名、请求方法、路径、查询字符串和配置的请求头组成
+ * 按估算的内存占用做LRU淘汰，过期时间取虚拟域名配置的缓存时长与响应Cache-Control中max-age的较小值；
+ * 过期且带ETag的条目通过条件请求重新验证，上游返回304时继续使用
+ * 同一个键的并发未命中请求合并为一次上游调用
+ */
+@Component
+public class ResponseCache {
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    // 缓存总大小上限（字节）
+    @Value("${proxy.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 单个响应体大小上限（字节），更大的响应不缓存
+    @Value("${proxy.cache.max-entry-bytes:1048576}")
+    private int maxEntryBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 按访问顺序排列，最久未访问的条目在最前面
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // 各虚拟域名的条目数，只在锁内访问，用于判断注册表变更时是否需要清除
+    private final Map<String, Integer> entriesByDomain = new HashMap<>();
+
+    private long totalBytes;
+
+    // 正在从上游加载的键，后到的未命中请求等待同一个结果
+    private final Map<String, CompletableFuture<CachedResponse>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        // 虚拟域名被删除或关闭缓存时清除对应条目
+        registryCache.addListener(event -> {
+            RegisteredService service = event.getService();
+            if (service.getVirtualDomain() == null) {
+                return;
+            }
+            if (event.getType() == RegistryChangeEvent.Type.REMOVED
+                    || service.getResponseCacheTtlSeconds() == null || service.getResponseCacheTtlSeconds() <= 0) {
+                purge(service.getVirtualDomain());
+            }
+        });
+        registryCache.addReloadListener(this::purgeAll);
+    }
+
+    /**
+     * 构建缓存键
+     */
+    public String keyOf(String virtualDomain, HttpServletRequest request, List<String> varyHeaders) {
+        StringBuilder key = new StringBuilder(128)
+                .append(virtualDomain).append('\n')
+                .append(request.getMethod()).append('\n')
+                .append(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            key.append('?').append(request.getQueryString());
+        }
+        for (String header : varyHeaders) {
+            key.append('\n').append(header.toLowerCase(Locale.ROOT)).append(':');
+            Enumeration<String> values = request.getHeaders(header);
+            while (values.hasMoreElements()) {
+                key.append(values.nextElement()).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 根据响应头计算缓存时长（毫秒）
+     * @return -1表示不能缓存，0表示可以缓存但每次使用前都需要重新验证
+     */
+    public long ttlMillis(HttpHeaders headers, int configuredTtlSeconds, List<String> varyHeaders) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return -1;
+        }
+        // 响应按缓存键之外的请求头变化时不能共享
+        for (String vary : headers.getVary()) {
+            if (vary.equals("*") || varyHeaders.stream().noneMatch(vary::equalsIgnoreCase)) {
+                return -1;
+            }
+        }
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String directive : value.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store") || d.equals("private") || d.startsWith("private=")) {
+                    return -1;
+                }
+                if (d.equals("no-cache") || d.startsWith("no-cache=")) {
+                    return 0;
+                }
+                if (d.startsWith("s-maxage=")) {
+                    sharedMaxAge = parseSeconds(d.substring("s-maxage=".length()));
+                } else if (d.startsWith("max-age=")) {
+                    maxAge = parseSeconds(d.substring("max-age=".length()));
+                }
+            }
+        }
+        long ttl = configuredTtlSeconds * 1000L;
+        long headerAge = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        return headerAge >= 0 ? Math.min(ttl, headerAge * 1000) : ttl;
+    }
+
+    /**
+     * 查找缓存条目，包括已过期的条目
+     */
+    public CachedResponse get(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 保存缓存条目，超出总大小时淘汰最久未访问的条目
+     * @return 响应过大不能缓存时返回false
+     */
+    public boolean put(CachedResponse response) {
+        if (response.getBody().length > maxEntryBytes || response.getSize() > maxBytes) {
+            return false;
+        }
+        lock.lock();
+        try {
+            CachedResponse previous = entries.put(response.getKey(), response);
+            if (previous != null) {
+                totalBytes -= previous.getSize();
+            } else {
+                entriesByDomain.merge(response.getVirtualDomain(), 1, Integer::sum);
+            }
+            totalBytes += response.getSize();
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                CachedResponse evicted = eldest.next();
+                eldest.remove();
+                removed(evicted);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 开始加载一个键
+     * @return 已有请求正在加载时返回其结果，否则登记leader并返回null，由调用方负责加载
+     */
+    public CompletableFuture<CachedResponse> startLoad(String key, CompletableFuture<CachedResponse> leader) {
+        return loading.putIfAbsent(key, leader);
+    }
+
+    /**
+     * 加载结束，通知等待的请求；response为null表示响应不能缓存，等待的请求各自转发
+     */
+    public void finishLoad(String key, CompletableFuture<CachedResponse> leader, CachedResponse response) {
+        loading.remove(key, leader);
+        leader.complete(response);
+    }
+
+    /**
+     * 清除虚拟域名的所有条目
+     * @return 清除的条目数
+     */
+    public int purge(String virtualDomain) {
+        lock.lock();
+        try {
+            if (!entriesByDomain.containsKey(virtualDomain)) {
+                return 0;
+            }
+            int count = 0;
+            Iterator<CachedResponse> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedResponse response = iterator.next();
+                if (response.getVirtualDomain().equals(virtualDomain)) {
+                    iterator.remove();
+                    removed(response);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清除所有条目
+     * @return 清除的条目数
+     */
+    public int purgeAll() {
+        lock.lock();
+        try {
+            int count = entries.size();
+            entries.clear();
+            entriesByDomain.clear();
+            totalBytes = 0;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    public void recordRevalidated() {
+        revalidated.increment();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+            stats.put("entriesByDomain", new HashMap<>(entriesByDomain));
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("revalidated", revalidated.sum());
+        stats.put("loading", loading.size());
+        return stats;
+    }
+
+    private void removed(CachedResponse response) {
+        totalBytes -= response.getSize();
+        entriesByDomain.computeIfPresent(response.getVirtualDomain(), (domain, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim().replace("\"", "")));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个服务的重试预算和响应延迟统计
+ * 每个请求向预算存入固定比例的重试次数，每次重试或对冲取出一次，余额不足时不再重试
+ */
+public class RetryBudget {
+
+    // 以千分之一次重试为单位的余额
+    private final AtomicLong balance = new AtomicLong();
+
+    // 成功响应的延迟，用于计算对冲请求的发送时机
+    private final LatencyHistogram latencies;
+
+    public RetryBudget(long latencyWindowMillis) {
+        this.latencies = new LatencyHistogram(latencyWindowMillis);
+    }
+
+    /**
+     * 存入余额，不超过上限
+     */
+    void deposit(long amount, long max) {
+        if (balance.get() >= max) {
+            return;
+        }
+        balance.updateAndGet(current -> Math.min(max, current + amount));
+    }
+
+    /**
+     * 余额足够时取出
+     */
+    boolean tryWithdraw(long amount) {
+        while (true) {
+            long current = balance.get();
+            if (current < amount) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - amount)) {
+                return true;
+            }
+        }
+    }
+
+    public long getBalance() {
+        return balance.get();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
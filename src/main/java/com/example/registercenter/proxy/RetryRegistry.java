@@ -0,0 +1,160 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryChangeEvent;
+import com.example.registercenter.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理重试与对冲请求配置
+ * 只对没有请求体的GET请求重试：连接失败时换一个在线实例重试；启用对冲时，首个请求超过服务最近的p95延迟仍未响应，
+ * 向另一个在线实例再发一个请求，采用先到的响应
+ * 重试和对冲都受按服务统计的重试预算限制，预算为请求数的固定百分比，上游整体故障时不会放大流量
+ */
+@Component
+public class RetryRegistry {
+
+    // 余额单位：千分之一次重试
+    private static final long UNIT = 1000;
+
+    // 余额上限相当于最近多少个请求存入的预算
+    private static final long MAX_BALANCE_REQUESTS = 1000;
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    // 连接失败时换实例重试的最大次数，0表示不重试
+    @Value("${proxy.retry.max-retries:1}")
+    private int maxRetries;
+
+    // 重试预算占请求数的百分比
+    @Value("${proxy.retry.budget-percent:20}")
+    private int budgetPercent;
+
+    // 预算不足时每秒仍允许的最少重试次数，保证低流量服务也能重试
+    @Value("${proxy.retry.budget-min-per-second:5}")
+    private int minRetriesPerSecond;
+
+    @Value("${proxy.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    // 对冲请求的发送时机取服务最近响应延迟的百分位
+    @Value("${proxy.hedge.percentile:95}")
+    private double hedgePercentile;
+
+    // 计算百分位所需的最少样本数，样本不足时不对冲
+    @Value("${proxy.hedge.min-samples:100}")
+    private long hedgeMinSamples;
+
+    // 对冲延迟的下限（毫秒）
+    @Value("${proxy.hedge.min-delay-ms:10}")
+    private long hedgeMinDelayMillis;
+
+    // 延迟统计窗口（毫秒）
+    @Value("${proxy.hedge.window-ms:60000}")
+    private long latencyWindowMillis;
+
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 服务的所有实例都被删除后移除预算
+        registryCache.addListener(event -> {
+            String serviceName = event.getService().getServiceName();
+            if (event.getType() == RegistryChangeEvent.Type.REMOVED && registryCache.findByServiceName(serviceName).isEmpty()) {
+                budgets.remove(serviceName);
+            }
+        });
+        registryCache.addReloadListener(budgets::clear);
+    }
+
+    /**
+     * 请求是否可以重试或对冲：没有请求体的GET请求，且启用了重试或对冲
+     */
+    public boolean isRetryable(HttpServletRequest request) {
+        return (maxRetries > 0 || hedgeEnabled)
+                && "GET".equals(request.getMethod())
+                && request.getContentLengthLong() <= 0
+                && request.getHeader("Transfer-Encoding") == null;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 记录一个可重试的请求，向服务的重试预算存入余额
+     */
+    public void onRequest(String serviceName) {
+        budgetOf(serviceName).deposit(budgetPercent * UNIT / 100, budgetPercent * UNIT / 100 * MAX_BALANCE_REQUESTS);
+    }
+
+    /**
+     * 从服务的重试预算中取出一次重试，预算不足时按每秒最少重试次数放行
+     */
+    public boolean tryAcquire(String serviceName) {
+        if (budgetOf(serviceName).tryWithdraw(UNIT)) {
+            return true;
+        }
+        return minRetriesPerSecond > 0 && RateLimiter.isAllowed("retry-budget:" + serviceName, minRetriesPerSecond);
+    }
+
+    /**
+     * 记录一次成功响应的延迟（收到响应头为止）
+     */
+    public void recordLatency(String serviceName, long latencyNanos) {
+        if (hedgeEnabled) {
+            budgetOf(serviceName).getLatencies().record(latencyNanos, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 发送对冲请求前的等待时间（毫秒），未启用对冲或样本不足时返回-1
+     */
+    public long hedgeDelayMillis(String serviceName) {
+        if (!hedgeEnabled) {
+            return -1;
+        }
+        long nanos = budgetOf(serviceName).getLatencies().percentileNanos(hedgePercentile, hedgeMinSamples, System.currentTimeMillis());
+        if (nanos < 0) {
+            return -1;
+        }
+        return Math.max(hedgeMinDelayMillis, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * 各服务的重试预算余额和对冲延迟
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        long nowMillis = System.currentTimeMillis();
+        budgets.forEach((serviceName, budget) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("serviceName", serviceName);
+            item.put("retryBalance", budget.getBalance() / UNIT);
+            item.put("latencySamples", budget.getLatencies().count(nowMillis));
+            item.put("hedgeDelayMs", hedgeDelayMillis(serviceName));
+            result.add(item);
+        });
+        return result;
+    }
+
+    private RetryBudget budgetOf(String serviceName) {
+        RetryBudget budget = budgets.get(serviceName);
+        if (budget != null) {
+            return budget;
+        }
+        return budgets.computeIfAbsent(serviceName, key -> new RetryBudget(latencyWindowMillis));
+    }
+}
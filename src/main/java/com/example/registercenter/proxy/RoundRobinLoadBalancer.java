@@ -0,0 +1,24 @@
+package com.example.registercenter.proxy;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 轮询
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible) {
+        List<Upstream> candidates = upstreams.getUpstreams();
+        int size = candidates.size();
+        long start = upstreams.nextSequence();
+        for (int i = 0; i < size; i++) {
+            Upstream candidate = candidates.get((int) Math.floorMod(start + i, (long) size));
+            if (eligible.test(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryChangeEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代理路由表，将虚拟域名或服务名解析为可直接转发的上游实例集合
+ * 虚拟域名路由保存在不可变Map中，注册表变更时复制、修改后整体替换；服务名路由由UpstreamRegistry维护
+ * 请求路径上只有内存中的哈希查找，不访问数据库，未知的键返回共享的空路由，不产生任何分配
+ */
+@Component
+public class RouteTable {
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private UpstreamRegistry upstreamRegistry;
+
+    // 虚拟域名 -> 路由，整体替换，读操作无锁
+    private volatile Map<String, ServiceUpstreams> virtualDomainRoutes = Map.of();
+
+    // 实例ID -> 虚拟域名，用于虚拟域名变更时移除旧路由，只在注册表写锁内访问
+    private final Map<Long, String> virtualDomainById = new HashMap<>();
+
+    // 虚拟域名 -> 实例ID，虚拟域名已被其他实例接管时不移除路由，只在注册表写锁内访问
+    private final Map<String, Long> ownerByVirtualDomain = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        registryCache.addListener(this::onChange);
+        registryCache.addReloadListener(this::onReload);
+    }
+
+    /**
+     * 解析路由：先按虚拟域名查找，未找到时按服务名查找
+     * 返回的路由没有在线实例但totalInstances大于0时表示服务已离线，totalInstances为0时表示不存在
+     */
+    public ServiceUpstreams resolve(String virtualDomainOrServiceName) {
+        ServiceUpstreams route = virtualDomainRoutes.get(virtualDomainOrServiceName);
+        return route != null ? route : upstreamRegistry.get(virtualDomainOrServiceName);
+    }
+
+    /**
+     * 注册表变更监听器在注册表写锁内同步调用，路由表的修改天然串行
+     */
+    private void onChange(RegistryChangeEvent event) {
+        RegisteredService service = event.getService();
+        String previousDomain = virtualDomainById.get(service.getId());
+        String currentDomain = event.getType() == RegistryChangeEvent.Type.REMOVED ? null : virtualDomainOf(service);
+        if (previousDomain == null && currentDomain == null) {
+            return;
+        }
+
+        Map<String, ServiceUpstreams> next = new HashMap<>(virtualDomainRoutes);
+        if (previousDomain != null) {
+            virtualDomainById.remove(service.getId());
+            if (ownerByVirtualDomain.remove(previousDomain, service.getId())) {
+                next.remove(previousDomain);
+            }
+        }
+        if (currentDomain != null) {
+            virtualDomainById.put(service.getId(), currentDomain);
+            ownerByVirtualDomain.put(currentDomain, service.getId());
+            next.put(currentDomain, routeOf(currentDomain, service));
+        }
+        virtualDomainRoutes = Map.copyOf(next);
+    }
+
+    private void onReload() {
+        virtualDomainById.clear();
+        ownerByVirtualDomain.clear();
+        Map<String, ServiceUpstreams> next = new HashMap<>();
+        for (RegisteredService service : registryCache.listAll()) {
+            String domain = virtualDomainOf(service);
+            if (domain != null) {
+                virtualDomainById.put(service.getId(), domain);
+                ownerByVirtualDomain.put(domain, service.getId());
+                next.put(domain, routeOf(domain, service));
+            }
+        }
+        virtualDomainRoutes = Map.copyOf(next);
+    }
+
+    /**
+     * 虚拟域名路由只包含一个实例，实例离线时路由中没有在线实例
+     */
+    private ServiceUpstreams routeOf(String domain, RegisteredService service) {
+        List<Upstream> upstreams = "UP".equals(service.getStatus())
+                ? List.of(new Upstream(service, upstreamRegistry.statsOf(service.getId())))
+                : List.of();
+        return new ServiceUpstreams(domain, upstreams, 1, null);
+    }
+
+    private static String virtualDomainOf(RegisteredService service) {
+        String domain = service.getVirtualDomain();
+        return domain == null || domain.isEmpty() ? null : domain;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.registercenter.proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个服务名下所有在线实例的不可变快照，注册表变更时整体重建
+ * 加权轮询序列和一致性哈希环在首次使用时计算，之后只读，选择实例时不需要加锁
+ */
+public class ServiceUpstreams {
+
+    // 一致性哈希环上每个权重单位对应的虚拟节点数
+    private static final int VIRTUAL_NODES_PER_WEIGHT = 100;
+
+    // 单个实例参与加权计算的最大权重，避免加权轮询序列和哈希环过大
+    private static final int MAX_WEIGHT = 100;
+
+    public static final ServiceUpstreams EMPTY = new ServiceUpstreams("", List.of(), 0, null);
+
+    private final String serviceName;
+
+    // 在线实例，按ID排序
+    private final List<Upstream> upstreams;
+
+    // 服务名下的实例总数，包括离线实例
+    private final int totalInstances;
+
+    // 服务指定的负载均衡策略，为空时使用全局配置
+    private final LoadBalanceStrategy strategy;
+
+    // 轮询计数器
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 平滑加权轮询序列，元素为upstreams中的下标
+    private volatile int[] weightedSchedule;
+
+    // 一致性哈希环，ringHashes有序，ringOwners为对应的upstreams下标
+    private volatile long[] ringHashes;
+    private volatile int[] ringOwners;
+
+    public ServiceUpstreams(String serviceName, List<Upstream> upstreams, int totalInstances, LoadBalanceStrategy strategy) {
+        this.serviceName = serviceName;
+        this.upstreams = List.copyOf(upstreams);
+        this.totalInstances = totalInstances;
+        this.strategy = strategy;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public List<Upstream> getUpstreams() {
+        return upstreams;
+    }
+
+    public int getTotalInstances() {
+        return totalInstances;
+    }
+
+    public LoadBalanceStrategy getStrategy() {
+        return strategy;
+    }
+
+    public boolean isEmpty() {
+        return upstreams.isEmpty();
+    }
+
+    /**
+     * 递增并返回轮询序号
+     */
+    public long nextSequence() {
+        return sequence.getAndIncrement();
+    }
+
+    /**
+     * 平滑加权轮询序列，权重为3:1的两个实例生成的序列为A A B A，而不是A A A B
+     */
+    public int[] weightedSchedule() {
+        int[] schedule = weightedSchedule;
+        if (schedule == null) {
+            schedule = buildWeightedSchedule();
+            weightedSchedule = schedule;
+        }
+        return schedule;
+    }
+
+    /**
+     * 在一致性哈希环上查找键对应的位置，实例增减时只有相邻区间的键会改变归属
+     */
+    public int ringPosition(String key) {
+        long[] hashes = ringHashes;
+        if (hashes == null) {
+            buildRing();
+            hashes = ringHashes;
+        }
+        int index = Arrays.binarySearch(hashes, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == hashes.length ? 0 : index;
+    }
+
+    /**
+     * 哈希环上指定位置所属实例在upstreams中的下标，需先调用ringPosition
+     */
+    public int ringOwner(int position) {
+        return ringOwners[position];
+    }
+
+    /**
+     * 哈希环上的虚拟节点数量，需先调用ringPosition
+     */
+    public int ringSize() {
+        return ringOwners.length;
+    }
+
+    private int[] buildWeightedSchedule() {
+        int size = upstreams.size();
+        if (size == 0) {
+            return new int[0];
+        }
+        int[] weights = new int[size];
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = Math.min(upstreams.get(i).getWeight(), MAX_WEIGHT);
+            total += weights[i];
+        }
+        int divisor = 0;
+        for (int weight : weights) {
+            divisor = gcd(divisor, weight);
+        }
+        total /= divisor;
+        for (int i = 0; i < size; i++) {
+            weights[i] /= divisor;
+        }
+
+        // 平滑加权轮询：每轮所有实例的当前值加上各自权重，选出当前值最大的实例后减去总权重
+        int[] schedule = new int[total];
+        int[] current = new int[size];
+        for (int n = 0; n < total; n++) {
+            int best = 0;
+            for (int i = 0; i < size; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[n] = best;
+        }
+        return schedule;
+    }
+
+    private synchronized void buildRing() {
+        if (ringHashes != null && ringOwners != null) {
+            return;
+        }
+        int points = 0;
+        for (Upstream upstream : upstreams) {
+            points += Math.min(upstream.getWeight(), MAX_WEIGHT) * VIRTUAL_NODES_PER_WEIGHT;
+        }
+        long[] hashes = new long[points];
+        int[] owners = new int[points];
+        int n = 0;
+        for (int i = 0; i < upstreams.size(); i++) {
+            Upstream upstream = upstreams.get(i);
+            int nodes = Math.min(upstream.getWeight(), MAX_WEIGHT) * VIRTUAL_NODES_PER_WEIGHT;
+            for (int v = 0; v < nodes; v++) {
+                // 虚拟节点位置只取决于实例地址，实例上下线不影响其他实例的节点位置
+                hashes[n] = hash(upstream.getAuthority() + "#" + v);
+                owners[n] = i;
+                n++;
+            }
+        }
+        // 按哈希值排序，同时调整归属下标
+        Integer[] order = new Integer[points];
+        for (int i = 0; i < points; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        long[] sortedHashes = new long[points];
+        int[] sortedOwners = new int[points];
+        for (int i = 0; i < points; i++) {
+            sortedHashes[i] = hashes[order[i]];
+            sortedOwners[i] = owners[order[i]];
+        }
+        ringOwners = sortedOwners;
+        ringHashes = sortedHashes;
+    }
+
+    /**
+     * 64位FNV-1a哈希，再经过一次混合，使相近的键在环上分布均匀
+     */
+    static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可路由的上游实例，创建时预先计算好地址、权重和限流配置，请求路径上不再做字符串拼接
+ */
+public class Upstream {
+
+    private final RegisteredService service;
+
+    // 上游地址，格式为IP:端口
+    private final String authority;
+
+    // 转发基础地址，格式为http://IP:端口
+    private final String baseUri;
+
+    private final int weight;
+
+    // 限流配置，未启用限流时maxRequestsPerSecond为0
+    private final int maxRequestsPerSecond;
+    private final int rateLimitBurst;
+    private final String rateLimitKey;
+    private final String rateLimitErrorMessage;
+
+    // 并发限制配置，未启用时maxConcurrentRequests为0
+    private final int maxConcurrentRequests;
+    private final boolean adaptiveConcurrency;
+
+    // 响应缓存配置，未启用缓存时responseCacheTtlSeconds为0
+    private final int responseCacheTtlSeconds;
+    private final List<String> responseCacheVaryHeaders;
+
+    private final UpstreamStats stats;
+
+    public Upstream(RegisteredService service, UpstreamStats stats) {
+        this.service = service;
+        this.authority = service.getIp() + ":" + service.getPort();
+        this.baseUri = "http://" + authority;
+        this.weight = service.getWeight() != null && service.getWeight() > 0 ? service.getWeight() : 1;
+        this.maxRequestsPerSecond = Boolean.TRUE.equals(service.getRateLimitEnabled())
+                && service.getMaxRequestsPerSecond() != null && service.getMaxRequestsPerSecond() > 0
+                ? service.getMaxRequestsPerSecond() : 0;
+        this.rateLimitBurst = service.getRateLimitBurst() != null && service.getRateLimitBurst() > 0
+                ? service.getRateLimitBurst() : maxRequestsPerSecond;
+        // 限流键使用服务名和地址而不是ID，集群中各节点的实例ID不同，分布式限流按此键交换各节点的请求量
+        this.rateLimitKey = service.getServiceName() + ":" + authority;
+        this.rateLimitErrorMessage = service.getRateLimitErrorMessage();
+        this.maxConcurrentRequests = service.getMaxConcurrentRequests() != null && service.getMaxConcurrentRequests() > 0
+                ? service.getMaxConcurrentRequests() : 0;
+        this.adaptiveConcurrency = Boolean.TRUE.equals(service.getAdaptiveConcurrency());
+        this.responseCacheTtlSeconds = service.getResponseCacheTtlSeconds() != null && service.getResponseCacheTtlSeconds() > 0
+                ? service.getResponseCacheTtlSeconds() : 0;
+        this.responseCacheVaryHeaders = parseHeaderNames(service.getResponseCacheVaryHeaders());
+        this.stats = stats;
+    }
+
+    public RegisteredService getService() {
+        return service;
+    }
+
+    public Long getId() {
+        return service.getId();
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isRateLimited() {
+        return maxRequestsPerSecond > 0;
+    }
+
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public String getRateLimitKey() {
+        return rateLimitKey;
+    }
+
+    public String getRateLimitErrorMessage() {
+        return rateLimitErrorMessage;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public UpstreamStats getStats() {
+        return stats;
+    }
+
+    public boolean isResponseCacheEnabled() {
+        return responseCacheTtlSeconds > 0;
+    }
+
+    public int getResponseCacheTtlSeconds() {
+        return responseCacheTtlSeconds;
+    }
+
+    public List<String> getResponseCacheVaryHeaders() {
+        return responseCacheVaryHeaders;
+    }
+
+    private static List<String> parseHeaderNames(String headerNames) {
+        if (headerNames == null || headerNames.isBlank()) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : headerNames.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        return List.copyOf(names);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.registercenter.proxy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 上游连接数限制器
+ * HttpClient对同一上游的每个并发请求占用一条连接，限制每个上游的并发请求数即限制了连接池大小，
+ * 避免某个慢服务占满所有连接
+ */
+@Component
+public class UpstreamConnectionLimiter {
+
+    // 每个上游（IP+端口）允许的最大并发连接数
+    @Value("${proxy.max-connections-per-upstream:200}")
+    private int maxConnectionsPerUpstream;
+
+    private final ConcurrentHashMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    /**
+     * 尝试占用一条到上游的连接，不等待
+     * @param upstream 上游标识（IP:端口）
+     * @return 是否占用成功，成功后必须调用release释放
+     */
+    public boolean tryAcquire(String upstream) {
+        Semaphore semaphore = permits.get(upstream);
+        if (semaphore == null) {
+            semaphore = permits.computeIfAbsent(upstream, key -> new Semaphore(maxConnectionsPerUpstream));
+        }
+        return semaphore.tryAcquire();
+    }
+
+    /**
+     * 释放一条到上游的连接
+     */
+    public void release(String upstream) {
+        Semaphore semaphore = permits.get(upstream);
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 当前到上游的并发连接数
+     */
+    public int inUse(String upstream) {
+        Semaphore semaphore = permits.get(upstream);
+        return semaphore == null ? 0 : maxConnectionsPerUpstream - semaphore.availablePermits();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.RegistryChangeEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按服务名维护在线实例列表，供代理负载均衡使用
+ * 列表在首次访问时从内存注册表构建，之后随注册表变更整体替换，读操作无锁
+ */
+@Component
+public class UpstreamRegistry {
+
+    // 失败率统计窗口划分的桶数量
+    private static final int WINDOW_BUCKETS = 10;
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    // 被动健康检查和熔断器统计失败率的窗口（毫秒）
+    @Value("${proxy.outlier.window-ms:10000}")
+    private long outlierWindowMillis;
+
+    // 按服务名缓存的在线实例快照
+    private final Map<String, ServiceUpstreams> byServiceName = new ConcurrentHashMap<>();
+
+    // 按实例ID保存的运行时统计，实例信息变化时保持不变，实例删除时移除
+    private final Map<Long, UpstreamStats> stats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        registryCache.addListener(this::onChange);
+        registryCache.addReloadListener(this::onReload);
+    }
+
+    /**
+     * 获取服务名下的在线实例快照，服务不存在时返回空快照且不缓存
+     */
+    public ServiceUpstreams get(String serviceName) {
+        ServiceUpstreams upstreams = byServiceName.get(serviceName);
+        if (upstreams != null) {
+            return upstreams;
+        }
+        if (registryCache.findByServiceName(serviceName).isEmpty()) {
+            return ServiceUpstreams.EMPTY;
+        }
+        return byServiceName.computeIfAbsent(serviceName, this::build);
+    }
+
+    /**
+     * 获取实例的运行时统计
+     */
+    public UpstreamStats statsOf(Long id) {
+        return stats.computeIfAbsent(id, key -> new UpstreamStats(WINDOW_BUCKETS, outlierWindowMillis));
+    }
+
+    /**
+     * 获取已存在的实例运行时统计，不存在时返回null且不创建
+     */
+    public UpstreamStats findStats(Long id) {
+        return stats.get(id);
+    }
+
+    /**
+     * 注册表变更时重建对应服务名的快照，只重建已被访问过的服务名
+     * 与get中的computeIfAbsent锁定同一个键，不会用旧数据覆盖新快照
+     */
+    private void onChange(RegistryChangeEvent event) {
+        RegisteredService service = event.getService();
+        if (event.getType() == RegistryChangeEvent.Type.REMOVED && registryCache.get(service.getId()) == null) {
+            stats.remove(service.getId());
+        }
+        byServiceName.computeIfPresent(service.getServiceName(), (serviceName, previous) ->
+                registryCache.findByServiceName(serviceName).isEmpty() ? null : build(serviceName));
+    }
+
+    private void onReload() {
+        byServiceName.clear();
+        stats.keySet().removeIf(id -> registryCache.get(id) == null);
+    }
+
+    private ServiceUpstreams build(String serviceName) {
+        List<RegisteredService> services = registryCache.findByServiceName(serviceName);
+        List<Upstream> upstreams = new ArrayList<>(services.size());
+        LoadBalanceStrategy strategy = null;
+        for (RegisteredService service : services) {
+            if (strategy == null) {
+                strategy = LoadBalanceStrategy.parse(service.getLoadBalanceStrategy());
+            }
+            if ("UP".equals(service.getStatus())) {
+                upstreams.add(new Upstream(service, statsOf(service.getId())));
+            }
+        }
+        return new ServiceUpstreams(serviceName, upstreams, services.size(), strategy);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.registercenter.proxy;
+
+import com.example.registercenter.util.SlidingWindowCounter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个上游实例的运行时统计，按实例ID保存，实例信息变化重建Upstream时保持不变
+ */
+public class UpstreamStats {
+
+    // 正在处理中的请求数
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // 最近一段时间的调用结果，用于按失败率摘除实例
+    private final SlidingWindowCounter results;
+
+    // 连续失败次数，成功一次即清零
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    // 摘除截止时间（System.nanoTime()），0表示未被摘除
+    private final AtomicLong ejectedUntilNanos = new AtomicLong();
+
+    // 累计被摘除的次数，用于计算退避时间
+    private final AtomicInteger ejections = new AtomicInteger();
+
+    // 熔断器状态
+    private final CircuitBreaker circuitBreaker;
+
+    public UpstreamStats(int windowBuckets, long windowMillis) {
+        this.results = new SlidingWindowCounter(windowBuckets, windowMillis);
+        this.circuitBreaker = new CircuitBreaker(windowBuckets, windowMillis);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public void incrementInFlight() {
+        inFlight.incrementAndGet();
+    }
+
+    public void decrementInFlight() {
+        inFlight.decrementAndGet();
+    }
+
+    public SlidingWindowCounter getResults() {
+        return results;
+    }
+
+    public AtomicInteger getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public AtomicLong getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    public AtomicInteger getEjections() {
+        return ejections;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
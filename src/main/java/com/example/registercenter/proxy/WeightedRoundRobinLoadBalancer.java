@@ -0,0 +1,24 @@
+package com.example.registercenter.proxy;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 平滑加权轮询，按预先计算的序列循环选择
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Upstream choose(ServiceUpstreams upstreams, String hashKey, Predicate<Upstream> eligible) {
+        List<Upstream> candidates = upstreams.getUpstreams();
+        int[] schedule = upstreams.weightedSchedule();
+        long start = upstreams.nextSequence();
+        for (int i = 0; i < schedule.length; i++) {
+            Upstream candidate = candidates.get(schedule[(int) Math.floorMod(start + i, (long) schedule.length)]);
+            if (eligible.test(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.registercenter.repository;
+
+import com.example.registercenter.entity.RateLimitRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface RateLimitRuleRepository extends JpaRepository<RateLimitRule, Long> {
+    
+    // 根据虚拟域名或服务名查找限流规则
+    List<RateLimitRule> findByTarget(String target);
+}
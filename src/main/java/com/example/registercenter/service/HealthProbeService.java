@@ -0,0 +1,288 @@
+package com.example.registercenter.service;
+
+import com.example.registercenter.entity.RegisteredService;
+import com.example.registercenter.util.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 主动健康检查服务，对配置了健康检查的实例定期发起HTTP GET或TCP连接探测
+ * 探测时间登记在时间轮中，首次探测时间和每次间隔都带有随机抖动，大量实例的探测不会集中在同一时刻
+ * 每次探测在独立的虚拟线程中执行，全局并发数受信号量限制
+ * 连续失败达到阈值时通过HeartbeatMonitorService标记为离线；由探测标记离线的实例连续成功达到阈值后恢复在线
+ * 由探测标记离线的实例，心跳不会使其恢复在线，只能由探测恢复，或由重新注册、手动设置在线恢复；
+ * 实例以任何方式恢复在线后重新开始计数，之后连续失败仍会再次标记为离线
+ */
+@Service
+public class HealthProbeService {
+    private static final Logger logger = LoggerFactory.getLogger(HealthProbeService.class);
+
+    public static final String TYPE_HTTP = "HTTP";
+    public static final String TYPE_TCP = "TCP";
+
+    // 时间轮槽位数
+    private static final int WHEEL_SIZE = 512;
+
+    // 探测间隔的随机抖动比例
+    private static final double JITTER_RATIO = 0.1;
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private HeartbeatMonitorService heartbeatMonitorService;
+
+    // 时间轮刻度（毫秒）
+    @Value("${registry.health-check.tick-ms:1000}")
+    private long tickMillis;
+
+    // 默认探测间隔（秒），可被服务自身的healthCheckIntervalSeconds覆盖
+    @Value("${registry.health-check.interval-seconds:10}")
+    private long defaultIntervalSeconds;
+
+    // 单次探测超时（毫秒）
+    @Value("${registry.health-check.timeout-ms:2000}")
+    private long timeoutMillis;
+
+    // 全局同时进行的探测数上限
+    @Value("${registry.health-check.max-concurrent:256}")
+    private int maxConcurrent;
+
+    // 连续失败多少次后标记为离线
+    @Value("${registry.health-check.unhealthy-threshold:3}")
+    private int unhealthyThreshold;
+
+    // 由探测标记离线的实例连续成功多少次后恢复在线
+    @Value("${registry.health-check.healthy-threshold:2}")
+    private int healthyThreshold;
+
+    @Value("${registry.follower.enabled:false}")
+    private boolean followerEnabled;
+
+    private HashedTimingWheel<Long> timingWheel;
+
+    private Semaphore permits;
+
+    private HttpClient probeClient;
+
+    private final ExecutorService probeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 每个实例的探测状态
+    private final Map<Long, ProbeState> states = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        timingWheel = new HashedTimingWheel<>(tickMillis, WHEEL_SIZE);
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+        probeClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(probeExecutor)
+                .build();
+        // 从节点不探测，实例状态以主节点为准
+        if (!followerEnabled) {
+            registryCache.addListener(this::onChange);
+            registryCache.addReloadListener(this::onReload);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * 定时推进时间轮，为到期的实例提交探测并登记下一次探测时间
+     */
+    @Scheduled(fixedRateString = "${registry.health-check.tick-ms:1000}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<Long> dueIds = timingWheel.advance(now);
+        for (Long id : dueIds) {
+            RegisteredService service = registryCache.get(id);
+            if (service == null || healthCheckType(service) == null) {
+                states.remove(id);
+                continue;
+            }
+            timingWheel.schedule(id, now + jittered(intervalMillisOf(service)));
+
+            ProbeState state = states.computeIfAbsent(id, key -> new ProbeState());
+            // 心跳超时导致离线的实例不探测，等待客户端重新注册或恢复心跳
+            if ("DOWN".equals(service.getStatus()) && !state.markedDown) {
+                continue;
+            }
+            // 上一次探测尚未结束时跳过本轮
+            if (state.inProgress.compareAndSet(false, true)) {
+                probeExecutor.execute(() -> probe(service, state));
+            }
+        }
+    }
+
+    private void probe(RegisteredService service, ProbeState state) {
+        try {
+            permits.acquire();
+            boolean healthy;
+            try {
+                healthy = TYPE_TCP.equals(healthCheckType(service)) ? probeTcp(service) : probeHttp(service);
+            } finally {
+                permits.release();
+            }
+            onResult(service, state, healthy);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("健康检查执行失败: {}:{} - {}", service.getIp(), service.getPort(), e.getMessage(), e);
+        } finally {
+            state.inProgress.set(false);
+        }
+    }
+
+    private boolean probeHttp(RegisteredService service) throws InterruptedException {
+        String path = service.getHealthCheckPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        } else if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + service.getIp() + ":" + service.getPort() + path))
+                    .timeout(Duration.ofMillis(timeoutMillis))
+                    .GET()
+                    .build();
+            HttpResponse<Void> response = probeClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() >= 200 && response.statusCode() < 400;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.debug("HTTP健康检查失败: {}:{}{} - {}", service.getIp(), service.getPort(), path, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean probeTcp(RegisteredService service) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(service.getIp(), service.getPort()), (int) timeoutMillis);
+            return true;
+        } catch (IOException e) {
+            logger.debug("TCP健康检查失败: {}:{} - {}", service.getIp(), service.getPort(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void onResult(RegisteredService service, ProbeState state, boolean healthy) {
+        Long id = service.getId();
+        if (healthy) {
+            state.consecutiveFailures = 0;
+            state.consecutiveSuccesses++;
+            if (state.markedDown && state.consecutiveSuccesses >= healthyThreshold) {
+                state.markedDown = false;
+                heartbeatMonitorService.markUp(id, "健康检查恢复");
+            }
+        } else {
+            state.consecutiveSuccesses = 0;
+            state.consecutiveFailures++;
+            if (!state.markedDown && state.consecutiveFailures >= unhealthyThreshold) {
+                state.markedDown = heartbeatMonitorService.markDown(id, "连续" + state.consecutiveFailures + "次健康检查失败");
+            }
+        }
+    }
+
+    /**
+     * 实例新增或健康检查配置变化时登记探测，取消健康检查或删除实例时移除
+     */
+    private void onChange(RegistryChangeEvent event) {
+        RegisteredService service = event.getService();
+        Long id = service.getId();
+        if (event.getType() == RegistryChangeEvent.Type.REMOVED || healthCheckType(service) == null) {
+            if (registryCache.get(id) == null || healthCheckType(registryCache.get(id)) == null) {
+                timingWheel.cancel(id);
+                states.remove(id);
+            }
+            return;
+        }
+        ProbeState state = states.get(id);
+        if (state != null && "UP".equals(service.getStatus())) {
+            // 恢复在线后重新计数，否则markedDown残留会使探测不再标记离线
+            state.markedDown = false;
+            state.consecutiveFailures = 0;
+            state.consecutiveSuccesses = 0;
+        }
+        long deadline = timingWheel.deadlineOf(id);
+        long next = System.currentTimeMillis() + ThreadLocalRandom.current().nextLong(intervalMillisOf(service) + 1);
+        if (deadline < 0 || deadline > next) {
+            timingWheel.schedule(id, next);
+        }
+    }
+
+    /**
+     * 实例是否处于由探测标记的离线状态，此时心跳不使其恢复在线
+     */
+    public boolean isMarkedDown(Long id) {
+        ProbeState state = states.get(id);
+        return state != null && state.markedDown;
+    }
+
+    private void onReload() {
+        states.clear();
+        long now = System.currentTimeMillis();
+        for (RegisteredService service : registryCache.listAll()) {
+            if (healthCheckType(service) != null) {
+                // 首次探测时间在一个间隔内随机分布
+                timingWheel.schedule(service.getId(), now + ThreadLocalRandom.current().nextLong(intervalMillisOf(service) + 1));
+            } else {
+                timingWheel.cancel(service.getId());
+            }
+        }
+    }
+
+    private long intervalMillisOf(RegisteredService service) {
+        Integer intervalSeconds = service.getHealthCheckIntervalSeconds();
+        long seconds = intervalSeconds != null && intervalSeconds > 0 ? intervalSeconds : defaultIntervalSeconds;
+        return Math.max(1, seconds) * 1000;
+    }
+
+    private static long jittered(long intervalMillis) {
+        long jitter = (long) (intervalMillis * JITTER_RATIO);
+        return intervalMillis - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1);
+    }
+
+    /**
+     * 实例的健康检查类型，未启用时返回null
+     */
+    private static String healthCheckType(RegisteredService service) {
+        String type = service.getHealthCheckType();
+        return TYPE_HTTP.equals(type) || TYPE_TCP.equals(type) ? type : null;
+    }
+
+    /**
+     * 单个实例的探测状态，计数在探测线程中修改，实例恢复在线时由变更监听重置，同一实例同时最多一个探测
+     */
+    private static class ProbeState {
+        private final AtomicBoolean inProgress = new AtomicBoolean();
+        private volatile int consecutiveFailures;
+        private volatile int consecutiveSuccesses;
+        private volatile boolean markedDown;
+    }
+}
@@ -1,105 +1,222 @@
 package com.example.registercenter.service;
 
+import com.example.registercenter.cluster.ClusterNode;
 import com.example.registercenter.entity.RegisteredService;
 import com.example.registercenter.repository.ServiceRepository;
+import com.example.registercenter.util.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 心跳监测服务，用于自动检测服务是否在线
+ * 每个在线实例在时间轮中登记一个心跳截止时间，收到心跳时重新调度；
+ * 定时推进时间轮时只处理真正超时的实例，不再扫描全表
  */
 @Service
 public class HeartbeatMonitorService {
     private static final Logger logger = LoggerFactory.getLogger(HeartbeatMonitorService.class);
 
+    // 时间轮槽位数，槽位数 × 检查间隔为一圈的时长
+    private static final int WHEEL_SIZE = 512;
+
     @Autowired
     private ServiceRepository serviceRepository;
 
-    // 心跳超时阈值（秒），设置为90秒避免网络波动导致的误判
-    private static final long HEARTBEAT_TIMEOUT_SECONDS = 90;
-    
-    // 服务心跳失败计数器，用于记录连续心跳失败次数
-    private final Map<String, Integer> heartbeatFailureCount = new ConcurrentHashMap<>();
-    
-    // 允许的最大心跳失败次数，超过此值将进行额外处理
-    private static final int MAX_HEARTBEAT_FAILURES = 3;
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    // 默认心跳超时阈值（秒），设置为90秒避免网络波动导致的误判，可被服务自身的heartbeatTimeoutSeconds覆盖
+    @Value("${registry.heartbeat.timeout-seconds:90}")
+    private long defaultTimeoutSeconds;
+
+    // 检查间隔（毫秒），同时也是时间轮的刻度
+    @Value("${registry.heartbeat.check-interval-ms:5000}")
+    private long checkIntervalMillis;
+
+    private HashedTimingWheel<Long> timingWheel;
+
+    // 状态变更锁，健康检查在虚拟线程中调用，使用ReentrantLock避免占用载体线程
+    private final ReentrantLock statusLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        timingWheel = new HashedTimingWheel<>(checkIntervalMillis, WHEEL_SIZE);
+    }
+
+    /**
+     * 按服务当前状态和最后心跳时间登记或取消超时，服务写入内存注册表后调用
+     */
+    public void track(RegisteredService service) {
+        if ("DOWN".equals(service.getStatus())) {
+            timingWheel.cancel(service.getId());
+            return;
+        }
+        long lastHeartbeatMillis = toEpochMillis(service.getLastHeartbeat());
+        timingWheel.schedule(service.getId(), lastHeartbeatMillis + timeoutMillisOf(service));
+    }
+
+    /**
+     * 批量登记超时，用于启动时加载已保存的服务
+     */
+    public void trackAll(Collection<RegisteredService> services) {
+        for (RegisteredService service : services) {
+            track(service);
+        }
+        logger.info("心跳监测：已登记 {} 个服务的心跳超时", timingWheel.size());
+    }
+
+    /**
+     * 取消服务的超时，服务被删除时调用
+     */
+    public void untrack(Long id) {
+        timingWheel.cancel(id);
+    }
+
+    /**
+     * 收到心跳时重新调度超时
+     */
+    public void onHeartbeat(RegisteredService service, long nowMillis) {
+        if ("DOWN".equals(service.getStatus())) {
+            return;
+        }
+        timingWheel.schedule(service.getId(), nowMillis + timeoutMillisOf(service));
+
+        // 如果服务状态是UNKNOWN，心跳恢复后更新为UP
+        if ("UNKNOWN".equals(service.getStatus())) {
+            updateStatus(service.getId(), "UP");
+            logger.info("服务已恢复在线: {} (v{}) - {}:{}",
+                    service.getServiceName(),
+                    service.getServiceVersion(),
+                    service.getIp(),
+                    service.getPort());
+        }
+    }
 
     /**
-     * 定时检查所有服务的心跳状态
-     * 使用@Scheduled注解配置定时任务，每5秒执行一次
+     * 定时推进时间轮，将心跳超时的服务标记为离线
+     * 检查间隔通过registry.heartbeat.check-interval-ms配置，默认每5秒执行一次
      */
-    @Scheduled(fixedRate = 5000)
-    @Transactional
+    @Scheduled(fixedRateString = "${registry.heartbeat.check-interval-ms:5000}")
     public void checkHeartbeats() {
-        // 获取所有注册的服务
-        List<RegisteredService> allServices = serviceRepository.findAll();
-        LocalDateTime now = LocalDateTime.now();
-        
-        logger.debug("开始心跳检查，当前共有 {} 个注册服务", allServices.size());
-        
-        for (RegisteredService service : allServices) {
-            // 服务唯一标识
-            String serviceKey = service.getServiceName() + ":" + service.getServiceVersion() + ":" + service.getIp() + ":" + service.getPort();
-            
-            // 计算最后心跳时间与当前时间的差值
-            Duration duration = Duration.between(service.getLastHeartbeat(), now);
-            long secondsSinceLastHeartbeat = duration.getSeconds();
-            
-            // 检查服务是否已经标记为离线
-            if ("DOWN".equals(service.getStatus())) {
-                logger.debug("跳过离线服务: {}", serviceKey);
+        long now = System.currentTimeMillis();
+        List<Long> expiredIds = timingWheel.advance(now);
+        if (expiredIds.isEmpty()) {
+            return;
+        }
+
+        logger.debug("心跳检查：{} 个服务心跳超时", expiredIds.size());
+
+        for (Long id : expiredIds) {
+            RegisteredService service = registryCache.get(id);
+            if (service == null || "DOWN".equals(service.getStatus())) {
                 continue;
             }
-            
-            // 如果超过心跳超时阈值，则更新服务状态为离线
-            if (secondsSinceLastHeartbeat > HEARTBEAT_TIMEOUT_SECONDS) {
-                // 增加心跳失败计数
-                int failureCount = heartbeatFailureCount.getOrDefault(serviceKey, 0) + 1;
-                heartbeatFailureCount.put(serviceKey, failureCount);
-                
-                // 首次检测到心跳超时，将服务标记为离线
-                if (failureCount == 1) {
-                    service.setStatus("DOWN");
-                    serviceRepository.save(service);
-                    logger.info("服务离线: {} (v{}) - {}:{}", 
-                            service.getServiceName(), 
-                            service.getServiceVersion(), 
-                            service.getIp(), 
-                            service.getPort());
-                } else if (failureCount >= MAX_HEARTBEAT_FAILURES) {
-                    // 超过最大失败次数，记录警告日志
-                    logger.warn("服务持续离线，可能需要人工干预: {} (v{}) - {}:{}, 已连续失败{}次", 
-                            service.getServiceName(), 
-                            service.getServiceVersion(), 
-                            service.getIp(), 
-                            service.getPort(), 
-                            failureCount);
-                }
-            } else {
-                // 心跳正常，重置失败计数
-                heartbeatFailureCount.remove(serviceKey);
-                
-                // 如果服务状态是UNKNOWN，更新为UP
-                if ("UNKNOWN".equals(service.getStatus())) {
-                    service.setStatus("UP");
-                    serviceRepository.save(service);
-                    logger.info("服务已恢复在线: {} (v{}) - {}:{}", 
-                            service.getServiceName(), 
-                            service.getServiceVersion(), 
-                            service.getIp(), 
-                            service.getPort());
-                }
+
+            // 再次核对内存中的最后心跳时间，防止与并发心跳竞争导致误判
+            long deadline = toEpochMillis(service.getLastHeartbeat()) + timeoutMillisOf(service);
+            if (deadline > now) {
+                timingWheel.schedule(id, deadline);
+                continue;
             }
+
+            updateStatus(id, "DOWN");
+            logger.info("服务离线: {} (v{}) - {}:{}",
+                    service.getServiceName(),
+                    service.getServiceVersion(),
+                    service.getIp(),
+                    service.getPort());
+        }
+    }
+
+    /**
+     * 主动健康检查失败时将服务标记为离线，与心跳超时走相同的状态变更流程
+     * @return 本次是否将服务标记为离线，服务不存在或已离线时返回false
+     */
+    public boolean markDown(Long id, String reason) {
+        RegisteredService service = registryCache.get(id);
+        if (service == null || "DOWN".equals(service.getStatus())) {
+            return false;
+        }
+        updateStatus(id, "DOWN");
+        logger.info("服务离线（{}）: {} (v{}) - {}:{}",
+                reason,
+                service.getServiceName(),
+                service.getServiceVersion(),
+                service.getIp(),
+                service.getPort());
+        return true;
+    }
+
+    /**
+     * 主动健康检查恢复时将服务重新标记为在线，之后仍按心跳超时检测
+     */
+    public void markUp(Long id, String reason) {
+        RegisteredService service = registryCache.get(id);
+        if (service == null || !"DOWN".equals(service.getStatus())) {
+            return;
+        }
+        updateStatus(id, "UP");
+        logger.info("服务已恢复在线（{}）: {} (v{}) - {}:{}",
+                reason,
+                service.getServiceName(),
+                service.getServiceVersion(),
+                service.getIp(),
+                service.getPort());
+    }
+
+    /**
+     * 持久化服务状态并同步到内存注册表，心跳检查与健康检查线程都会调用，串行执行
+     */
+    private void updateStatus(Long id, String status) {
+        statusLock.lock();
+        try {
+            doUpdateStatus(id, status);
+        } finally {
+            statusLock.unlock();
         }
     }
-}
\ No newline at end of file
+
+    private void doUpdateStatus(Long id, String status) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isEmpty()) {
+            return;
+        }
+        RegisteredService service = serviceOpt.get();
+        service.setStatus(status);
+        clusterNode.stamp(service);
+        RegisteredService snapshot = serviceRepository.save(service).copy();
+
+        // 数据库中的心跳时间可能落后于内存，保留较新的心跳时间
+        RegisteredService cached = registryCache.get(id);
+        if (cached != null && cached.getLastHeartbeat().isAfter(snapshot.getLastHeartbeat())) {
+            snapshot.setLastHeartbeat(cached.getLastHeartbeat());
+        }
+        registryCache.put(snapshot);
+        track(snapshot);
+    }
+
+    private long timeoutMillisOf(RegisteredService service) {
+        Integer timeoutSeconds = service.getHeartbeatTimeoutSeconds();
+        long seconds = timeoutSeconds != null && timeoutSeconds > 0 ? timeoutSeconds : defaultTimeoutSeconds;
+        return seconds * 1000;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
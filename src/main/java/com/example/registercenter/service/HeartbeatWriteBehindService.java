@@ -0,0 +1,97 @@
+package com.example.registercenter.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 心跳延迟写入服务
+ * 心跳只在内存中记录每个实例的最新时间，由后台任务按固定间隔合并后通过一次JDBC批量更新写入数据库，
+ * 数据库中的lastHeartbeat最多落后一个刷新间隔
+ */
+@Service
+public class HeartbeatWriteBehindService {
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatWriteBehindService.class);
+
+    private static final String UPDATE_HEARTBEAT_SQL = "UPDATE service SET last_heartbeat = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 待写入的心跳时间，同一实例多次心跳只保留最新一次
+    private final Map<Long, LocalDateTime> pendingHeartbeats = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次心跳，不访问数据库
+     */
+    public void record(Long id, LocalDateTime time) {
+        pendingHeartbeats.merge(id, time, (oldTime, newTime) -> newTime.isAfter(oldTime) ? newTime : oldTime);
+    }
+
+    /**
+     * 丢弃实例尚未写入的心跳，用于实例被删除的场景
+     */
+    public void discard(Long id) {
+        pendingHeartbeats.remove(id);
+    }
+
+    /**
+     * 当前等待写入的心跳数量
+     */
+    public int pendingCount() {
+        return pendingHeartbeats.size();
+    }
+
+    /**
+     * 定时将合并后的心跳批量写入数据库，刷新间隔通过registry.heartbeat.flush-interval-ms配置
+     */
+    @Scheduled(fixedDelayString = "${registry.heartbeat.flush-interval-ms:5000}")
+    @Transactional
+    public void flush() {
+        if (pendingHeartbeats.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(pendingHeartbeats.size());
+        for (Map.Entry<Long, LocalDateTime> entry : pendingHeartbeats.entrySet()) {
+            // 只有在时间未被新心跳覆盖时才移除，避免丢失刷新期间到达的心跳
+            if (pendingHeartbeats.remove(entry.getKey(), entry.getValue())) {
+                batch.add(new Object[]{Timestamp.valueOf(entry.getValue()), entry.getKey()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_HEARTBEAT_SQL, batch);
+            logger.debug("批量写入心跳 {} 条", batch.size());
+        } catch (RuntimeException e) {
+            // 写入失败时放回队列，等待下一次刷新
+            for (Object[] args : batch) {
+                record((Long) args[1], ((Timestamp) args[0]).toLocalDateTime());
+            }
+            logger.warn("批量写入心跳失败，{} 条心跳将在下次刷新时重试: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 应用关闭前写入剩余心跳
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
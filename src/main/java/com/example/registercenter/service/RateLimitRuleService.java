@@ -0,0 +1,312 @@
+package com.example.registercenter.service;
+
+import com.example.registercenter.entity.RateLimitRule;
+import com.example.registercenter.repository.RateLimitRuleRepository;
+import com.example.registercenter.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 代理限流规则服务
+ * 规则保存在数据库中，启动和每次修改后编译为按虚拟域名或服务名分组的不可变列表，代理请求时只读内存
+ * 同一请求匹配的规则按"按客户端计数的规则优先、路径前缀越长越优先"的顺序依次检查，全部通过才放行
+ * 客户端维度的规则先检查；某条规则或之后的实例限流拒绝请求时，已通过的规则退还令牌，被拒绝的请求不消耗任何规则的令牌
+ */
+@Service
+public class RateLimitRuleService {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitRuleService.class);
+    
+    private static final String DEFAULT_ERROR_MESSAGE = "请求过于频繁，请稍后再试";
+    
+    // 检查顺序：客户端维度优先，其次路径前缀越长越优先
+    private static final Comparator<CompiledRule> CHECK_ORDER = Comparator
+            .comparing((CompiledRule rule) -> RateLimitRule.KEY_GLOBAL.equals(rule.keyType))
+            .thenComparing(rule -> -rule.pathPrefix.length());
+    
+    @Autowired
+    private RateLimitRuleRepository rateLimitRuleRepository;
+    
+    // 虚拟域名或服务名 -> 已编译的规则，整体替换，读操作无锁
+    private volatile Map<String, List<CompiledRule>> rulesByTarget = Map.of();
+    
+    @PostConstruct
+    public void init() {
+        reload();
+        logger.info("已加载 {} 条代理限流规则", rulesByTarget.values().stream().mapToInt(List::size).sum());
+    }
+    
+    /**
+     * 获取限流规则，target为空时返回所有规则
+     */
+    public List<RateLimitRule> listRules(String target) {
+        return target == null || target.isEmpty()
+                ? rateLimitRuleRepository.findAll()
+                : rateLimitRuleRepository.findByTarget(target);
+    }
+    
+    /**
+     * 新增限流规则
+     */
+    @Transactional
+    public RateLimitRule createRule(RateLimitRule rule) {
+        rule.setId(null);
+        normalize(rule);
+        RateLimitRule saved = rateLimitRuleRepository.save(rule);
+        afterCommit(this::reload);
+        return saved;
+    }
+    
+    /**
+     * 修改限流规则，规则不存在时返回null
+     */
+    @Transactional
+    public RateLimitRule updateRule(Long id, RateLimitRule rule) {
+        Optional<RateLimitRule> ruleOpt = rateLimitRuleRepository.findById(id);
+        if (ruleOpt.isEmpty()) {
+            return null;
+        }
+        rule.setId(id);
+        normalize(rule);
+        RateLimitRule saved = rateLimitRuleRepository.save(rule);
+        afterCommit(this::reload);
+        return saved;
+    }
+    
+    /**
+     * 删除限流规则
+     */
+    @Transactional
+    public boolean deleteRule(Long id) {
+        if (!rateLimitRuleRepository.existsById(id)) {
+            return false;
+        }
+        rateLimitRuleRepository.deleteById(id);
+        afterCommit(this::reload);
+        return true;
+    }
+    
+    /**
+     * 检查请求是否被限流规则拒绝，被拒绝时已通过的规则退还令牌
+     * @param target 虚拟域名或服务名
+     * @param path 相对于/proxy/{target}的请求路径
+     * @return 检查结果，请求之后被实例限流拒绝时调用refund退还各规则的令牌
+     */
+    public Admission check(String target, String path, HttpServletRequest request) {
+        List<CompiledRule> rules = rulesByTarget.get(target);
+        if (rules == null) {
+            return Admission.ALLOWED;
+        }
+        List<CompiledRule> admittedRules = null;
+        List<String> admittedKeys = null;
+        for (CompiledRule rule : rules) {
+            if (!rule.matches(path)) {
+                continue;
+            }
+            String key = rule.keyOf(request);
+            if (!RateLimiter.isAllowed(key, rule.maxRequestsPerSecond, rule.burst)) {
+                if (admittedRules != null) {
+                    new Admission(null, admittedRules, admittedKeys).refund();
+                }
+                return new Admission(rule, List.of(), List.of());
+            }
+            if (admittedRules == null) {
+                admittedRules = new ArrayList<>(rules.size());
+                admittedKeys = new ArrayList<>(rules.size());
+            }
+            admittedRules.add(rule);
+            admittedKeys.add(key);
+        }
+        return admittedRules == null ? Admission.ALLOWED : new Admission(null, admittedRules, admittedKeys);
+    }
+    
+    /**
+     * 从数据库重新编译所有启用的规则
+     */
+    public synchronized void reload() {
+        Map<String, List<CompiledRule>> next = new HashMap<>();
+        for (RateLimitRule rule : rateLimitRuleRepository.findAll()) {
+            if (Boolean.TRUE.equals(rule.getEnabled())) {
+                next.computeIfAbsent(rule.getTarget(), key -> new ArrayList<>()).add(new CompiledRule(rule));
+            }
+        }
+        next.replaceAll((target, rules) -> {
+            rules.sort(CHECK_ORDER);
+            return List.copyOf(rules);
+        });
+        rulesByTarget = Map.copyOf(next);
+    }
+    
+    /**
+     * 校验并规范化规则，路径前缀统一以/开头、不以/结尾
+     */
+    private static void normalize(RateLimitRule rule) {
+        if (rule.getTarget() == null || rule.getTarget().isEmpty()) {
+            throw new IllegalArgumentException("target不能为空");
+        }
+        if (rule.getMaxRequestsPerSecond() == null || rule.getMaxRequestsPerSecond() <= 0) {
+            throw new IllegalArgumentException("maxRequestsPerSecond必须大于0");
+        }
+        String keyType = rule.getKeyType() == null || rule.getKeyType().isEmpty()
+                ? RateLimitRule.KEY_GLOBAL : rule.getKeyType().trim().toUpperCase();
+        if (!RateLimitRule.KEY_GLOBAL.equals(keyType) && !RateLimitRule.KEY_CLIENT_IP.equals(keyType)
+                && !RateLimitRule.KEY_HEADER.equals(keyType)) {
+            throw new IllegalArgumentException("不支持的计数维度: " + rule.getKeyType());
+        }
+        if (RateLimitRule.KEY_HEADER.equals(keyType) && (rule.getHeaderName() == null || rule.getHeaderName().isEmpty())) {
+            throw new IllegalArgumentException("计数维度为HEADER时headerName不能为空");
+        }
+        rule.setKeyType(keyType);
+        
+        String prefix = rule.getPathPrefix();
+        if (prefix != null && !prefix.isEmpty()) {
+            if (!prefix.startsWith("/")) {
+                prefix = "/" + prefix;
+            }
+            while (prefix.length() > 1 && prefix.endsWith("/")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            rule.setPathPrefix("/".equals(prefix) ? null : prefix);
+        } else {
+            rule.setPathPrefix(null);
+        }
+        if (rule.getEnabled() == null) {
+            rule.setEnabled(true);
+        }
+    }
+    
+    private static String ruleKeyPrefix(Long id) {
+        return "rule:" + id + ":";
+    }
+    
+    /**
+     * 存在活动事务时在提交后执行，否则立即执行
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    /**
+     * 限流规则的检查结果：拒绝请求的规则，或通过检查时各规则消耗令牌的限流键
+     * 限流键在请求线程中计算好，之后在其他线程退还令牌时不需要读取请求对象
+     */
+    public static class Admission {
+        private static final Admission ALLOWED = new Admission(null, List.of(), List.of());
+        
+        private final CompiledRule deniedBy;
+        private final List<CompiledRule> admittedRules;
+        private final List<String> admittedKeys;
+        
+        private Admission(CompiledRule deniedBy, List<CompiledRule> admittedRules, List<String> admittedKeys) {
+            this.deniedBy = deniedBy;
+            this.admittedRules = admittedRules;
+            this.admittedKeys = admittedKeys;
+        }
+        
+        /**
+         * 拒绝请求的规则，全部通过时返回null
+         */
+        public CompiledRule getDeniedBy() {
+            return deniedBy;
+        }
+        
+        /**
+         * 退还通过的规则消耗的令牌，请求通过规则检查后又被实例限流拒绝时调用
+         */
+        public void refund() {
+            for (int i = 0; i < admittedRules.size(); i++) {
+                RateLimiter.refund(admittedKeys.get(i), admittedRules.get(i).maxRequestsPerSecond);
+            }
+        }
+    }
+    
+    /**
+     * 编译后的限流规则，限流键前缀和匹配条件预先计算好
+     */
+    public static class CompiledRule {
+        private final Long id;
+        private final String keyType;
+        private final String headerName;
+        private final String pathPrefix;
+        private final int maxRequestsPerSecond;
+        private final int burst;
+        private final String keyPrefix;
+        private final String errorMessage;
+        
+        private CompiledRule(RateLimitRule rule) {
+            this.id = rule.getId();
+            this.keyType = rule.getKeyType();
+            this.headerName = rule.getHeaderName();
+            this.pathPrefix = rule.getPathPrefix() == null ? "" : rule.getPathPrefix();
+            this.maxRequestsPerSecond = rule.getMaxRequestsPerSecond();
+            this.burst = rule.getBurst() != null && rule.getBurst() > 0 ? rule.getBurst() : rule.getMaxRequestsPerSecond();
+            this.keyPrefix = ruleKeyPrefix(rule.getId());
+            this.errorMessage = rule.getErrorMessage() != null && !rule.getErrorMessage().isEmpty()
+                    ? rule.getErrorMessage() : DEFAULT_ERROR_MESSAGE;
+        }
+        
+        /**
+         * 按路径段匹配前缀，/api匹配/api和/api/users，不匹配/apix
+         */
+        private boolean matches(String path) {
+            if (pathPrefix.isEmpty()) {
+                return true;
+            }
+            return path.startsWith(pathPrefix)
+                    && (path.length() == pathPrefix.length() || path.charAt(pathPrefix.length()) == '/');
+        }
+        
+        /**
+         * 计算限流键，请求头不存在的请求共用一个计数
+         */
+        private String keyOf(HttpServletRequest request) {
+            switch (keyType) {
+                case RateLimitRule.KEY_CLIENT_IP:
+                    return keyPrefix + request.getRemoteAddr();
+                case RateLimitRule.KEY_HEADER:
+                    String value = request.getHeader(headerName);
+                    return value == null ? keyPrefix : keyPrefix + value;
+                default:
+                    return keyPrefix;
+            }
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public String getKeyType() {
+            return keyType;
+        }
+        
+        public int getMaxRequestsPerSecond() {
+            return maxRequestsPerSecond;
+        }
+        
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.example.registercenter.service;
+
+import com.example.registercenter.entity.RegisteredService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 服务注册表内存快照，是服务发现读操作的唯一数据来源
+ * 按ID、服务名、服务名+版本、IP+端口、虚拟域名建立索引，数据库只在数据变更时写入
+ * 读操作无锁；写操作串行执行，索引中的列表每次变更时整体替换（写时复制）
+ * 每次实际变更都会递增注册表版本号并通知监听器，心跳时间的变化不算作变更
+ * 最近的变更保存在有界的变更日志中，用于按版本号增量获取
+ */
+@Component
+public class RegistryCache {
+
+    private static final Comparator<RegisteredService> BY_ID = Comparator.comparing(RegisteredService::getId);
+
+    // 按ID索引，保持ID有序，与findAll的返回顺序一致
+    private final ConcurrentSkipListMap<Long, RegisteredService> byId = new ConcurrentSkipListMap<>();
+
+    // 按服务名索引
+    private final Map<String, List<RegisteredService>> byName = new ConcurrentHashMap<>();
+
+    // 按服务名+版本索引
+    private final Map<String, List<RegisteredService>> byNameVersion = new ConcurrentHashMap<>();
+
+    // 按IP+端口索引
+    private final Map<String, List<RegisteredService>> byIpPort = new ConcurrentHashMap<>();
+
+    // 按虚拟域名索引
+    private final Map<String, RegisteredService> byVirtualDomain = new ConcurrentHashMap<>();
+
+    // 每个服务名最近一次发生变更时的注册表版本号
+    private final Map<String, Long> serviceNameRevisions = new ConcurrentHashMap<>();
+
+    // 注册表版本号，只在写操作中递增
+    private volatile long revision;
+
+    // 变更监听器，在写操作内同步调用，实现中不应执行耗时操作
+    private final List<Consumer<RegistryChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    // 整体重新加载监听器，重新加载不产生逐条变更事件
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+
+    // 变更日志容量，超出后丢弃最早的变更，版本号过旧的客户端需要全量获取
+    @Value("${registry.change-log.capacity:10000}")
+    private int changeLogCapacity;
+
+    // 最近的变更日志，只在持有锁时访问
+    private final Deque<RegistryChangeEvent> changeLog = new ArrayDeque<>();
+
+    // 全量视图哈希，所有实例哈希的异或，随索引增删增量维护
+    private long viewHash;
+
+    /**
+     * 注册变更监听器
+     */
+    public void addListener(Consumer<RegistryChangeEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 注册整体重新加载监听器，在重新加载完成后、释放锁之前调用
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * 用给定的服务列表整体替换当前快照，用于启动时从数据库加载
+     */
+    public synchronized void reload(Collection<RegisteredService> services) {
+        byId.clear();
+        byName.clear();
+        byNameVersion.clear();
+        byIpPort.clear();
+        byVirtualDomain.clear();
+        serviceNameRevisions.clear();
+        changeLog.clear();
+        viewHash = 0;
+        revision++;
+        for (RegisteredService service : services) {
+            RegisteredService snapshot = service.copy();
+            snapshot.setRevision(revision);
+            index(snapshot);
+            serviceNameRevisions.put(snapshot.getServiceName(), revision);
+        }
+        for (Runnable listener : reloadListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 新增或替换一个服务实例，传入对象会被复制，调用方后续修改不影响快照
+     */
+    public synchronized void put(RegisteredService service) {
+        RegisteredService snapshot = service.copy();
+        RegisteredService previous = byId.get(snapshot.getId());
+        if (previous != null) {
+            if (sameExceptHeartbeat(previous, snapshot)) {
+                // 只有心跳时间或复制版本不同，直接更新快照对象，不产生变更
+                previous.setLastHeartbeat(snapshot.getLastHeartbeat());
+                previous.setModifiedAt(snapshot.getModifiedAt());
+                previous.setModifiedBy(snapshot.getModifiedBy());
+                return;
+            }
+            unindex(previous);
+        }
+        index(snapshot);
+        if (previous != null && (!previous.getServiceName().equals(snapshot.getServiceName())
+                || !previous.getServiceVersion().equals(snapshot.getServiceVersion()))) {
+            // 服务名或版本变化时视为从原服务中移除并加入新服务，按服务名订阅的客户端才能感知到
+            publish(RegistryChangeEvent.Type.REMOVED, previous);
+            publish(RegistryChangeEvent.Type.ADDED, snapshot);
+        } else {
+            publish(previous == null ? RegistryChangeEvent.Type.ADDED : RegistryChangeEvent.Type.UPDATED, snapshot);
+        }
+    }
+
+    /**
+     * 从快照中移除一个服务实例
+     */
+    public synchronized RegisteredService remove(Long id) {
+        RegisteredService previous = byId.get(id);
+        if (previous != null) {
+            unindex(previous);
+            publish(RegistryChangeEvent.Type.REMOVED, previous);
+        }
+        return previous;
+    }
+
+    /**
+     * 根据ID获取服务实例
+     */
+    public RegisteredService get(Long id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * 获取所有服务实例，按ID排序
+     */
+    public List<RegisteredService> listAll() {
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * 根据服务名查找所有版本的服务实例
+     */
+    public List<RegisteredService> findByServiceName(String serviceName) {
+        return byName.getOrDefault(serviceName, List.of());
+    }
+
+    /**
+     * 根据服务名和版本查找服务实例
+     */
+    public List<RegisteredService> findByServiceNameAndVersion(String serviceName, String serviceVersion) {
+        return byNameVersion.getOrDefault(nameVersionKey(serviceName, serviceVersion), List.of());
+    }
+
+    /**
+     * 根据IP和端口查找服务实例
+     */
+    public List<RegisteredService> findByIpAndPort(String ip, Integer port) {
+        return byIpPort.getOrDefault(ipPortKey(ip, port), List.of());
+    }
+
+    /**
+     * 查找特定的服务实例
+     */
+    public RegisteredService findInstance(String serviceName, String serviceVersion, String ip, Integer port) {
+        for (RegisteredService service : findByIpAndPort(ip, port)) {
+            if (service.getServiceName().equals(serviceName) && service.getServiceVersion().equals(serviceVersion)) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据虚拟域名查找服务实例
+     */
+    public RegisteredService findByVirtualDomain(String virtualDomain) {
+        return virtualDomain == null ? null : byVirtualDomain.get(virtualDomain);
+    }
+
+    /**
+     * 当前注册表版本号
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * 服务名最近一次发生变更时的注册表版本号，从未变更过时返回0
+     */
+    public long getServiceNameRevision(String serviceName) {
+        return serviceNameRevisions.getOrDefault(serviceName, 0L);
+    }
+
+    /**
+     * 获取一致的视图：版本号、视图哈希和服务列表在同一时刻读取
+     * @param serviceName 服务名，为空时返回全量视图
+     * @param serviceVersion 服务版本，为空时返回所有版本
+     */
+    public synchronized View view(String serviceName, String serviceVersion) {
+        if (serviceName == null) {
+            return new View(revision, viewHash, listAll());
+        }
+        List<RegisteredService> services = hasText(serviceVersion)
+                ? findByServiceNameAndVersion(serviceName, serviceVersion)
+                : findByServiceName(serviceName);
+        return new View(revision, hashOf(services), services);
+    }
+
+    /**
+     * 获取指定版本号之后的增量变更，同一实例的多次变更合并为最后一次
+     * 版本号早于变更日志覆盖范围或大于当前版本号（注册中心已重启）时返回null，客户端需要全量获取
+     * @param sinceRevision 客户端已知的版本号
+     * @param serviceName 服务名，为空时返回全量视图的变更
+     * @param serviceVersion 服务版本，为空时包含所有版本
+     */
+    public synchronized Delta changesSince(long sinceRevision, String serviceName, String serviceVersion) {
+        if (sinceRevision > revision) {
+            return null;
+        }
+        if (sinceRevision < revision && (changeLog.isEmpty() || changeLog.peekFirst().getRevision() > sinceRevision + 1)) {
+            return null;
+        }
+
+        Map<Long, RegistryChangeEvent> latest = new LinkedHashMap<>();
+        Iterator<RegistryChangeEvent> iterator = changeLog.descendingIterator();
+        while (iterator.hasNext()) {
+            RegistryChangeEvent event = iterator.next();
+            if (event.getRevision() <= sinceRevision) {
+                break;
+            }
+            RegisteredService service = event.getService();
+            if (serviceName != null && (!serviceName.equals(service.getServiceName())
+                    || (hasText(serviceVersion) && !serviceVersion.equals(service.getServiceVersion())))) {
+                continue;
+            }
+            latest.putIfAbsent(service.getId(), event);
+        }
+
+        List<RegisteredService> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (RegistryChangeEvent event : latest.values()) {
+            if (event.getType() == RegistryChangeEvent.Type.REMOVED) {
+                removed.add(event.getService().getId());
+            } else {
+                changed.add(event.getService());
+            }
+        }
+        changed.sort(BY_ID);
+        long hash = serviceName == null ? viewHash : view(serviceName, serviceVersion).getHash();
+        return new Delta(revision, hash, changed, removed);
+    }
+
+    /**
+     * 计算服务列表的视图哈希
+     */
+    public static long hashOf(Collection<RegisteredService> services) {
+        long hash = 0;
+        for (RegisteredService service : services) {
+            hash ^= instanceHash(service.getId(), service.getRevision());
+        }
+        return hash;
+    }
+
+    /**
+     * 单个实例的哈希，由实例ID和实例最近变更的版本号决定
+     * 视图哈希为所有实例哈希的异或，客户端可以按同样的算法校验本地缓存是否与注册中心一致
+     */
+    public static long instanceHash(Long id, Long revision) {
+        long h = id * 0x9E3779B97F4A7C15L ^ (revision == null ? 0 : revision);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * 将视图哈希格式化为16位十六进制字符串，用作ETag
+     */
+    public static String formatHash(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * 当前快照中的服务实例数量
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    private void publish(RegistryChangeEvent.Type type, RegisteredService service) {
+        long next = revision + 1;
+        if (type != RegistryChangeEvent.Type.REMOVED) {
+            // 实例版本号参与视图哈希，先移出旧哈希再加入新哈希
+            viewHash ^= instanceHash(service.getId(), service.getRevision());
+            service.setRevision(next);
+            viewHash ^= instanceHash(service.getId(), next);
+        }
+        serviceNameRevisions.put(service.getServiceName(), next);
+        revision = next;
+        RegistryChangeEvent event = new RegistryChangeEvent(next, type, service);
+        changeLog.addLast(event);
+        while (changeLog.size() > Math.max(1, changeLogCapacity)) {
+            changeLog.removeFirst();
+        }
+        for (Consumer<RegistryChangeEvent> listener : listeners) {
+            listener.accept(event);
+        }
+    }
+
+    private static boolean sameExceptHeartbeat(RegisteredService previous, RegisteredService snapshot) {
+        RegisteredService probe = snapshot.copy();
+        probe.setLastHeartbeat(previous.getLastHeartbeat());
+        probe.setRevision(previous.getRevision());
+        probe.setModifiedAt(previous.getModifiedAt());
+        probe.setModifiedBy(previous.getModifiedBy());
+        return probe.equals(previous);
+    }
+
+    private void index(RegisteredService service) {
+        byId.put(service.getId(), service);
+        viewHash ^= instanceHash(service.getId(), service.getRevision());
+        addTo(byName, service.getServiceName(), service);
+        addTo(byNameVersion, nameVersionKey(service.getServiceName(), service.getServiceVersion()), service);
+        addTo(byIpPort, ipPortKey(service.getIp(), service.getPort()), service);
+        if (hasVirtualDomain(service)) {
+            byVirtualDomain.put(service.getVirtualDomain(), service);
+        }
+    }
+
+    private void unindex(RegisteredService service) {
+        byId.remove(service.getId());
+        viewHash ^= instanceHash(service.getId(), service.getRevision());
+        removeFrom(byName, service.getServiceName(), service.getId());
+        removeFrom(byNameVersion, nameVersionKey(service.getServiceName(), service.getServiceVersion()), service.getId());
+        removeFrom(byIpPort, ipPortKey(service.getIp(), service.getPort()), service.getId());
+        if (hasVirtualDomain(service)) {
+            byVirtualDomain.remove(service.getVirtualDomain(), service);
+        }
+    }
+
+    private static void addTo(Map<String, List<RegisteredService>> index, String key, RegisteredService service) {
+        List<RegisteredService> current = index.getOrDefault(key, List.of());
+        List<RegisteredService> next = new ArrayList<>(current.size() + 1);
+        next.addAll(current);
+        next.add(service);
+        next.sort(BY_ID);
+        index.put(key, List.copyOf(next));
+    }
+
+    private static void removeFrom(Map<String, List<RegisteredService>> index, String key, Long id) {
+        List<RegisteredService> current = index.get(key);
+        if (current == null) {
+            return;
+        }
+        List<RegisteredService> next = new ArrayList<>(current.size());
+        for (RegisteredService service : current) {
+            if (!service.getId().equals(id)) {
+                next.add(service);
+            }
+        }
+        if (next.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, List.copyOf(next));
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private static boolean hasVirtualDomain(RegisteredService service) {
+        return service.getVirtualDomain() != null && !service.getVirtualDomain().isEmpty();
+    }
+
+    static String nameVersionKey(String serviceName, String serviceVersion) {
+        return serviceName + ":" + serviceVersion;
+    }
+
+    static String ipPortKey(String ip, Integer port) {
+        return ip + ":" + port;
+    }
+
+    /**
+     * 注册表视图
+     */
+    public static class View {
+        private final long revision;
+        private final long hash;
+        private final List<RegisteredService> services;
+
+        public View(long revision, long hash, List<RegisteredService> services) {
+            this.revision = revision;
+            this.hash = hash;
+            this.services = services;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public List<RegisteredService> getServices() {
+            return services;
+        }
+    }
+
+    /**
+     * 注册表增量变更
+     */
+    public static class Delta {
+        private final long revision;
+        private final long hash;
+        private final List<RegisteredService> changed;
+        private final List<Long> removed;
+
+        public Delta(long revision, long hash, List<RegisteredService> changed, List<Long> removed) {
+            this.revision = revision;
+            this.hash = hash;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public List<RegisteredService> getChanged() {
+            return changed;
+        }
+
+        public List<Long> getRemoved() {
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.registercenter.service;
+
+import com.example.registercenter.entity.RegisteredService;
+
+/**
+ * 注册表变更事件，每次变更对应一个递增的注册表版本号
+ * 只有服务的注册信息或状态变化才会产生事件，单纯的心跳不会
+ */
+public class RegistryChangeEvent {
+
+    public enum Type {
+        ADDED, UPDATED, REMOVED
+    }
+
+    private final long revision;
+
+    private final Type type;
+
+    private final RegisteredService service;
+
+    public RegistryChangeEvent(long revision, Type type, RegisteredService service) {
+        this.revision = revision;
+        this.type = type;
+        this.service = service;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public RegisteredService getService() {
+        return service;
+    }
+}
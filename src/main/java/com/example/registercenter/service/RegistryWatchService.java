@@ -0,0 +1,274 @@
+package com.example.registercenter.service;
+
+import com.example.registercenter.entity.RegisteredService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册表变更订阅服务
+ * 支持两种方式：长轮询在版本号超过客户端已知版本或超时后返回；SSE推送指定服务名的新增、更新、删除事件
+ * 客户端可以据此维护本地缓存，无需定时轮询全量服务列表
+ */
+@Service
+public class RegistryWatchService {
+    private static final Logger logger = LoggerFactory.getLogger(RegistryWatchService.class);
+
+    // 订阅所有服务时使用的键
+    private static final String ALL_SERVICES = "";
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    // 长轮询最长等待时间（毫秒）
+    @Value("${registry.watch.max-timeout-ms:60000}")
+    private long maxTimeoutMillis;
+
+    // 每个SSE订阅者允许积压的事件数，超过后断开连接，由客户端重新订阅获取全量快照
+    @Value("${registry.watch.sse-queue-capacity:1024}")
+    private int sseQueueCapacity;
+
+    // SSE连接空闲时发送注释行的间隔（毫秒），写入失败即说明客户端已断开，订阅者随之移除
+    @Value("${registry.watch.sse-keepalive-ms:15000}")
+    private long sseKeepAliveMillis;
+
+    // 按服务名分组的长轮询等待者
+    private final Map<String, Set<LongPollWaiter>> waiters = new ConcurrentHashMap<>();
+
+    // 按服务名分组的SSE订阅者
+    private final Map<String, Set<SseSubscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // 每个SSE订阅者使用一个虚拟线程按顺序发送事件，慢客户端不会阻塞注册表写操作
+    private final ExecutorService sseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    public void init() {
+        registryCache.addListener(this::onChange);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sseExecutor.shutdownNow();
+    }
+
+    /**
+     * 长轮询：当注册表（或指定服务名）的版本号大于revision时立即返回，否则等待变更或超时
+     * @param revision 客户端已知的版本号
+     * @param serviceName 只关注该服务名的变更，为空时关注整个注册表
+     * @param timeoutMillis 等待时间（毫秒）
+     */
+    public DeferredResult<ResponseEntity<?>> watch(long revision, String serviceName, long timeoutMillis) {
+        String key = serviceName == null ? ALL_SERVICES : serviceName;
+        long timeout = Math.max(1, Math.min(timeoutMillis, maxTimeoutMillis));
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeout);
+        LongPollWaiter waiter = new LongPollWaiter(key, revision, result);
+
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(watchResponse(key, false))));
+        result.onCompletion(() -> removeFrom(waiters, key, waiter));
+
+        waiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        // 登记后再检查一次版本号，避免错过登记前发生的变更
+        if (isChangedSince(key, revision)) {
+            waiter.complete();
+        }
+        return result;
+    }
+
+    /**
+     * SSE订阅：连接建立后先推送一次当前快照（SNAPSHOT事件），之后推送ADDED、UPDATED、REMOVED事件
+     * @param serviceName 只推送该服务名的事件，为空时推送整个注册表的事件
+     */
+    public SseEmitter stream(String serviceName) {
+        String key = serviceName == null ? ALL_SERVICES : serviceName;
+        SseEmitter emitter = new SseEmitter(0L);
+        SseSubscriber subscriber = new SseSubscriber(key, emitter, sseQueueCapacity, sseKeepAliveMillis);
+
+        Runnable unsubscribe = () -> {
+            removeFrom(subscribers, key, subscriber);
+            subscriber.close();
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        // 先登记再取快照，快照之后的变更都会进入队列，客户端可按版本号忽略重复事件
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("revision", registryCache.getRevision());
+        snapshot.put("data", servicesOf(key));
+        subscriber.offer(SseEmitter.event().name("SNAPSHOT").id(String.valueOf(registryCache.getRevision())).data(snapshot));
+
+        sseExecutor.execute(() -> {
+            subscriber.drain();
+            // 发送失败时容器不一定回调onError，在这里也移除一次
+            removeFrom(subscribers, key, subscriber);
+        });
+        return emitter;
+    }
+
+    private void onChange(RegistryChangeEvent event) {
+        String serviceName = event.getService().getServiceName();
+        notifyWaiters(ALL_SERVICES);
+        notifyWaiters(serviceName);
+        notifySubscribers(ALL_SERVICES, event);
+        notifySubscribers(serviceName, event);
+    }
+
+    private void notifyWaiters(String key) {
+        Set<LongPollWaiter> keyWaiters = waiters.get(key);
+        if (keyWaiters == null) {
+            return;
+        }
+        for (LongPollWaiter waiter : keyWaiters) {
+            waiter.complete();
+        }
+    }
+
+    private void notifySubscribers(String key, RegistryChangeEvent event) {
+        Set<SseSubscriber> keySubscribers = subscribers.get(key);
+        if (keySubscribers == null) {
+            return;
+        }
+        for (SseSubscriber subscriber : keySubscribers) {
+            boolean accepted = subscriber.offer(SseEmitter.event()
+                    .name(event.getType().name())
+                    .id(String.valueOf(event.getRevision()))
+                    .data(event));
+            if (!accepted) {
+                logger.warn("SSE订阅者积压事件过多，断开连接: {}", key.isEmpty() ? "全部服务" : key);
+                removeFrom(subscribers, key, subscriber);
+                subscriber.close();
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * 判断客户端已知版本之后是否发生过变更
+     * 客户端版本号大于当前版本号说明注册中心已重启，版本号重新计数，同样视为已变更
+     */
+    private boolean isChangedSince(String key, long revision) {
+        if (revision > registryCache.getRevision()) {
+            return true;
+        }
+        long current = ALL_SERVICES.equals(key) ? registryCache.getRevision() : registryCache.getServiceNameRevision(key);
+        return current > revision;
+    }
+
+    private List<RegisteredService> servicesOf(String key) {
+        return ALL_SERVICES.equals(key) ? registryCache.listAll() : registryCache.findByServiceName(key);
+    }
+
+    private Map<String, Object> watchResponse(String key, boolean changed) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("changed", changed);
+        response.put("revision", registryCache.getRevision());
+        if (!ALL_SERVICES.equals(key)) {
+            response.put("serviceName", key);
+            if (changed) {
+                response.put("data", servicesOf(key));
+            }
+        }
+        return response;
+    }
+
+    private static <T> void removeFrom(Map<String, Set<T>> map, String key, T value) {
+        Set<T> values = map.get(key);
+        if (values != null) {
+            values.remove(value);
+        }
+    }
+
+    /**
+     * 长轮询等待者
+     */
+    private class LongPollWaiter {
+        private final String key;
+        private final long revision;
+        private final DeferredResult<ResponseEntity<?>> result;
+
+        private LongPollWaiter(String key, long revision, DeferredResult<ResponseEntity<?>> result) {
+            this.key = key;
+            this.revision = revision;
+            this.result = result;
+        }
+
+        private void complete() {
+            if (!result.isSetOrExpired() && isChangedSince(key, revision)) {
+                result.setResult(ResponseEntity.ok(watchResponse(key, true)));
+            }
+        }
+    }
+
+    /**
+     * SSE订阅者，事件先进入有界队列，再由专属虚拟线程按顺序发送
+     * 队列空闲超过keepAliveMillis时发送一行注释，及时发现已断开的连接
+     */
+    private static class SseSubscriber {
+        private static final SseEmitter.SseEventBuilder CLOSE = SseEmitter.event();
+
+        private final String key;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final long keepAliveMillis;
+
+        private SseSubscriber(String key, SseEmitter emitter, int capacity, long keepAliveMillis) {
+            this.key = key;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.keepAliveMillis = keepAliveMillis;
+        }
+
+        private boolean offer(SseEmitter.SseEventBuilder event) {
+            return queue.offer(event);
+        }
+
+        /**
+         * 停止发送线程，连接由调用方或容器负责结束
+         */
+        private void close() {
+            queue.clear();
+            queue.offer(CLOSE);
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    SseEmitter.SseEventBuilder event = keepAliveMillis > 0
+                            ? queue.poll(keepAliveMillis, TimeUnit.MILLISECONDS)
+                            : queue.take();
+                    if (event == CLOSE) {
+                        return;
+                    }
+                    emitter.send(event != null ? event : SseEmitter.event().comment("keepalive"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // 写入失败时容器已经结束了异步请求，不能再调用completeWithError
+                logger.debug("SSE订阅者连接已断开: {}", key.isEmpty() ? "全部服务" : key);
+            }
+        }
+    }
+}
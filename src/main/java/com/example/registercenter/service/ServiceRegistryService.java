@@ -1,5 +1,6 @@
 package com.example.registercenter.service;
 
+import com.example.registercenter.cluster.ClusterNode;
 import com.example.registercenter.entity.RegisteredService;
 import com.example.registercenter.repository.ServiceRepository;
 import org.slf4j.Logger;
@@ -7,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -23,6 +26,21 @@ public class ServiceRegistryService {
     @Autowired
     private ServiceRepository serviceRepository;
     
+    @Autowired
+    private RegistryCache registryCache;
+    
+    @Autowired
+    private HeartbeatWriteBehindService heartbeatWriteBehindService;
+    
+    @Autowired
+    private HeartbeatMonitorService heartbeatMonitorService;
+    
+    @Autowired
+    private HealthProbeService healthProbeService;
+    
+    @Autowired
+    private ClusterNode clusterNode;
+    
     /**
      * 注册服务 - 修改为当IP+端口一致时当做修改，支持虚拟域名
      */
@@ -51,27 +69,26 @@ public class ServiceRegistryService {
             service.setVirtualDomain(virtualDomain);
             logger.info("重新激活已注销的服务: {} (v{}) - {}:{}", 
                     service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
-            return serviceRepository.save(service);
+            return syncCache(save(service));
         }
         
-        // 检查是否存在相同IP+端口的服务
-        List<RegisteredService> allServices = serviceRepository.findAll();
-        RegisteredService existingServiceWithSameIpPort = null;
+        // 检查是否存在相同IP+端口的服务，通过(ip, port)索引查询，避免加载全表
+        List<RegisteredService> servicesWithSameIpPort = serviceRepository.findByIpAndPort(ip, port);
+        RegisteredService existingServiceWithSameIpPort = servicesWithSameIpPort.isEmpty() ? null : servicesWithSameIpPort.get(0);
         List<RegisteredService> otherServicesWithSameIpPort = new ArrayList<>();
+        for (int i = 1; i < servicesWithSameIpPort.size(); i++) {
+            otherServicesWithSameIpPort.add(servicesWithSameIpPort.get(i));
+        }
         
-        for (RegisteredService service : allServices) {
-            if (service.getIp().equals(ip) && service.getPort().equals(port)) {
-                if (existingServiceWithSameIpPort == null) {
-                    existingServiceWithSameIpPort = service;
-                } else {
+        // 检查是否存在相同虚拟域名的服务，如果有也添加到待删除列表
+        if (virtualDomain != null) {
+            serviceRepository.findByVirtualDomain(virtualDomain).ifPresent(service -> {
+                boolean alreadyListed = servicesWithSameIpPort.stream()
+                        .anyMatch(s -> s.getId().equals(service.getId()));
+                if (!alreadyListed) {
                     otherServicesWithSameIpPort.add(service);
                 }
-            }
-            // 检查是否存在相同虚拟域名的服务
-            if (virtualDomain != null && virtualDomain.equals(service.getVirtualDomain())) {
-                // 如果有相同虚拟域名的服务，也添加到待删除列表
-                otherServicesWithSameIpPort.add(service);
-            }
+            });
         }
         
         if (existingServiceWithSameIpPort != null) {
@@ -87,10 +104,18 @@ public class ServiceRegistryService {
             if (!otherServicesWithSameIpPort.isEmpty()) {
                 for (RegisteredService service : otherServicesWithSameIpPort) {
                     serviceRepository.deleteById(service.getId());
+                    Long removedId = service.getId();
+                    afterCommit(() -> {
+                        registryCache.remove(removedId);
+                        heartbeatWriteBehindService.discard(removedId);
+                        heartbeatMonitorService.untrack(removedId);
+                    });
                 }
+                // 先执行删除，避免更新虚拟域名时与待删除记录的唯一约束冲突
+                serviceRepository.flush();
             }
             
-            return serviceRepository.save(existingServiceWithSameIpPort);
+            return syncCache(save(existingServiceWithSameIpPort));
         } else {
             // 创建新服务
             RegisteredService service = new RegisteredService();
@@ -103,8 +128,87 @@ public class ServiceRegistryService {
             service.setLastHeartbeat(LocalDateTime.now());
             // 设置虚拟域名
             service.setVirtualDomain(virtualDomain);
-            return serviceRepository.save(service);
+            inheritConcurrencyLimit(service);
+            return syncCache(save(service));
+        }
+    }
+    
+    /**
+     * 批量注册服务 - 所有实例在同一个事务中注册，返回每个实例的处理结果
+     * 缺少必填字段的实例会被跳过并标记为失败，数据库异常会使整个批次回滚
+     */
+    @Transactional
+    public List<Map<String, Object>> registerServices(List<RegisteredService> services) {
+        List<Map<String, Object>> results = new ArrayList<>(services.size());
+        for (int i = 0; i < services.size(); i++) {
+            RegisteredService service = services.get(i);
+            if (service == null || service.getServiceName() == null || service.getServiceVersion() == null
+                    || service.getIp() == null || service.getPort() == null) {
+                results.add(batchItemResult(i, false, "serviceName、serviceVersion、ip、port不能为空", null));
+                continue;
+            }
+            RegisteredService registered = registerService(
+                    service.getServiceName(),
+                    service.getServiceVersion(),
+                    service.getIp(),
+                    service.getPort(),
+                    service.getVirtualDomain());
+            results.add(batchItemResult(i, true, "服务注册成功", registered));
+        }
+        return results;
+    }
+    
+    /**
+     * 批量发送心跳 - 实例可以通过id或服务名+版本+IP+端口指定，只更新内存快照
+     * 成功的结果带有实例当前状态status；健康检查标记离线的实例另带healthCheckDown=true，
+     * 客户端据此对心跳超时离线的实例重新注册，对健康检查标记离线的实例不重新注册
+     */
+    public List<Map<String, Object>> sendHeartbeats(List<RegisteredService> services) {
+        List<Map<String, Object>> results = new ArrayList<>(services.size());
+        for (int i = 0; i < services.size(); i++) {
+            RegisteredService service = services.get(i);
+            boolean success;
+            RegisteredService cached = null;
+            if (service == null) {
+                success = false;
+            } else if (service.getId() != null) {
+                success = sendHeartbeatById(service.getId());
+                cached = registryCache.get(service.getId());
+            } else {
+                success = sendHeartbeat(service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
+                cached = registryCache.findInstance(service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
+            }
+            Map<String, Object> result = batchItemResult(i, success, success ? "心跳更新成功" : "服务不存在", null);
+            if (success && cached != null) {
+                result.put("status", cached.getStatus());
+                if (healthProbeService.isMarkedDown(cached.getId())) {
+                    result.put("healthCheckDown", true);
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+    
+    /**
+     * 批量注销服务 - 所有实例在同一个事务中设置为离线，实例可以通过id或服务名+版本+IP+端口指定
+     */
+    @Transactional
+    public List<Map<String, Object>> deregisterServices(List<RegisteredService> services) {
+        List<Map<String, Object>> results = new ArrayList<>(services.size());
+        for (int i = 0; i < services.size(); i++) {
+            RegisteredService service = services.get(i);
+            boolean success;
+            if (service == null) {
+                success = false;
+            } else if (service.getId() != null) {
+                success = deregisterServiceById(service.getId());
+            } else {
+                success = deregisterService(service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
+            }
+            results.add(batchItemResult(i, success, success ? "服务注销成功" : "服务不存在", null));
         }
+        return results;
     }
     
     /**
@@ -118,7 +222,7 @@ public class ServiceRegistryService {
         if (serviceOpt.isPresent()) {
             RegisteredService service = serviceOpt.get();
             service.setStatus("DOWN");
-            serviceRepository.save(service);
+            syncCache(save(service));
             logger.info("服务已手动设置为离线: {} (v{}) - {}:{}", 
                     service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
             return true;
@@ -130,18 +234,19 @@ public class ServiceRegistryService {
      * 根据虚拟域名查找服务
      */
     public RegisteredService findServiceByVirtualDomain(String virtualDomain) {
-        Optional<RegisteredService> serviceOpt = serviceRepository.findByVirtualDomain(virtualDomain);
-        return serviceOpt.orElse(null);
+        return registryCache.findByVirtualDomain(virtualDomain);
     }
     
     /**
-     * 发送心跳
+     * 发送心跳 - 只更新内存快照，数据库由HeartbeatWriteBehindService批量延迟写入
      */
-    @Transactional
     public boolean sendHeartbeat(String serviceName, String serviceVersion, String ip, Integer port) {
-        int updatedCount = serviceRepository.updateHeartbeat(
-                serviceName, serviceVersion, ip, port, LocalDateTime.now());
-        return updatedCount > 0;
+        RegisteredService cached = registryCache.findInstance(serviceName, serviceVersion, ip, port);
+        if (cached == null) {
+            return false;
+        }
+        recordHeartbeat(cached, LocalDateTime.now());
+        return true;
     }
     
     /**
@@ -149,13 +254,9 @@ public class ServiceRegistryService {
      */
     public List<RegisteredService> findServices(String serviceName, String serviceVersion) {
         if (serviceVersion != null && !serviceVersion.isEmpty()) {
-            List<RegisteredService> services = serviceRepository.findByServiceNameAndServiceVersion(serviceName, serviceVersion);
-            // 确保返回的服务对象包含完整的限流信息
-            return services;
+            return registryCache.findByServiceNameAndVersion(serviceName, serviceVersion);
         } else {
-            List<RegisteredService> services = serviceRepository.findByServiceName(serviceName);
-            // 确保返回的服务对象包含完整的限流信息
-            return services;
+            return registryCache.findByServiceName(serviceName);
         }
     }
     
@@ -163,9 +264,21 @@ public class ServiceRegistryService {
      * 列出所有服务
      */
     public List<RegisteredService> listAllServices() {
-        List<RegisteredService> services = serviceRepository.findAll();
-        // 确保返回的服务对象包含完整的限流信息
-        return services;
+        return registryCache.listAll();
+    }
+    
+    /**
+     * 获取一致的服务视图（版本号、视图哈希、服务列表），serviceName为空时返回全量视图
+     */
+    public RegistryCache.View getServicesView(String serviceName, String serviceVersion) {
+        return registryCache.view(serviceName, serviceVersion);
+    }
+    
+    /**
+     * 获取指定版本号之后的增量变更，变更日志无法覆盖时返回null
+     */
+    public RegistryCache.Delta getServiceChanges(long sinceRevision, String serviceName, String serviceVersion) {
+        return registryCache.changesSince(sinceRevision, serviceName, serviceVersion);
     }
     
     /**
@@ -173,16 +286,23 @@ public class ServiceRegistryService {
      */
     @Transactional
     public boolean updateServiceStatus(String serviceName, String serviceVersion, String ip, Integer port, String status) {
-        int updatedCount = serviceRepository.updateStatus(serviceName, serviceVersion, ip, port, status);
-        return updatedCount > 0;
+        // 逐条加载后保存，使状态变更带上新的版本并复制给集群中的其他节点
+        Optional<RegisteredService> serviceOpt = serviceRepository.findByServiceNameAndServiceVersionAndIpAndPort(
+                serviceName, serviceVersion, ip, port);
+        if (serviceOpt.isPresent()) {
+            RegisteredService service = serviceOpt.get();
+            service.setStatus(status);
+            syncCache(save(service));
+            return true;
+        }
+        return false;
     }
     
     /**
      * 检查服务是否存在
      */
     public boolean serviceExists(String serviceName, String serviceVersion, String ip, Integer port) {
-        return serviceRepository.findByServiceNameAndServiceVersionAndIpAndPort(
-                serviceName, serviceVersion, ip, port).isPresent();
+        return registryCache.findInstance(serviceName, serviceVersion, ip, port) != null;
     }
     
     /**
@@ -195,7 +315,7 @@ public class ServiceRegistryService {
         if (serviceOpt.isPresent()) {
             RegisteredService service = serviceOpt.get();
             service.setStatus("DOWN");
-            serviceRepository.save(service);
+            syncCache(save(service));
             logger.info("服务已通过ID手动设置为离线: {} (v{}) - {}:{}", 
                     service.getServiceName(), service.getServiceVersion(), service.getIp(), service.getPort());
             return true;
@@ -205,31 +325,28 @@ public class ServiceRegistryService {
     
     /**
      * 通过ID发送心跳
+     * 服务已在线时只更新内存快照；服务不在线时需要持久化状态变更
+     * 健康检查标记离线的服务只记录心跳，不恢复在线，由健康检查决定何时恢复
      */
-    @Transactional
     public boolean sendHeartbeatById(Long id) {
-        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
-        if (serviceOpt.isPresent()) {
-            RegisteredService service = serviceOpt.get();
-            service.setLastHeartbeat(LocalDateTime.now());
+        RegisteredService cached = registryCache.get(id);
+        if (cached == null) {
+            return false;
+        }
+        if (!"UP".equals(cached.getStatus()) && !healthProbeService.isMarkedDown(id)) {
             // 发送心跳时自动将服务状态设置为在线
-            service.setStatus("UP");
-            serviceRepository.save(service);
-            return true;
+            return setServiceOnline(id);
         }
-        return false;
+        recordHeartbeat(cached, LocalDateTime.now());
+        return true;
     }
 
     /**
      * 检查服务是否在线
      */
     public boolean isServiceOnline(Long id) {
-        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
-        if (serviceOpt.isPresent()) {
-            RegisteredService service = serviceOpt.get();
-            return "UP".equals(service.getStatus());
-        }
-        return false;
+        RegisteredService service = registryCache.get(id);
+        return service != null && "UP".equals(service.getStatus());
     }
 
     /**
@@ -242,7 +359,7 @@ public class ServiceRegistryService {
             RegisteredService service = serviceOpt.get();
             service.setStatus("UP");
             service.setLastHeartbeat(LocalDateTime.now());
-            serviceRepository.save(service);
+            syncCache(save(service));
             return true;
         }
         return false;
@@ -253,6 +370,15 @@ public class ServiceRegistryService {
      */
     @Transactional
     public boolean setServiceRateLimit(Long id, boolean enabled, int maxRequestsPerSecond, String errorMessage) {
+        return setServiceRateLimit(id, enabled, maxRequestsPerSecond, errorMessage, null);
+    }
+    
+    /**
+     * 设置服务限流配置，包括突发容量
+     * @param burst 突发容量，为null时保持不变，非正数时恢复为等于每秒最大请求数
+     */
+    @Transactional
+    public boolean setServiceRateLimit(Long id, boolean enabled, int maxRequestsPerSecond, String errorMessage, Integer burst) {
         Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
         if (serviceOpt.isPresent()) {
             RegisteredService service = serviceOpt.get();
@@ -261,7 +387,10 @@ public class ServiceRegistryService {
             if (errorMessage != null && !errorMessage.isEmpty()) {
                 service.setRateLimitErrorMessage(errorMessage);
             }
-            serviceRepository.save(service);
+            if (burst != null) {
+                service.setRateLimitBurst(burst > 0 ? burst : null);
+            }
+            syncCache(save(service));
             return true;
         }
         return false;
@@ -271,18 +400,65 @@ public class ServiceRegistryService {
      * 获取服务限流配置
      */
     public Map<String, Object> getServiceRateLimit(Long id) {
-        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
-        if (serviceOpt.isPresent()) {
-            RegisteredService service = serviceOpt.get();
+        RegisteredService service = registryCache.get(id);
+        if (service != null) {
             Map<String, Object> rateLimitInfo = new HashMap<>();
             rateLimitInfo.put("enabled", service.getRateLimitEnabled());
             rateLimitInfo.put("maxRequestsPerSecond", service.getMaxRequestsPerSecond());
             rateLimitInfo.put("errorMessage", service.getRateLimitErrorMessage());
+            rateLimitInfo.put("burst", service.getRateLimitBurst() != null ? service.getRateLimitBurst() : service.getMaxRequestsPerSecond());
+            rateLimitInfo.put("maxConcurrentRequests", service.getMaxConcurrentRequests());
+            rateLimitInfo.put("adaptiveConcurrency", service.getAdaptiveConcurrency());
+            rateLimitInfo.put("responseCacheTtlSeconds", service.getResponseCacheTtlSeconds());
+            rateLimitInfo.put("responseCacheVaryHeaders", service.getResponseCacheVaryHeaders());
             return rateLimitInfo;
         }
         return null;
     }
     
+    /**
+     * 设置服务并发限制，并发上限按服务名共用，因此同时修改该服务名下的所有实例
+     * @param id 服务名下任一实例的ID
+     * @param maxConcurrentRequests 最大并发请求数，为null或非正数时不限制
+     * @param adaptive 是否根据上游延迟自动调整并发上限，为null时保持不变
+     */
+    @Transactional
+    public boolean setServiceConcurrencyLimit(Long id, Integer maxConcurrentRequests, Boolean adaptive) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isPresent()) {
+            Integer limit = maxConcurrentRequests != null && maxConcurrentRequests > 0 ? maxConcurrentRequests : null;
+            for (RegisteredService service : serviceRepository.findByServiceName(serviceOpt.get().getServiceName())) {
+                service.setMaxConcurrentRequests(limit);
+                if (adaptive != null) {
+                    service.setAdaptiveConcurrency(adaptive);
+                }
+                syncCache(save(service));
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 设置虚拟域名的响应缓存
+     * @param ttlSeconds 缓存时长（秒），为null或非正数时不缓存
+     * @param varyHeaders 参与缓存键的请求头，逗号分隔，为null时保持不变
+     */
+    @Transactional
+    public boolean setServiceResponseCache(Long id, Integer ttlSeconds, String varyHeaders) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isPresent()) {
+            RegisteredService service = serviceOpt.get();
+            service.setResponseCacheTtlSeconds(ttlSeconds != null && ttlSeconds > 0 ? ttlSeconds : null);
+            if (varyHeaders != null) {
+                service.setResponseCacheVaryHeaders(varyHeaders.isBlank() ? null : varyHeaders.trim());
+            }
+            syncCache(save(service));
+            return true;
+        }
+        return false;
+    }
+    
     /**
      * 启用服务限流
      */
@@ -299,6 +475,60 @@ public class ServiceRegistryService {
         return setServiceRateLimit(id, false, 0, null);
     }
     
+    /**
+     * 设置服务的心跳超时时间，传入null或非正数时恢复使用全局配置
+     */
+    @Transactional
+    public boolean updateHeartbeatTimeout(Long id, Integer timeoutSeconds) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isPresent()) {
+            RegisteredService service = serviceOpt.get();
+            service.setHeartbeatTimeoutSeconds(timeoutSeconds != null && timeoutSeconds > 0 ? timeoutSeconds : null);
+            syncCache(save(service));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 设置服务的主动健康检查
+     * @param type HTTP或TCP，传入null或空字符串时关闭健康检查，调用方负责校验
+     * @param path HTTP健康检查路径
+     * @param intervalSeconds 检查间隔（秒），传入null或非正数时使用全局配置
+     */
+    @Transactional
+    public boolean updateHealthCheck(Long id, String type, String path, Integer intervalSeconds) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isPresent()) {
+            RegisteredService service = serviceOpt.get();
+            boolean enabled = type != null && !type.isEmpty();
+            service.setHealthCheckType(enabled ? type : null);
+            service.setHealthCheckPath(enabled && path != null && !path.isEmpty() ? path : null);
+            service.setHealthCheckIntervalSeconds(intervalSeconds != null && intervalSeconds > 0 ? intervalSeconds : null);
+            syncCache(save(service));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 设置服务实例的负载均衡权重和策略
+     * @param weight 权重，传入null或非正数时恢复为1
+     * @param strategy 策略名称，传入null或空字符串时使用全局配置，调用方负责校验策略名称
+     */
+    @Transactional
+    public boolean updateLoadBalance(Long id, Integer weight, String strategy) {
+        Optional<RegisteredService> serviceOpt = serviceRepository.findById(id);
+        if (serviceOpt.isPresent()) {
+            RegisteredService service = serviceOpt.get();
+            service.setWeight(weight != null && weight > 0 ? weight : 1);
+            service.setLoadBalanceStrategy(strategy != null && !strategy.isEmpty() ? strategy : null);
+            syncCache(save(service));
+            return true;
+        }
+        return false;
+    }
+    
     /**
      * 更新服务虚拟域名
      */
@@ -310,8 +540,8 @@ public class ServiceRegistryService {
             
             // 检查虚拟域名是否已被其他服务使用
             if (virtualDomain != null && !virtualDomain.isEmpty()) {
-                Optional<RegisteredService> existingServiceOpt = serviceRepository.findByVirtualDomain(virtualDomain);
-                if (existingServiceOpt.isPresent() && !existingServiceOpt.get().getId().equals(id)) {
+                RegisteredService existingService = registryCache.findByVirtualDomain(virtualDomain);
+                if (existingService != null && !existingService.getId().equals(id)) {
                     // 虚拟域名已被其他服务使用
                     return false;
                 }
@@ -319,9 +549,166 @@ public class ServiceRegistryService {
             
             // 更新虚拟域名
             service.setVirtualDomain(virtualDomain);
-            serviceRepository.save(service);
+            syncCache(save(service));
             return true;
         }
         return false;
     }
+    
+    /**
+     * 应用集群中其他节点复制过来的实例变更，本地已有的实例或删除标记的版本较新时忽略
+     * 实例按服务名+版本+IP+端口匹配，本地ID保持不变；删除时本地即使没有该实例也记录删除标记，继续参与反熵同步
+     * @return 本地注册表或删除标记是否发生变更
+     */
+    @Transactional
+    public boolean applyReplica(RegisteredService remote, boolean deleted) {
+        Optional<RegisteredService> existing = serviceRepository.findByServiceNameAndServiceVersionAndIpAndPort(
+                remote.getServiceName(), remote.getServiceVersion(), remote.getIp(), remote.getPort());
+        if (existing.isPresent() && !ClusterNode.isNewer(remote, existing.get())) {
+            return false;
+        }
+        RegisteredService tombstone = clusterNode.tombstoneOf(ClusterNode.keyOf(remote));
+        if (tombstone != null && !ClusterNode.isNewer(remote, tombstone)) {
+            return false;
+        }
+        if (deleted) {
+            boolean recorded = clusterNode.recordTombstone(remote);
+            if (existing.isEmpty()) {
+                return recorded;
+            }
+            Long removedId = existing.get().getId();
+            serviceRepository.deleteById(removedId);
+            afterCommit(() -> {
+                registryCache.remove(removedId);
+                heartbeatWriteBehindService.discard(removedId);
+                heartbeatMonitorService.untrack(removedId);
+            });
+            return true;
+        }
+        
+        clusterNode.clearTombstone(remote);
+        RegisteredService service = remote.copy();
+        service.setId(existing.map(RegisteredService::getId).orElse(null));
+        service.setRevision(null);
+        if (service.getLastHeartbeat() == null) {
+            service.setLastHeartbeat(LocalDateTime.now());
+        }
+        if (service.getRegisterTime() == null) {
+            service.setRegisterTime(service.getLastHeartbeat());
+        }
+        // 保留较新的心跳时间
+        if (existing.isPresent() && existing.get().getLastHeartbeat() != null
+                && existing.get().getLastHeartbeat().isAfter(service.getLastHeartbeat())) {
+            service.setLastHeartbeat(existing.get().getLastHeartbeat());
+        }
+        
+        // 虚拟域名被本地其他实例占用时，版本较新的一方保留虚拟域名
+        if (service.getVirtualDomain() != null) {
+            Optional<RegisteredService> holderOpt = serviceRepository.findByVirtualDomain(service.getVirtualDomain());
+            if (holderOpt.isPresent() && !holderOpt.get().getId().equals(service.getId())) {
+                RegisteredService holder = holderOpt.get();
+                if (ClusterNode.isNewer(service, holder)) {
+                    logger.info("虚拟域名 {} 由复制的实例 {}:{} 接管", service.getVirtualDomain(), service.getIp(), service.getPort());
+                    holder.setVirtualDomain(null);
+                    syncCache(serviceRepository.save(holder));
+                    serviceRepository.flush();
+                } else {
+                    service.setVirtualDomain(null);
+                }
+            }
+        }
+        // 保留复制过来的版本，不重新生成
+        syncCache(serviceRepository.save(service));
+        return true;
+    }
+    
+    /**
+     * 应用集群中其他节点复制过来的心跳，只接受比本地更新的心跳
+     */
+    public boolean applyReplicatedHeartbeat(String serviceName, String serviceVersion, String ip, Integer port, LocalDateTime lastHeartbeat) {
+        RegisteredService cached = registryCache.findInstance(serviceName, serviceVersion, ip, port);
+        if (cached == null || lastHeartbeat == null || !lastHeartbeat.isAfter(cached.getLastHeartbeat())) {
+            return false;
+        }
+        recordHeartbeat(cached, lastHeartbeat);
+        return true;
+    }
+    
+    /**
+     * 构建批量操作中单个实例的处理结果
+     */
+    private Map<String, Object> batchItemResult(int index, boolean success, String message, RegisteredService data) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+        result.put("success", success);
+        result.put("message", message);
+        if (data != null) {
+            result.put("data", data);
+        }
+        return result;
+    }
+    
+    /**
+     * 新实例沿用同名服务已有实例的并发限制，实例全部替换后服务的并发上限仍然有效
+     */
+    private void inheritConcurrencyLimit(RegisteredService service) {
+        for (RegisteredService existing : registryCache.findByServiceName(service.getServiceName())) {
+            if (existing.getMaxConcurrentRequests() != null && existing.getMaxConcurrentRequests() > 0) {
+                service.setMaxConcurrentRequests(existing.getMaxConcurrentRequests());
+                service.setAdaptiveConcurrency(existing.getAdaptiveConcurrency());
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 在事务提交后将已保存的服务写入内存注册表，事务回滚时快照保持不变
+     */
+    private RegisteredService syncCache(RegisteredService saved) {
+        RegisteredService snapshot = saved.copy();
+        afterCommit(() -> {
+            // 数据库中的心跳时间可能落后于内存，保留较新的心跳时间
+            RegisteredService cached = registryCache.get(snapshot.getId());
+            if (cached != null && cached.getLastHeartbeat().isAfter(snapshot.getLastHeartbeat())) {
+                snapshot.setLastHeartbeat(cached.getLastHeartbeat());
+            }
+            registryCache.put(snapshot);
+            heartbeatMonitorService.track(snapshot);
+        });
+        return saved;
+    }
+    
+    /**
+     * 在内存中记录心跳，心跳时间直接写入快照对象，不改变索引结构
+     */
+    private void recordHeartbeat(RegisteredService cached, LocalDateTime now) {
+        cached.setLastHeartbeat(now);
+        heartbeatWriteBehindService.record(cached.getId(), now);
+        heartbeatMonitorService.onHeartbeat(cached, System.currentTimeMillis());
+        clusterNode.onHeartbeat(cached);
+    }
+    
+    /**
+     * 保存本地修改，写入新的集群复制版本
+     */
+    private RegisteredService save(RegisteredService service) {
+        clusterNode.stamp(service);
+        return serviceRepository.save(service);
+    }
+    
+    /**
+     * 存在活动事务时在提交后执行，否则立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.registercenter.service;
 
+import com.example.registercenter.cluster.FollowerSyncService;
 import com.example.registercenter.entity.RegisteredService;
 import com.example.registercenter.repository.ServiceRepository;
 import org.slf4j.Logger;
@@ -25,11 +26,23 @@ public class ServiceStartupInitializer implements ApplicationRunner {
     @Autowired
     private HeartbeatMonitorService heartbeatMonitorService;
 
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private FollowerSyncService followerSyncService;
+
     /**
      * 在应用启动后执行的初始化逻辑
      */
     @Override
     public void run(ApplicationArguments args) {
+        if (followerSyncService.isEnabled()) {
+            // 从节点的注册表来自主节点，不加载本地数据库中的服务，也不做心跳超时检测
+            followerSyncService.start();
+            return;
+        }
+        
         logger.info("应用启动初始化：开始加载已保存的服务信息");
         
         // 查询数据库中所有已保存的服务
@@ -37,6 +50,7 @@ public class ServiceStartupInitializer implements ApplicationRunner {
         
         if (savedServices.isEmpty()) {
             logger.info("应用启动初始化：当前没有已保存的服务");
+            registryCache.reload(savedServices);
             return;
         }
         
@@ -65,6 +79,12 @@ public class ServiceStartupInitializer implements ApplicationRunner {
             }
         }
         
+        // 将数据库中的服务加载到内存注册表，此后服务发现只读取内存快照
+        registryCache.reload(savedServices);
+        
+        // 为未离线的服务登记心跳超时
+        heartbeatMonitorService.trackAll(registryCache.listAll());
+        
         logger.info("应用启动初始化：服务加载完成，心跳监测服务将开始正常工作");
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.example.registercenter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定大小的字节缓冲区池，用于代理转发时在输入流和输出流之间复制数据
+ * 每个请求只占用一个缓冲区，内存占用与请求体、响应体大小无关
+ */
+public class BufferPool {
+
+    // 缓冲区大小
+    public static final int BUFFER_SIZE = 16 * 1024;
+
+    // 池中最多保留的缓冲区数量，超出的缓冲区直接丢弃
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    private static final ArrayBlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    /**
+     * 获取一个缓冲区，池为空时新建
+     */
+    public static byte[] acquire() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            pool.offer(buffer);
+        }
+    }
+
+    /**
+     * 使用池中的缓冲区将输入流复制到输出流
+     * 输入流暂时没有更多数据时立即刷新输出流，保证分块传输和服务端推送的数据能及时到达客户端
+     * @return 复制的字节数
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.registercenter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 哈希时间轮，用于按截止时间触发超时
+ * 每个键对应一个超时项，重新调度时直接移动到新的槽位，推进时间轮只检查到期槽位中的项，
+ * 工作量与实际到期的项数成正比，而不是与总数成正比
+ * 截止时间超过一圈的项会留在槽位中，直到真正到期
+ * 调度时计算槽位持有读锁，推进持有写锁，调度不会落入推进过程中已经检查过的槽位；多个调度之间可以并发
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+
+    private final List<Set<Timeout<K>>> buckets;
+
+    private final ConcurrentHashMap<K, Timeout<K>> timeouts = new ConcurrentHashMap<>();
+
+    // 调度持有读锁，推进持有写锁；使用ReentrantReadWriteLock避免在虚拟线程中占用载体线程
+    private final ReentrantReadWriteLock advanceLock = new ReentrantReadWriteLock();
+
+    // 最近一次处理过的刻度，只在持有写锁时由advance修改
+    private volatile long lastProcessedTick = -1;
+
+    public HashedTimingWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis和wheelSize必须大于0");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * 为键设置截止时间，已存在的超时项会被移动到新的槽位
+     * @param key 键
+     * @param deadlineMillis 截止时间（毫秒时间戳）
+     */
+    public void schedule(K key, long deadlineMillis) {
+        advanceLock.readLock().lock();
+        try {
+            while (true) {
+                Timeout<K> timeout = timeouts.computeIfAbsent(key, Timeout::new);
+                synchronized (timeout) {
+                    if (timeout.removed) {
+                        // 该项刚被到期处理或取消，重新获取
+                        continue;
+                    }
+                    int slot = slotOf(deadlineMillis);
+                    timeout.deadline = deadlineMillis;
+                    if (timeout.slot != slot) {
+                        if (timeout.slot >= 0) {
+                            buckets.get(timeout.slot).remove(timeout);
+                        }
+                        buckets.get(slot).add(timeout);
+                        timeout.slot = slot;
+                    }
+                    return;
+                }
+            }
+        } finally {
+            advanceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取消键的超时
+     */
+    public void cancel(K key) {
+        Timeout<K> timeout = timeouts.remove(key);
+        if (timeout != null) {
+            synchronized (timeout) {
+                timeout.removed = true;
+                if (timeout.slot >= 0) {
+                    buckets.get(timeout.slot).remove(timeout);
+                    timeout.slot = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 推进时间轮到指定时间，返回所有已到期的键，到期的键会从时间轮中移除
+     * @param nowMillis 当前时间（毫秒时间戳）
+     */
+    public List<K> advance(long nowMillis) {
+        advanceLock.writeLock().lock();
+        try {
+            long currentTick = Math.floorDiv(nowMillis, tickMillis);
+            if (lastProcessedTick < 0 || currentTick - lastProcessedTick > buckets.size()) {
+                // 首次推进或长时间未推进，检查所有槽位
+                lastProcessedTick = currentTick - buckets.size();
+            }
+
+            List<K> expired = new ArrayList<>();
+            for (long tick = lastProcessedTick + 1; tick <= currentTick; tick++) {
+                Set<Timeout<K>> bucket = buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+                for (Timeout<K> timeout : bucket) {
+                    if (timeout.deadline > nowMillis) {
+                        continue;
+                    }
+                    synchronized (timeout) {
+                        // 加锁后再次检查，期间可能已被取消
+                        if (timeout.removed || timeout.deadline > nowMillis) {
+                            continue;
+                        }
+                        bucket.remove(timeout);
+                        timeout.slot = -1;
+                        timeout.removed = true;
+                        timeouts.remove(timeout.key, timeout);
+                        expired.add(timeout.key);
+                    }
+                }
+            }
+            lastProcessedTick = currentTick;
+            return expired;
+        } finally {
+            advanceLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取键当前的截止时间，不存在时返回-1
+     */
+    public long deadlineOf(K key) {
+        Timeout<K> timeout = timeouts.get(key);
+        return timeout == null ? -1 : timeout.deadline;
+    }
+
+    /**
+     * 时间轮中的超时项数量
+     */
+    public int size() {
+        return timeouts.size();
+    }
+
+    /**
+     * 截止时间向上取整到刻度，保证项在截止时间之后的第一个刻度被检查
+     * 已经过去的截止时间放到下一个待处理的刻度，否则要等时间轮转完一圈才会被检查到
+     */
+    private int slotOf(long deadlineMillis) {
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), lastProcessedTick + 1);
+        return (int) Math.floorMod(tick, (long) buckets.size());
+    }
+
+    private static final class Timeout<K> {
+        private final K key;
+        private volatile long deadline;
+        private int slot = -1;
+        private boolean removed;
+
+        private Timeout(K key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.registercenter.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图，用于估算最近一段时间内的延迟百分位
+ * 按对数分桶，每个2的幂区间再均分为8个子桶，相对误差不超过12.5%，内存占用固定
+ * 数据按窗口轮换：统计结果包含当前窗口和上一个窗口，覆盖最近1到2个窗口的请求
+ * 写入无锁，只有窗口轮换时加锁；读取为近似值
+ * 每个窗口的最后一个元素保存样本总数，估算百分位时只需遍历一次分桶，不复制计数
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // 最大可记录约2^40微秒，超出的值记入最后一个桶
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // 窗口中保存样本总数的位置
+    private static final int TOTAL_INDEX = BUCKET_COUNT;
+
+    private final long windowMillis;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKET_COUNT + 1);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKET_COUNT + 1);
+    private volatile long windowStartMillis;
+
+    /**
+     * @param windowMillis 窗口时长（毫秒）
+     */
+    public LatencyHistogram(long windowMillis) {
+        this.windowMillis = Math.max(1, windowMillis);
+        this.windowStartMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次延迟
+     */
+    public void record(long latencyNanos, long nowMillis) {
+        rotateIfNeeded(nowMillis);
+        AtomicLongArray window = current;
+        // 先计入分桶再计入总数，读取到的总数不会超过读取到的分桶之和
+        window.incrementAndGet(indexOf(Math.min(MAX_VALUE, Math.max(0, latencyNanos / 1000))));
+        window.incrementAndGet(TOTAL_INDEX);
+    }
+
+    /**
+     * 统计范围内的样本数
+     */
+    public long count(long nowMillis) {
+        rotateIfNeeded(nowMillis);
+        return current.get(TOTAL_INDEX) + previous.get(TOTAL_INDEX);
+    }
+
+    /**
+     * 估算延迟百分位，返回所在桶的上界（纳秒），没有样本时返回-1
+     * @param percentile 百分位，例如95表示p95
+     * @param minSamples 样本数少于该值时视为没有样本
+     */
+    public long percentileNanos(double percentile, long minSamples, long nowMillis) {
+        rotateIfNeeded(nowMillis);
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        long total = cur.get(TOTAL_INDEX) + prev.get(TOTAL_INDEX);
+        if (total == 0 || total < minSamples) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += cur.get(i) + prev.get(i);
+            if (seen >= rank) {
+                return upperBoundOf(i) * 1000;
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1) * 1000;
+    }
+
+    private void rotateIfNeeded(long nowMillis) {
+        if (nowMillis - windowStartMillis < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            long elapsed = nowMillis - windowStartMillis;
+            if (elapsed < windowMillis) {
+                return;
+            }
+            // 超过两个窗口没有轮换时上一个窗口的数据也已过期
+            previous = elapsed < 2 * windowMillis ? current : new AtomicLongArray(BUCKET_COUNT + 1);
+            current = new AtomicLongArray(BUCKET_COUNT + 1);
+            windowStartMillis = nowMillis;
+        }
+    }
+
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -1,78 +1,217 @@
 package com.example.registercenter.util;
 
-import java.time.Instant;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 限流工具类，基于令牌桶算法实现
+ * 限流工具类，基于GCRA（通用信元速率算法）实现，效果等同于令牌桶
+ * 每个键只保存一个long：理论到达时间TAT，即令牌桶恢复满额的时刻，通过CAS无锁更新
+ * 令牌按System.nanoTime()连续补充，不存在固定窗口边界处的两倍突发
+ * TAT早于当前时刻的键令牌桶已满，与新建的状态等价，可以随时淘汰而不影响限流效果
+ * 状态数量有硬上限，新建状态时顺带清理空闲的键，实例反复重建时内存占用保持平稳
  */
 public class RateLimiter {
     
-    // 存储每个服务的请求计数
-    private static final ConcurrentHashMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
     
-    // 存储每个服务的上一次重置时间
-    private static final ConcurrentHashMap<String, Long> lastResetTimes = new ConcurrentHashMap<>();
+    // 时间基准，状态中保存相对该基准的纳秒数，初始值0表示令牌桶为满
+    private static final long EPOCH = System.nanoTime();
+    
+    // 两次空闲清理之间的最短间隔（纳秒）
+    private static final long SWEEP_INTERVAL_NANOS = NANOS_PER_SECOND;
+    
+    // 每个键的理论到达时间
+    private static final ConcurrentHashMap<String, AtomicLong> states = new ConcurrentHashMap<>();
+    
+    // 最多保存的键数量
+    private static volatile int maxEntries = 100_000;
+    
+    // 上一次空闲清理的时刻，同一时刻只有一个线程执行清理
+    private static final AtomicLong lastSweep = new AtomicLong();
     
     /**
-     * 检查是否允许请求通过
+     * 设置最多保存的键数量
+     */
+    public static void setMaxEntries(int maxEntries) {
+        RateLimiter.maxEntries = Math.max(1, maxEntries);
+    }
+    
+    /**
+     * 当前保存的键数量
+     */
+    public static int size() {
+        return states.size();
+    }
+    
+    /**
+     * 检查是否允许请求通过，突发容量等于每秒最大请求数
      * @param serviceKey 服务唯一标识
      * @param maxRequestsPerSecond 每秒最大请求数
      * @return 是否允许请求通过
      */
     public static boolean isAllowed(String serviceKey, int maxRequestsPerSecond) {
+        return isAllowed(serviceKey, maxRequestsPerSecond, maxRequestsPerSecond);
+    }
+    
+    /**
+     * 检查是否允许请求通过
+     * @param serviceKey 服务唯一标识
+     * @param maxRequestsPerSecond 每秒最大请求数，即令牌补充速率
+     * @param burst 突发容量，即令牌桶大小，非正数时等于每秒最大请求数
+     * @return 是否允许请求通过
+     */
+    public static boolean isAllowed(String serviceKey, int maxRequestsPerSecond, int burst) {
         if (maxRequestsPerSecond <= 0) {
             return true; // 不限流
         }
         
-        long now = Instant.now().getEpochSecond();
-        
-        // 初始化计数器
-        requestCounts.putIfAbsent(serviceKey, new AtomicInteger(0));
-        lastResetTimes.putIfAbsent(serviceKey, now);
+        long interval = emissionInterval(maxRequestsPerSecond);
+        long tolerance = interval * (burst > 0 ? burst : maxRequestsPerSecond);
+        return tryAcquire(serviceKey, interval, tolerance);
+    }
+    
+    /**
+     * 按小数速率检查是否允许请求通过，用于分布式限流中当前节点分得的部分速率
+     * @param serviceKey 服务唯一标识
+     * @param ratePerSecond 每秒最大请求数，可以是小数
+     * @param burst 突发容量，小于1时按1处理，保证令牌桶至少能容纳一个请求
+     * @return 是否允许请求通过
+     */
+    public static boolean isAllowed(String serviceKey, double ratePerSecond, double burst) {
+        if (ratePerSecond <= 0) {
+            return true; // 不限流
+        }
         
-        long lastResetTime = lastResetTimes.get(serviceKey);
+        long interval = Math.max(1, (long) (NANOS_PER_SECOND / ratePerSecond));
+        long tolerance = (long) (interval * Math.max(1.0, burst));
+        return tryAcquire(serviceKey, interval, tolerance);
+    }
+    
+    /**
+     * GCRA检查：TAT后移一个发放间隔后与当前时刻的差不超过容忍度时放行
+     */
+    private static boolean tryAcquire(String serviceKey, long interval, long tolerance) {
+        long now = System.nanoTime() - EPOCH;
+        AtomicLong state = stateOf(serviceKey, now);
         
-        // 如果已经过了一秒钟，重置计数器
-        if (now > lastResetTime) {
-            synchronized (RateLimiter.class) {
-                // 双重检查锁定，防止并发重置
-                if (now > lastResetTimes.get(serviceKey)) {
-                    requestCounts.get(serviceKey).set(0);
-                    lastResetTimes.put(serviceKey, now);
-                }
+        while (true) {
+            long tat = state.get();
+            // 令牌桶已满时从当前时刻起算，消耗一个令牌后TAT后移一个发放间隔
+            long next = Math.max(tat, now) + interval;
+            if (next - now > tolerance) {
+                // 令牌不足，拒绝的请求不修改状态
+                return false;
+            }
+            if (state.compareAndSet(tat, next)) {
+                return true;
             }
         }
-        
-        // 增加请求计数并检查是否超过限制
-        int currentCount = requestCounts.get(serviceKey).incrementAndGet();
-        return currentCount <= maxRequestsPerSecond;
     }
     
     /**
-     * 重置指定服务的限流计数器
+     * 退还一个令牌，用于请求通过检查后又被其他限流条件拒绝的情况，令牌桶不会超过满额
+     * @param serviceKey 服务唯一标识
+     * @param maxRequestsPerSecond 检查时使用的每秒最大请求数
+     */
+    public static void refund(String serviceKey, int maxRequestsPerSecond) {
+        if (maxRequestsPerSecond <= 0) {
+            return;
+        }
+        AtomicLong state = states.get(serviceKey);
+        if (state == null) {
+            return;
+        }
+        long interval = emissionInterval(maxRequestsPerSecond);
+        long now = System.nanoTime() - EPOCH;
+        while (true) {
+            long tat = state.get();
+            if (tat <= now) {
+                // 令牌桶已满
+                return;
+            }
+            if (state.compareAndSet(tat, Math.max(now, tat - interval))) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 重置指定服务的限流状态
      * @param serviceKey 服务唯一标识
      */
     public static void reset(String serviceKey) {
-        requestCounts.remove(serviceKey);
-        lastResetTimes.remove(serviceKey);
+        states.remove(serviceKey);
     }
     
     /**
-     * 重置所有服务的限流计数器
+     * 重置所有服务的限流状态
      */
     public static void resetAll() {
-        requestCounts.clear();
-        lastResetTimes.clear();
+        states.clear();
     }
     
     /**
-     * 获取当前服务的请求计数
+     * 获取当前服务已占用的令牌数，即尚未补充回来的令牌数
      * @param serviceKey 服务唯一标识
-     * @return 请求计数
+     * @param maxRequestsPerSecond 每秒最大请求数
+     * @return 已占用的令牌数
+     */
+    public static int getCurrentCount(String serviceKey, int maxRequestsPerSecond) {
+        AtomicLong state = states.get(serviceKey);
+        if (state == null || maxRequestsPerSecond <= 0) {
+            return 0;
+        }
+        long interval = emissionInterval(maxRequestsPerSecond);
+        long backlog = state.get() - (System.nanoTime() - EPOCH);
+        return backlog <= 0 ? 0 : (int) ((backlog + interval - 1) / interval);
+    }
+    
+    /**
+     * 令牌发放间隔（纳秒）
+     */
+    private static long emissionInterval(int maxRequestsPerSecond) {
+        return Math.max(1, NANOS_PER_SECOND / maxRequestsPerSecond);
+    }
+    
+    /**
+     * 获取键的状态，已存在时不产生任何分配；新建状态前按需清理空闲的键，并保证数量不超过上限
      */
-    public static int getCurrentCount(String serviceKey) {
-        return requestCounts.getOrDefault(serviceKey, new AtomicInteger(0)).get();
+    private static AtomicLong stateOf(String serviceKey, long now) {
+        AtomicLong state = states.get(serviceKey);
+        if (state != null) {
+            return state;
+        }
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+            evictIdle(now);
+        }
+        if (states.size() >= maxEntries) {
+            evictIdle(now);
+            evictOverflow();
+        }
+        return states.computeIfAbsent(serviceKey, key -> new AtomicLong());
+    }
+    
+    /**
+     * 淘汰令牌桶已满的键
+     * 正在使用被淘汰状态的请求最多按满额令牌桶放行一次，之后的请求使用新建的状态
+     */
+    private static void evictIdle(long now) {
+        states.values().removeIf(state -> state.get() <= now);
+    }
+    
+    /**
+     * 所有键都处于活跃状态且数量达到上限时，任意淘汰一部分键，被淘汰的键令牌桶重新变满
+     */
+    private static void evictOverflow() {
+        int limit = maxEntries;
+        int excess = states.size() - limit + Math.max(1, limit / 100);
+        Iterator<String> iterator = states.keySet().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            excess--;
+        }
     }
-}
\ No newline at end of file
+}
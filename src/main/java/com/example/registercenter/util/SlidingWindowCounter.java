@@ -0,0 +1,103 @@
+package com.example.registercenter.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 滑动时间窗口计数器，统计最近一段时间内的成功和失败次数
+ * 窗口划分为固定数量的桶，按当前时间定位桶，桶过期后在下一次写入时清零
+ * 写入无锁，只有桶切换时对单个桶加锁；读取为近似值，足以用于失败率判断
+ */
+public class SlidingWindowCounter {
+
+    private final Bucket[] buckets;
+
+    private final long bucketMillis;
+
+    /**
+     * @param bucketCount 桶数量
+     * @param windowMillis 窗口总时长（毫秒）
+     */
+    public SlidingWindowCounter(int bucketCount, long windowMillis) {
+        this.buckets = new Bucket[Math.max(1, bucketCount)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.bucketMillis = Math.max(1, windowMillis / buckets.length);
+    }
+
+    /**
+     * 记录一次成功
+     */
+    public void recordSuccess(long nowMillis) {
+        current(nowMillis).successes.incrementAndGet();
+    }
+
+    /**
+     * 记录一次失败
+     */
+    public void recordFailure(long nowMillis) {
+        current(nowMillis).failures.incrementAndGet();
+    }
+
+    /**
+     * 窗口内的成功次数
+     */
+    public int successes(long nowMillis) {
+        int total = 0;
+        long oldest = nowMillis / bucketMillis - buckets.length;
+        for (Bucket bucket : buckets) {
+            if (bucket.epoch > oldest) {
+                total += bucket.successes.get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 窗口内的失败次数
+     */
+    public int failures(long nowMillis) {
+        int total = 0;
+        long oldest = nowMillis / bucketMillis - buckets.length;
+        for (Bucket bucket : buckets) {
+            if (bucket.epoch > oldest) {
+                total += bucket.failures.get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 清空窗口
+     */
+    public void reset() {
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                bucket.epoch = Long.MIN_VALUE;
+                bucket.successes.set(0);
+                bucket.failures.set(0);
+            }
+        }
+    }
+
+    private Bucket current(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+        if (bucket.epoch != epoch) {
+            synchronized (bucket) {
+                if (bucket.epoch != epoch) {
+                    bucket.successes.set(0);
+                    bucket.failures.set(0);
+                    bucket.epoch = epoch;
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+        private volatile long epoch = Long.MIN_VALUE;
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+    }
+}
@@ -72,8 +72,8 @@ const app = createApp({
             notificationKey: 0,
             // 刷新相关属性
             isAutoRefreshEnabled: false,
-            refreshInterval: 5000, // 默认5秒刷新一次
-            refreshTimer: null
+            refreshInterval: 30000, // 订阅等待时间，服务变更时立即刷新，无变更时每30秒刷新一次心跳信息
+            watchRevision: 0 // 已知的注册表版本号
         }
     },
     
@@ -300,7 +300,7 @@ const app = createApp({
                 this.showNotificationMessage('自动刷新已关闭', 'info');
             } else {
                 this.startAutoRefresh();
-                this.showNotificationMessage(`已开启自动刷新，每${this.refreshInterval/1000}秒刷新一次`, 'success');
+                this.showNotificationMessage(`已开启自动刷新，服务变更时立即刷新，无变更时每${this.refreshInterval/1000}秒刷新一次`, 'success');
             }
         },
         
@@ -309,19 +309,31 @@ const app = createApp({
             this.isAutoRefreshEnabled = true;
             // 立即刷新一次
             this.refreshServiceStatuses();
-            // 设置定时器
-            this.refreshTimer = setInterval(() => {
-                this.refreshServiceStatuses();
-            }, this.refreshInterval);
+            // 通过长轮询订阅服务变更
+            this.watchServiceChanges();
+        },
+        
+        // 长轮询订阅服务变更，注册表版本号变化或等待超时后刷新服务列表
+        async watchServiceChanges() {
+            while (this.isAutoRefreshEnabled) {
+                try {
+                    const response = await axios.get('/api/services/watch', {
+                        params: { revision: this.watchRevision, timeout: this.refreshInterval }
+                    });
+                    this.watchRevision = response.data.revision;
+                    if (this.isAutoRefreshEnabled) {
+                        await this.refreshServiceStatuses();
+                    }
+                } catch (error) {
+                    console.error('订阅服务变更失败:', error);
+                    await new Promise(resolve => setTimeout(resolve, this.refreshInterval));
+                }
+            }
         },
         
         // 停止自动刷新
         stopAutoRefresh() {
             this.isAutoRefreshEnabled = false;
-            if (this.refreshTimer) {
-                clearInterval(this.refreshTimer);
-                this.refreshTimer = null;
-            }
         },
         
         // 打开限流设置模态框
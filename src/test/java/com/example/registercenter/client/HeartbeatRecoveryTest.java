@@ -0,0 +1,103 @@
+package com.example.registercenter.client;
+
+import com.example.registercenter.RegisterCenterApplication;
+import com.example.registercenter.service.HeartbeatMonitorService;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 启动注册中心并用客户端SDK注册实例，验证实例被标记离线后客户端的恢复行为：
+ * 心跳超时离线的实例由下一次心跳重新注册，健康检查标记离线的实例不被心跳恢复
+ */
+class HeartbeatRecoveryTest {
+
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 200;
+
+    private ConfigurableApplicationContext registry;
+
+    private RegistryClient client;
+
+    private LocalInstance instance;
+
+    @BeforeEach
+    void start() throws IOException {
+        int port = freePort();
+        registry = new SpringApplicationBuilder(RegisterCenterApplication.class).run(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID(),
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--registry.health-check.tick-ms=100",
+                "--registry.health-check.timeout-ms=300");
+        client = new RegistryClient(RegistryClientConfig.builder()
+                .registryUrl("http://127.0.0.1:" + port)
+                .heartbeatIntervalMillis(HEARTBEAT_INTERVAL_MILLIS)
+                .build());
+        // 实例地址上没有进程监听，TCP健康检查必然失败
+        instance = LocalInstance.of("orders", "1.0", "127.0.0.1", freePort());
+        // 先注册再启动心跳，避免首次心跳与注册请求同时注册同一实例
+        assertThat(client.register(instance)).isTrue();
+        client.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (client != null) {
+            client.close();
+        }
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    @Test
+    void reregistersInstanceMarkedDownByHeartbeatTimeout() {
+        Long id = instanceId();
+        // 与心跳超时走相同的状态变更流程
+        registry.getBean(HeartbeatMonitorService.class).markDown(id, "心跳超时");
+        assertThat(registryService().isServiceOnline(id)).isFalse();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> registryService().isServiceOnline(id));
+    }
+
+    @Test
+    void keepsInstanceMarkedDownByHealthCheck() throws InterruptedException {
+        Long id = instanceId();
+        registryService().updateHealthCheck(id, "TCP", null, 1);
+        await().atMost(Duration.ofSeconds(10)).until(() -> !registryService().isServiceOnline(id));
+
+        // 健康检查重新探测之前经过多个心跳周期，实例保持离线
+        Thread.sleep(HEARTBEAT_INTERVAL_MILLIS * 5);
+        assertThat(registryService().isServiceOnline(id)).isFalse();
+    }
+
+    private Long instanceId() {
+        return registry.getBean(RegistryCache.class)
+                .findInstance(instance.getServiceName(), instance.getServiceVersion(), instance.getIp(), instance.getPort())
+                .getId();
+    }
+
+    private ServiceRegistryService registryService() {
+        return registry.getBean(ServiceRegistryService.class);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
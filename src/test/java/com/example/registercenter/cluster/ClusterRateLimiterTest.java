@@ -0,0 +1,232 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.RegisterCenterApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 启动三个开启分布式限流的注册中心节点，以不均衡的速率向各节点的代理地址发送请求，验证合计放行速率接近服务配置的上限
+ * 限流状态保存在进程内的静态变量中，每个节点在独立的JVM中运行，与实际部署一致
+ */
+class ClusterRateLimiterTest {
+
+    private static final int MAX_REQUESTS_PER_SECOND = 20;
+
+    private static final int BURST = 10;
+
+    // 各节点每秒收到的请求数，合计超过上限
+    private static final int[] OFFERED_RATES = {30, 15, 10};
+
+    private static final Duration WARM_UP = Duration.ofSeconds(10);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(20);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Process> nodes = new ArrayList<>();
+
+    private final List<Path> logs = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(executor)
+            .build();
+
+    private HttpServer upstream;
+
+    private int[] ports;
+
+    @BeforeEach
+    void startCluster() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        upstream.setExecutor(executor);
+        upstream.start();
+
+        ports = freePorts(OFFERED_RATES.length);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        for (int i = 0; i < ports.length; i++) {
+            List<String> peers = new ArrayList<>();
+            for (int j = 0; j < ports.length; j++) {
+                if (j != i) {
+                    peers.add(baseUrl(j));
+                }
+            }
+            Path log = Files.createTempFile("register-center-node-" + i, ".log");
+            logs.add(log);
+            nodes.add(new ProcessBuilder(java, "-Xmx256m", "-XX:TieredStopAtLevel=1",
+                    "-cp", System.getProperty("java.class.path"),
+                    RegisterCenterApplication.class.getName(),
+                    "--server.port=" + ports[i],
+                    "--spring.datasource.url=jdbc:h2:mem:node-" + i,
+                    "--spring.jpa.show-sql=false",
+                    "--spring.main.banner-mode=off",
+                    "--logging.level.root=WARN",
+                    "--registry.cluster.enabled=true",
+                    "--registry.cluster.node-id=node-" + i,
+                    "--registry.cluster.peers=" + String.join(",", peers),
+                    "--registry.cluster.replication-interval-ms=200",
+                    "--rate-limit.distributed.enabled=true")
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start());
+        }
+        for (int i = 0; i < ports.length; i++) {
+            int node = i;
+            await().atMost(Duration.ofSeconds(120)).pollInterval(Duration.ofMillis(500)).ignoreExceptions()
+                    .failFast("节点 " + node + " 已退出: " + tail(logs.get(node)), () -> !nodes.get(node).isAlive())
+                    .until(() -> statusOf(get(node, "/api/cluster/status")) == 200);
+        }
+    }
+
+    @AfterEach
+    void stopCluster() throws Exception {
+        for (Process node : nodes) {
+            node.destroy();
+        }
+        for (Process node : nodes) {
+            if (!node.waitFor(10, TimeUnit.SECONDS)) {
+                node.destroyForcibly();
+            }
+        }
+        for (Path log : logs) {
+            Files.deleteIfExists(log);
+        }
+        if (upstream != null) {
+            upstream.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void admittedRateAcrossNodesStaysWithinGlobalLimit() throws Exception {
+        JsonNode registered = objectMapper.readTree(send(0, "POST", "/api/services/register?serviceName=limited&serviceVersion=1.0"
+                + "&ip=127.0.0.1&port=" + upstream.getAddress().getPort()).body());
+        long id = registered.path("data").path("id").asLong();
+        assertThat(statusOf(send(0, "PUT", "/api/rate-limit/" + id + "?enabled=true&maxRequestsPerSecond="
+                + MAX_REQUESTS_PER_SECOND + "&burst=" + BURST))).isEqualTo(200);
+        for (int i = 0; i < ports.length; i++) {
+            int node = i;
+            await().atMost(Duration.ofSeconds(30)).until(() -> objectMapper.readTree(get(node, "/api/services/find?serviceName=limited").body())
+                    .findValues("maxRequestsPerSecond").stream().anyMatch(value -> value.asInt() == MAX_REQUESTS_PER_SECOND));
+        }
+
+        // 按固定间隔发送请求，只统计测量窗口内发出的请求
+        long measureFrom = System.nanoTime() + WARM_UP.toNanos();
+        long measureUntil = measureFrom + MEASUREMENT.toNanos();
+        AtomicLong admitted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(ports.length);
+        try {
+            for (int i = 0; i < ports.length; i++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl(i) + "/proxy/limited/ping"))
+                        .timeout(Duration.ofSeconds(5))
+                        .build();
+                scheduler.scheduleAtFixedRate(() -> {
+                    long sentAt = System.nanoTime();
+                    boolean measured = sentAt >= measureFrom && sentAt < measureUntil;
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                        if (!measured) {
+                            return;
+                        }
+                        if (error != null || (response.statusCode() != 200 && response.statusCode() != 429)) {
+                            failed.incrementAndGet();
+                        } else if (response.statusCode() == 200) {
+                            admitted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    });
+                }, 0, TimeUnit.SECONDS.toNanos(1) / OFFERED_RATES[i], TimeUnit.NANOSECONDS);
+            }
+            TimeUnit.NANOSECONDS.sleep(measureUntil - System.nanoTime());
+        } finally {
+            scheduler.shutdownNow();
+        }
+        // 等待测量窗口内发出的请求全部返回
+        TimeUnit.SECONDS.sleep(2);
+
+        double admittedPerSecond = admitted.get() / (double) MEASUREMENT.toSeconds();
+        assertThat(failed.get()).isZero();
+        assertThat(rejected.get()).isPositive();
+        assertThat(admittedPerSecond).isBetween(MAX_REQUESTS_PER_SECOND * 0.95, MAX_REQUESTS_PER_SECOND * 1.05);
+    }
+
+    private HttpResponse<String> get(int node, String path) throws IOException, InterruptedException {
+        return send(node, "GET", path);
+    }
+
+    private HttpResponse<String> send(int node, String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl(node) + path))
+                .timeout(Duration.ofSeconds(5))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private static int statusOf(HttpResponse<?> response) {
+        return response.statusCode();
+    }
+
+    private String baseUrl(int node) {
+        return "http://127.0.0.1:" + ports[node];
+    }
+
+    private static String tail(Path log) {
+        try {
+            List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - 40), lines.size()));
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static int[] freePorts(int count) throws IOException {
+        int[] ports = new int[count];
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                ports[i] = socket.getLocalPort();
+            }
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+        return ports;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.registercenter.cluster;
+
+import com.example.registercenter.RegisterCenterApplication;
+import com.example.registercenter.service.RegistryCache;
+import com.example.registercenter.service.ServiceRegistryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 在同一进程中启动三个互为对等节点的注册中心，验证变更推送、删除和反熵同步的收敛
+ * 定时推送和反熵同步的间隔设得很长，由测试手动触发，丢弃待推送的变更即可模拟推送失败
+ */
+class ClusterReplicationTest {
+
+    private static final int NODES = 3;
+
+    private static final String SERVICE = "orders";
+    private static final String IP = "10.0.0.1";
+    private static final int PORT = 8080;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void startCluster() throws IOException {
+        int[] ports = freePorts(NODES);
+        String database = UUID.randomUUID().toString();
+        for (int i = 0; i < NODES; i++) {
+            List<String> peers = new ArrayList<>();
+            for (int j = 0; j < NODES; j++) {
+                if (j != i) {
+                    peers.add("http://127.0.0.1:" + ports[j]);
+                }
+            }
+            nodes.add(new SpringApplicationBuilder(RegisterCenterApplication.class).run(
+                    "--server.port=" + ports[i],
+                    "--spring.datasource.url=jdbc:h2:mem:" + database + "-" + i + ";DB_CLOSE_DELAY=-1",
+                    "--spring.jpa.show-sql=false",
+                    "--spring.main.banner-mode=off",
+                    "--logging.level.root=WARN",
+                    "--registry.cluster.enabled=true",
+                    "--registry.cluster.node-id=node-" + i,
+                    "--registry.cluster.peers=" + String.join(",", peers),
+                    "--registry.cluster.replication-interval-ms=3600000",
+                    "--registry.cluster.anti-entropy-initial-delay-ms=3600000"));
+        }
+    }
+
+    @AfterEach
+    void stopCluster() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void replicatesRegistrationsAndDeletes() {
+        registry(0).registerService(SERVICE, "1.0", IP, PORT);
+        replication(0).replicate();
+        await().atMost(Duration.ofSeconds(10)).until(() -> countNodesWith("1.0") == NODES);
+
+        // 同一IP和端口以新版本注册时原实例被删除
+        registry(1).registerService(SERVICE, "2.0", IP, PORT);
+        replication(1).replicate();
+        await().atMost(Duration.ofSeconds(10)).until(() -> countNodesWith("1.0") == 0 && countNodesWith("2.0") == NODES);
+        for (int i = 0; i < NODES; i++) {
+            assertThat(node(i).getBean(ClusterNode.class).tombstoneOf(ClusterNode.keyOf(SERVICE, "1.0", IP, PORT))).isNotNull();
+        }
+    }
+
+    @Test
+    void antiEntropyConvergesWithoutResurrectingDeletedInstances() {
+        // 注册的推送丢失，由反熵同步补齐
+        registry(0).registerService(SERVICE, "1.0", IP, PORT);
+        node(0).getBean(ClusterNode.class).drainRecords();
+        awaitConvergence();
+        assertThat(countNodesWith("1.0")).isEqualTo(NODES);
+
+        // 删除的推送丢失，其他节点仍保留旧实例，反熵同步后删除标记胜出
+        registry(0).registerService(SERVICE, "2.0", IP, PORT);
+        node(0).getBean(ClusterNode.class).drainRecords();
+        assertThat(countNodesWith("1.0")).isEqualTo(NODES - 1);
+        awaitConvergence();
+        assertThat(countNodesWith("1.0")).isZero();
+        assertThat(countNodesWith("2.0")).isEqualTo(NODES);
+
+        // 删除后重新注册的版本较新，覆盖删除标记
+        registry(2).registerService(SERVICE, "1.0", IP, PORT);
+        node(2).getBean(ClusterNode.class).drainRecords();
+        awaitConvergence();
+        assertThat(countNodesWith("1.0")).isEqualTo(NODES);
+        assertThat(countNodesWith("2.0")).isZero();
+    }
+
+    /**
+     * 反复在各节点触发反熵同步，直到所有节点的摘要一致
+     */
+    private void awaitConvergence() {
+        await().atMost(Duration.ofSeconds(10)).pollInterval(Duration.ofMillis(100)).until(() -> {
+            for (int i = 0; i < NODES; i++) {
+                replication(i).antiEntropy();
+            }
+            long hash = replication(0).digest().getHash();
+            for (int i = 1; i < NODES; i++) {
+                if (replication(i).digest().getHash() != hash) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private int countNodesWith(String version) {
+        int count = 0;
+        for (int i = 0; i < NODES; i++) {
+            if (node(i).getBean(RegistryCache.class).findInstance(SERVICE, version, IP, PORT) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private ConfigurableApplicationContext node(int index) {
+        return nodes.get(index);
+    }
+
+    private ServiceRegistryService registry(int index) {
+        return node(index).getBean(ServiceRegistryService.class);
+    }
+
+    private ClusterReplicationService replication(int index) {
+        return node(index).getBean(ClusterReplicationService.class);
+    }
+
+    private static int[] freePorts(int count) throws IOException {
+        int[] ports = new int[count];
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                ports[i] = socket.getLocalPort();
+            }
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+        return ports;
+    }
+}